@@ -0,0 +1,24 @@
+package ttt_online;
+
+/**
+ * An Interface for computer players; anything that can pick a move on a
+ * GameBoard given the symbols of the players and whose turn it is.
+ * <p>
+ * The {@code symbols} and {@code player} arguments follow the seat rotation of
+ * the GameServer: {@code symbols[i]} is the symbol of seat {@code i} and seats
+ * play in order, so after {@code player} comes {@code (player + 1) % symbols.length}.
+ */
+interface AIPlayer {
+
+	/**
+	 * Returns the move {@code player} should play. The board is not changed.
+	 * Players that search until a time limit stop early, with the best move found
+	 * so far, if the calling thread is interrupted.
+	 *
+	 * @param board   GameBoard, the position, with at least one empty square
+	 * @param symbols char[], the symbols of the players, in the order they play
+	 * @param player  int, the index of the player whose turn it is
+	 * @return int, the coordinate of the move in the form of STRIDE*row + col
+	 */
+	int findMove(GameBoard board, char[] symbols, int player);
+}
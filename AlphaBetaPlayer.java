@@ -0,0 +1,469 @@
+package ttt_online;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A computer player for 2 player games that searches the game tree using
+ * negamax with alpha-beta pruning.
+ * <p>
+ * The search is iteratively deepened, one ply at a time, until the time limit
+ * runs out; the move of the last finished iteration is played. Moves are
+ * ordered by the best move of previous iterations (kept in a
+ * {@link TranspositionTable}), then killer moves, then the history heuristic,
+ * so that most branches are cut off early. Only empty squares within 2 squares
+ * of a mark are searched, which keeps large boards manageable.
+ * <p>
+ * When 4 or more marks in a row are needed, a {@link ThreatSearch} runs first.
+ * A victory by continuous fours is played right away; otherwise the first move
+ * of the player's victory by continuous threats and the first move of the
+ * opponent's victory by continuous fours, the square they need most, are
+ * searched first at the root.
+ * <p>
+ * With more than one thread the search is run in parallel, Lazy SMP style: the
+ * calling thread searches as usual while helper threads on a
+ * {@link ForkJoinPool}, shared by every player so that there are never more
+ * helpers than cores, search the same position at alternating depths and with
+ * slightly different move orders. The threads only share the transposition
+ * table, so the helpers' results speed up the main search by filling it.
+ * Helpers still waiting for a thread of the pool when the main search ends are
+ * skipped rather than waited for. With one thread the search is deterministic.
+ */
+final class AlphaBetaPlayer implements AIPlayer {
+
+	/**
+	 * The score of a won position; wins found sooner score higher.
+	 */
+	static final int WIN_SCORE = 1000000;
+
+	static final int MAX_PLY = 64;
+
+	// the threat search is only run for lines at least this long, with this many nodes
+	private static final int THREAT_CONSECUTIVE = 4;
+	private static final long THREAT_NODES = 4000;
+
+	// keys XOR-ed with the board's hash to tell whose turn it is
+	private static final long[] SIDE_KEYS = { 0x5bd1e9955bd1e995L, 0x2545f4914f6cdd1dL };
+
+	private final long timeLimit;
+	private final int maxDepth;
+	private final TranspositionTable table;
+	private final int threads;
+
+	// the helper threads of every player, created by the first one that needs them
+	private static ForkJoinPool pool;
+
+	// kept from move to move, so that its buffers are only allocated once
+	private final ThreatSearch threats = new ThreatSearch(THREAT_NODES);
+
+	// set once the main thread is done so the helper threads stop searching
+	private volatile boolean stopped;
+	private long nodeCount;
+	private int score;
+
+	/**
+	 * Constructs a player that thinks for {@code timeLimit} milliseconds per move.
+	 *
+	 * @param timeLimit long, the time budget of every move in milliseconds
+	 */
+	AlphaBetaPlayer(long timeLimit) {
+		this(timeLimit, MAX_PLY - 1, 16, 1);
+	}
+
+	/**
+	 * Constructs a player that thinks for {@code timeLimit} milliseconds per move
+	 * but never searches deeper than {@code maxDepth} plies.
+	 *
+	 * @param timeLimit      long, the time budget of every move in milliseconds
+	 * @param maxDepth       int, the maximum depth of the search, less than
+	 *                       {@code MAX_PLY}
+	 * @param tableMegabytes int, the size of the transposition table in MB
+	 */
+	AlphaBetaPlayer(long timeLimit, int maxDepth, int tableMegabytes) {
+		this(timeLimit, maxDepth, tableMegabytes, 1);
+	}
+
+	/**
+	 * Constructs a player that searches with {@code threads} threads.
+	 *
+	 * @param timeLimit      long, the time budget of every move in milliseconds
+	 * @param maxDepth       int, the maximum depth of the search, less than
+	 *                       {@code MAX_PLY}
+	 * @param tableMegabytes int, the size of the transposition table in MB
+	 * @param threads        int, the number of threads, including the calling one
+	 */
+	AlphaBetaPlayer(long timeLimit, int maxDepth, int tableMegabytes, int threads) {
+		this.timeLimit = timeLimit;
+		this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+		this.table = new TranspositionTable(tableMegabytes);
+		this.threads = Math.max(1, threads);
+	}
+
+	@Override
+	public synchronized int findMove(GameBoard board, char[] symbols, int player) {
+		if (symbols.length != 2)
+			throw new IllegalArgumentException("AlphaBetaPlayer only plays 2 player games");
+
+		long deadline = System.nanoTime() + timeLimit * 1000000;
+		int[] threatMoves = { -1, -1 };
+		if (board.CONSECUTIVE >= THREAT_CONSECUTIVE) {
+			threats.setPosition(board, symbols);
+			int move = threats.findVcf(player, MAX_PLY);
+			nodeCount = threats.getNodeCount();
+			if (move != -1) {
+				score = WIN_SCORE - MAX_PLY;
+				return move;
+			}
+			threatMoves[0] = threats.findVcf(1 - player, MAX_PLY);
+			nodeCount += threats.getNodeCount();
+			threatMoves[1] = threats.findVct(player, 3, MAX_PLY);
+			nodeCount += threats.getNodeCount();
+		}
+
+		table.newSearch();
+		stopped = false;
+		long threatNodes = nodeCount;
+		Search main = new Search(new GameBoard(board), symbols, deadline, 0, threatMoves);
+		if (threads == 1) {
+			int move = main.run(player);
+			nodeCount = threatNodes + main.nodes;
+			score = main.bestScore;
+			return move;
+		}
+
+		ForkJoinPool workers = helperPool();
+		Search[] helpers = new Search[threads - 1];
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[threads - 1];
+		AtomicBoolean[] started = new AtomicBoolean[threads - 1];
+		for (int i = 0; i < helpers.length; i++) {
+			Search helper = new Search(new GameBoard(board), symbols, deadline, i + 1, threatMoves);
+			AtomicBoolean claimed = new AtomicBoolean();
+			helpers[i] = helper;
+			started[i] = claimed;
+			tasks[i] = workers.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					if (claimed.compareAndSet(false, true))
+						helper.run(player);
+				}
+			});
+		}
+
+		int move = main.run(player);
+		stopped = true;
+		nodeCount = threatNodes + main.nodes;
+		score = main.bestScore;
+		// helpers still queued behind other players' never run, so only the ones that started are waited for
+		for (int i = 0; i < tasks.length; i++) {
+			if (started[i].compareAndSet(false, true)) {
+				tasks[i].cancel(false);
+				continue;
+			}
+			tasks[i].join();
+			nodeCount += helpers[i].nodes;
+		}
+		return move;
+	}
+
+	// a helper sees that the search is stopped within a few nodes, so the main thread never waits long for it
+	private static synchronized ForkJoinPool helperPool() {
+		if (pool == null)
+			pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+		return pool;
+	}
+
+	/**
+	 * Returns the number of positions visited by all threads and the threat
+	 * search during the last search.
+	 *
+	 * @return long, the number of nodes
+	 */
+	synchronized long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the score of the move of the last search for the player who made
+	 * it; at least {@code WIN_SCORE - MAX_PLY} for a forced win, at most its
+	 * negative for a forced loss.
+	 *
+	 * @return int, the score
+	 */
+	synchronized int getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns the time budget of every move in milliseconds.
+	 *
+	 * @return long, the time limit
+	 */
+	long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * The state of one search thread; the board being searched, the move ordering
+	 * heuristics and the node counter. Thread 0 is the main thread, the rest are
+	 * helpers.
+	 */
+	private final class Search {
+
+		private final GameBoard board;
+		private final char[] symbols;
+		private final long deadline;
+		private final int thread;
+		private final int[] threatMoves;
+
+		private final int[][] moves;
+		private final int[][] scores;
+		private final int[][] killers = new int[MAX_PLY][2];
+		private final int[] history;
+
+		private final LineEvaluator evaluator;
+		private final long columnMask;
+
+		private long nodes = 0;
+		private int iteration;
+		private boolean aborted = false;
+		private int rootMove = -1, bestScore = 0;
+
+		Search(GameBoard board, char[] symbols, long deadline, int thread, int[] threatMoves) {
+			this.board = board;
+			this.symbols = symbols;
+			this.deadline = deadline;
+			this.thread = thread;
+			this.threatMoves = threatMoves;
+			this.moves = new int[MAX_PLY][board.ROWS * board.COLUMNS];
+			this.scores = new int[MAX_PLY][board.ROWS * board.COLUMNS];
+			this.history = new int[board.ROWS * board.STRIDE];
+			this.evaluator = new LineEvaluator(board, symbols);
+			this.columnMask = board.COLUMNS == Long.SIZE ? -1L : (1L << board.COLUMNS) - 1;
+			for (int[] killer : killers)
+				killer[0] = killer[1] = -1;
+		}
+
+		/**
+		 * Deepens the search one ply at a time until time runs out, a forced result
+		 * is found or the whole tree has been searched. Every other helper thread
+		 * starts one ply deeper so that the threads don't all search the same depth.
+		 *
+		 * @param player int, the player to move
+		 * @return int, the best move found
+		 */
+		int run(int player) {
+			int best = -1;
+			int empty = board.ROWS * board.COLUMNS - board.getMoveCount();
+			for (iteration = 1 + (thread & 1); iteration <= maxDepth; iteration++) {
+				rootMove = -1;
+				int score = search(iteration, -WIN_SCORE - 1, WIN_SCORE + 1, 0, player);
+				if (aborted)
+					break;
+				best = rootMove;
+				bestScore = score;
+				if (Math.abs(score) >= WIN_SCORE - MAX_PLY || iteration >= empty)
+					break;
+			}
+			return best != -1 ? best : rootMove;
+		}
+
+		/**
+		 * Searches the position to {@code depth} plies.
+		 *
+		 * @return int, the score of the position for {@code side}
+		 */
+		private int search(int depth, int alpha, int beta, int ply, int side) {
+			// the main thread always finishes the first iteration so there is always a move to play
+			if ((++nodes & 127) == 0 && (thread > 0 || iteration > 1)
+					&& (stopped || System.nanoTime() > deadline || Thread.currentThread().isInterrupted()))
+				aborted = true;
+			if (aborted)
+				return 0;
+
+			long key = board.getHash() ^ SIDE_KEYS[side];
+			long entry = table.probe(key);
+			int ttMove = -1;
+			if (entry != 0) {
+				ttMove = TranspositionTable.move(entry);
+				if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+					int score = fromTable(TranspositionTable.score(entry), ply);
+					int flag = TranspositionTable.flag(entry);
+					if (flag == TranspositionTable.EXACT
+							|| (flag == TranspositionTable.LOWER_BOUND && score >= beta)
+							|| (flag == TranspositionTable.UPPER_BOUND && score <= alpha))
+						return score;
+				}
+			}
+
+			if (depth == 0)
+				return evaluate(side, ply);
+
+			int count = generateMoves(ply, ttMove);
+			int originalAlpha = alpha, bestScore = -WIN_SCORE - 1, bestMove = -1;
+			for (int i = 0; i < count; i++) {
+				int move = nextMove(ply, i, count);
+				GameBoard.MoveResult result = board.markSquare(move, symbols[side]);
+				evaluator.mark(move, side);
+				int score;
+				if (result.outcome == GameBoard.MoveResult.Outcome.WIN)
+					score = WIN_SCORE - ply - 1;
+				else if (result.outcome == GameBoard.MoveResult.Outcome.TIE)
+					score = 0;
+				else
+					score = -search(depth - 1, -beta, -alpha, ply + 1, 1 - side);
+				board.unmarkSquare(move);
+				evaluator.unmark(move);
+
+				if (aborted)
+					return 0;
+				if (score > bestScore) {
+					bestScore = score;
+					bestMove = move;
+					if (ply == 0)
+						rootMove = move;
+				}
+				if (score > alpha)
+					alpha = score;
+				if (alpha >= beta) {
+					if (killers[ply][0] != move) {
+						killers[ply][1] = killers[ply][0];
+						killers[ply][0] = move;
+					}
+					history[move] += depth * depth;
+					break;
+				}
+			}
+
+			int flag = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+					: bestScore >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+			table.store(key, bestMove, toTable(bestScore, ply), depth, flag);
+			return bestScore;
+		}
+
+		/**
+		 * Fills {@code moves[ply]} with the empty squares within 2 squares of a mark
+		 * (or the center of an empty board) and scores them for ordering. At the
+		 * root the moves found by the threat search come right after the
+		 * transposition table's move.
+		 *
+		 * @return int, the number of moves
+		 */
+		private int generateMoves(int ply, int ttMove) {
+			int[] list = moves[ply], score = scores[ply];
+			int count = 0;
+
+			if (board.getMoveCount() == 0) {
+				list[0] = board.toCoord(board.ROWS / 2, board.COLUMNS / 2);
+				return 1;
+			}
+
+			for (int row = 0; row < board.ROWS; row++) {
+				long near = 0L;
+				for (int r = Math.max(0, row - 2); r <= Math.min(board.ROWS - 1, row + 2); r++) {
+					long occupied = board.getOccupiedBits(r);
+					near |= occupied | (occupied << 1) | (occupied << 2) | (occupied >>> 1) | (occupied >>> 2);
+				}
+				near &= ~board.getOccupiedBits(row) & columnMask;
+
+				for (; near != 0; near &= near - 1) {
+					int col = Long.numberOfTrailingZeros(near);
+					int move = board.toCoord(row, col);
+					list[count] = move;
+					if (move == ttMove)
+						score[count] = Integer.MAX_VALUE;
+					else if (ply == 0 && (move == threatMoves[0] || move == threatMoves[1]))
+						score[count] = Integer.MAX_VALUE - 1;
+					else if (move == killers[ply][0] || move == killers[ply][1])
+						score[count] = Integer.MAX_VALUE / 2;
+					else
+						score[count] = history[move] + neighbours(row, col) + noise(move);
+					count++;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Moves the best scored of the remaining moves to position {@code i} and
+		 * returns it; a selection sort that stops as soon as there is a cutoff.
+		 */
+		private int nextMove(int ply, int i, int count) {
+			int[] list = moves[ply], score = scores[ply];
+			int best = i;
+			for (int j = i + 1; j < count; j++)
+				if (score[j] > score[best])
+					best = j;
+			int move = list[best], moveScore = score[best];
+			list[best] = list[i];
+			score[best] = score[i];
+			list[i] = move;
+			score[i] = moveScore;
+			return move;
+		}
+
+		/**
+		 * Returns a small number that depends on the move and the thread, so that
+		 * helper threads search moves of equal score in different orders; always 0
+		 * for the main thread.
+		 */
+		private int noise(int move) {
+			return (int) (((move + 1) * 0x9e3779b9L * thread) >>> 16) & 3;
+		}
+
+		/**
+		 * Returns the number of marked squares next to {@code [row, col]}.
+		 */
+		private int neighbours(int row, int col) {
+			int count = 0;
+			long around = (7L << col) >>> 1;
+			for (int r = Math.max(0, row - 1); r <= Math.min(board.ROWS - 1, row + 1); r++)
+				count += Long.bitCount(board.getOccupiedBits(r) & around);
+			return count;
+		}
+
+		/**
+		 * Evaluates the position for {@code side} from the windows of
+		 * {@code CONSECUTIVE} squares that only one player has marks in; the more
+		 * marks in a window, the more it's worth. A threat of the side to move is a
+		 * win on the next move, and two threats of the opponent can't both be
+		 * blocked.
+		 *
+		 * @see LineEvaluator
+		 */
+		private int evaluate(int side, int ply) {
+			if (evaluator.getThreatCount(side) > 0)
+				return WIN_SCORE - ply - 1;
+			if (evaluator.getThreatCount(1 - side) > 1)
+				return -(WIN_SCORE - ply - 2);
+			return evaluator.getScore(side) - evaluator.getScore(1 - side);
+		}
+	}
+
+	/**
+	 * Converts win scores from "plies from the root" to "plies from this
+	 * position" before storing them, so they are valid wherever the position is
+	 * found again.
+	 */
+	private static int toTable(int score, int ply) {
+		if (score >= WIN_SCORE - MAX_PLY)
+			return score + ply;
+		if (score <= -WIN_SCORE + MAX_PLY)
+			return score - ply;
+		return score;
+	}
+
+	/**
+	 * The opposite of {@code toTable}.
+	 *
+	 * @see AlphaBetaPlayer#toTable(int, int) toTable()
+	 */
+	private static int fromTable(int score, int ply) {
+		if (score >= WIN_SCORE - MAX_PLY)
+			return score - ply;
+		if (score <= -WIN_SCORE + MAX_PLY)
+			return score + ply;
+		return score;
+	}
+}
@@ -0,0 +1,128 @@
+package ttt_online;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the moves of computer players on a fixed number of threads shared by
+ * every game, so that many games with computer players don't use more threads
+ * than the host has cores. The threads have a lower priority than the ones
+ * serving human players, whose turns only wait on the network.
+ * <p>
+ * Every move has a deadline, counted from when it's requested, that includes
+ * the time spent waiting for a free thread. A move that misses it is
+ * cancelled; the caller plays a {@link #fallbackMove(GameBoard, char[], int)
+ * fallback move} instead.
+ */
+final class BotScheduler {
+
+	private final ExecutorService pool;
+	private final long moveDeadline;
+
+	/**
+	 * Constructs a scheduler with {@code threads} threads.
+	 *
+	 * @param threads      int, the number of moves computed at the same time
+	 * @param moveDeadline long, the time a move may take in milliseconds
+	 */
+	BotScheduler(int threads, long moveDeadline) {
+		this.moveDeadline = moveDeadline;
+		AtomicInteger count = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "bot-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Computes the move of {@code bot} on one of the threads and waits for it
+	 * until the deadline. The board is copied so that a cancelled move can't
+	 * change it.
+	 *
+	 * @param bot     AIPlayer, the computer player
+	 * @param board   GameBoard, the position
+	 * @param symbols char[], the symbols of the players, in the order they play
+	 * @param player  int, the index of the player whose turn it is
+	 * @return int, the move
+	 * @throws TimeoutException     if the move missed the deadline
+	 * @throws ExecutionException   if the computer player threw an exception
+	 * @throws InterruptedException if the calling thread was interrupted while
+	 *                              waiting
+	 */
+	int findMove(AIPlayer bot, GameBoard board, char[] symbols, int player)
+			throws TimeoutException, ExecutionException, InterruptedException {
+		GameBoard copy = new GameBoard(board);
+		char[] symbolsCopy = symbols.clone();
+		Future<Integer> move = pool.submit(new Callable<Integer>() {
+
+			@Override
+			public Integer call() {
+				return bot.findMove(copy, symbolsCopy, player);
+			}
+		});
+
+		try {
+			return move.get(moveDeadline, TimeUnit.MILLISECONDS);
+		} finally {
+			move.cancel(true);
+		}
+	}
+
+	/**
+	 * Runs {@code task} on one of the threads, without a deadline, for other
+	 * searches that should share the threads of the computer players.
+	 *
+	 * @param task Callable, the task
+	 * @return Future, the result of the task
+	 */
+	<T> Future<T> submit(Callable<T> task) {
+		return pool.submit(task);
+	}
+
+	/**
+	 * Returns a move that needs no search; a square that wins, else one that
+	 * blocks the next player's win, else the empty square closest to the center.
+	 *
+	 * @param board   GameBoard, the position, with at least one empty square
+	 * @param symbols char[], the symbols of the players, in the order they play
+	 * @param player  int, the index of the player whose turn it is
+	 * @return int, the move
+	 */
+	static int fallbackMove(GameBoard board, char[] symbols, int player) {
+		LineEvaluator evaluator = new LineEvaluator(board, symbols);
+		int next = (player + 1) % symbols.length;
+		// more than any distance from the center
+		int bonus = 2 * (board.ROWS + board.COLUMNS);
+		int best = -1, bestScore = Integer.MIN_VALUE;
+		for (int row = 0; row < board.ROWS; row++) {
+			for (int col = 0; col < board.COLUMNS; col++) {
+				int move = board.toCoord(row, col);
+				if (!board.isValid(move))
+					continue;
+				int score = -Math.abs(2 * row - board.ROWS + 1) - Math.abs(2 * col - board.COLUMNS + 1);
+				if (evaluator.getCompletions(move, player) > 0)
+					score += 2 * bonus;
+				else if (evaluator.getCompletions(move, next) > 0)
+					score += bonus;
+				if (score > bestScore) {
+					bestScore = score;
+					best = move;
+				}
+			}
+		}
+		return best;
+	}
+}
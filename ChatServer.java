@@ -1,34 +1,60 @@
 package ttt_online;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
 
 import javax.swing.JOptionPane;
 
 /**
  * Server-side application to handle chat between players.
+ * <p>
+ * Every room has its own chat, with {@code playerCount} slots; before anything
+ * else a client says which version of the protocol it speaks and sends the
+ * name of its room, as a {@code String}, then its symbol. An empty name is the
+ * chat of the players who didn't pick a room. Messages, and the notices of the
+ * Game Server, only go to the players in the same chat, and a chat is closed
+ * once its last player leaves. A client that can't join is sent the reason, in
+ * a {@code Rejected} message, and disconnected.
  */
 final class ChatServer extends Server {
 
 	// port of the Chat Server
 	private static final int CHAT_PORT = 10002;
 
+	// time a client has to say who it is after connecting
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+
 	/**
-	 * Keeps track of the running threads to know when another connection can be
-	 * accepted.<br>
-	 * When one is created, give it a slot. When one is stopped, free up its slot.
+	 * The chat of one room and the players in it.
 	 * <p>
-	 * No it's not spaghetti, yes we need it to keep track of which {@code outputs}
-	 * indexes are empty and can have an Output Stream
+	 * The slots are taken and freed holding the {@code channels}, and the
+	 * connections and symbols change holding the channel itself, which is also
+	 * held while a message is sent, so that everyone gets the messages in the same
+	 * order.
 	 */
-	private final boolean[] available;
+	private final class Channel {
+
+		private final String name;
+		private final boolean[] taken = new boolean[playerCount];
+		private final Connection[] connections = new Connection[playerCount];
+		private final char[] symbols = new char[playerCount];
+		private final ArrayList<Character> chessPieces = new ArrayList<Character>(ChatServer.this.chessPieces);
+		private int count = 0;
+
+		Channel(String name) {
+			this.name = name;
+		}
+	}
+
+	// the chats that someone is in, by the name of their room
+	private final Map<String, Channel> channels = new HashMap<String, Channel>();
+	private volatile int channelCount = 0;
 
 	/**
 	 * Constructs the Chat Server object.
@@ -37,25 +63,18 @@ final class ChatServer extends Server {
 	 */
 	ChatServer() {
 		super();
-		this.available = new boolean[playerCount];
-		for (int i = 0; i < playerCount; i++)
-			available[i] = true;
 	}
 
 	/**
 	 * Constructs the Chat Server object without the UI
 	 * 
-	 * @param playerCount     int number of connections
+	 * @param playerCount     int number of connections of every chat
 	 * @param printStackTrace boolean, whether or not to print full Stack Trace on
 	 *                        Exceptions
 	 * @see Server#Server() Server()
 	 */
 	ChatServer(int playerCount, boolean printStackTrace) {
 		super(playerCount, printStackTrace);
-		// System.out.println(this.playerCount);
-		this.available = new boolean[playerCount];
-		for (int i = 0; i < playerCount; i++)
-			available[i] = true;
 	}
 
 	/**
@@ -72,12 +91,13 @@ final class ChatServer extends Server {
 
 	/**
 	 * Initializes the Chat Server on port {@code CHAT_PORT} with
-	 * {@code playerCount} total possible connections.
+	 * {@code playerCount} possible connections in every chat.
 	 */
 	protected void initializeServer() {
 		try {
 			server = new ServerSocket(CHAT_PORT);
-			log(String.format("Chat Server ready, listening for up to %d players", playerCount));
+			log(String.format("Chat Server ready, listening for up to %d players in each of up to %d chats",
+					playerCount, RoomManager.MAX_ROOMS));
 		} catch (IOException e) {
 			logerr("IOException in InitializeServer()", e, printStackTrace);
 			if (printStackTrace)
@@ -91,186 +111,284 @@ final class ChatServer extends Server {
 	}
 
 	/**
-	 * Every 2 seconds check if there is an {@code available} slot to get a
-	 * connection. If there is, wait to accept a connection and assign it this slot.
-	 * Get its input and output streams. Create a new ChatServerThread with the
-	 * slot's index and start it. Finally increment the {@code {@link
-	 * Server#chatConnected chatConnected}} counter.
+	 * Accepts connections and starts a ChatServerThread for every one of them,
+	 * which finds out which chat it is for.
 	 * 
-	 * @see ChatServer#available available
-	 * @see ChatServer#getAvailable() getAvailable()
 	 * @see ChatServerThread
 	 */
 	protected void getConnections() {
-		ExecutorService exec = Executors.newCachedThreadPool();
-		try {
-			int index = -1;
-			Socket chatConnection = null;
-			while (true) {
-				// wait until there is an available slot to accept a connection
-				index = getAvailable();
-				if (index != -1) {
-					chatConnection = server.accept();
-				} else {
-					try {
-						Thread.sleep(2000);
-					} catch (InterruptedException e) {
-						;
-					}
-					continue;
-				}
-
-				// get Input Stream.
-				// get output Stream after broadcasting so that this player doesn't get the
-				// message that he joined
-				inputs[index] = new ObjectInputStream(chatConnection.getInputStream());
-
-				// get symbol, send ack back
-				symbols[index] = (char) inputs[index].readObject();
-
-				for (int i = 0; i < playerCount; i++) {
-					if ((i != index) && (symbols[index] == symbols[i])) {
-						char chessPiece = chessPieces
-								.remove(ThreadLocalRandom.current().nextInt(0, chessPieces.size()));
-						log(String.format("Duplicate found '%c', replaced with '\\u%04x'", symbols[index],
-								(int) chessPiece));
-						symbols[index] = chessPiece;
-					}
-				}
-
-				// inform everyone that someone has joined
-				broadcast("Chat Server: '%c' just joined. Say hi!", symbols[index]);
-
-				// finally get Output Stream
-				outputs[index] = new ObjectOutputStream(chatConnection.getOutputStream());
-				outputs[index].writeObject(
-						String.format("Hi player '%c', you're now connected.\nStart chatting!", symbols[index]));
-
-				log(String.format("Chat Connection #%d established with '%c'", index, symbols[index]));
-
-				exec.execute(new ChatServerThread(index));
-				index++;
-				screen.updateChatConnectionCounter(1);
+		ExecutorService exec = VirtualThreads.newExecutor();
+		while (true) {
+			try {
+				exec.execute(new ChatServerThread(new StreamConnection(server.accept())));
+			} catch (IOException e) {
+				logerr("IOException in getConnections()", e, printStackTrace);
+				return;
 			}
-		} catch (IOException e) {
-			logerr("IOException in getConnections()", e, printStackTrace);
-		} catch (ClassNotFoundException e) {
-			logerr("ClassNotFoundException in getConnections()", e, printStackTrace);
 		}
 	} // main part of ChatServer class
 
 	/**
-	 * Private inner class that listens to a specific client's Output Stream and
-	 * upon receiving a message, {@code broadcasts} it to every client connected to
-	 * the Chat Server.
+	 * Private inner class that serves a client's Connection. It checks its
+	 * version of the protocol, gets its room and symbol and gives it a slot in the
+	 * chat of the room. Then, upon receiving a message, it {@code broadcasts} it
+	 * to every client in that chat.
 	 * <p>
 	 * When an Exception occurs, this Thread terminates execution, the client's
-	 * Streams are closed, the {@code available} slot specified by {@code index} is
-	 * freed up and the {@code {@link Server#chatConnected chatConnected}} counter
-	 * is decremented
+	 * Connection is closed, its slot is freed up and the
+	 * {@code {@link Server#chatConnected chatConnected}} counter is decremented
 	 *
-	 * @see ChatServer#broadcast(String, Object[]) broadcast()
-	 * @see ChatServer#closeStreams(int) closeOutputStream()
-	 * @see ChatServer#available available
+	 * @see ChatServer#broadcastTo(Channel, String) broadcastTo()
+	 * @see ChatServer#closeStreams(Channel, int) closeStreams()
 	 */
 	private class ChatServerThread implements Runnable {
 
-		private final int index;
+		private final Connection connection;
+		private Channel channel;
+		private int index = -1;
 
 		/**
-		 * Constructs the Thread to listen to {@code index} input Stream
+		 * Constructs the Thread to serve {@code connection}
 		 * 
-		 * @param count int, used to keep track the slot this thread occupies in the
-		 *              {@code available} table
+		 * @param connection Connection, the connection of the client
 		 */
-		public ChatServerThread(int count) {
-			this.index = count;
+		public ChatServerThread(Connection connection) {
+			this.connection = connection;
 		}
 
 		/**
-		 * Runs the thread; upon receiving a message, broadcasts it to every client
-		 * connected to the Chat Server.
+		 * Runs the thread; once the client joined its chat, upon receiving a
+		 * message, broadcasts it to every client in that chat.
 		 * 
-		 * @see ChatServer#broadcast(String, Object[]) broadcast()
+		 * @see ChatServerThread#join() join()
 		 */
 		@Override
 		public void run() {
-			log(String.format("Thread #%d started", index));
+			if (!join())
+				return;
+			log(String.format("Thread #%d of chat '%s' started", index, channel.name));
 			while (true) {
 				try {
-					broadcast((String) inputs[index].readObject());
+					broadcastTo(channel, connection.receive(Message.ChatMessage.class).text);
 				} catch (SocketException e) {
 					logerr(String.format("SocketException in ChatServerThread.run(); connection #%d closed by user\n",
 							index), e, printStackTrace);
-					closeStreams(index);
+					closeStreams(channel, index);
 					break;
 				} catch (IOException e) {
 					logerr("IOException in ChatServerThread.run()", e, printStackTrace);
-					closeStreams(index);
-					break;
-				} catch (ClassNotFoundException e) {
-					logerr("ClassNotFoundException in ChatServerThread.run()", e, printStackTrace);
-					closeStreams(index);
+					closeStreams(channel, index);
 					break;
 				}
 			}
 		}
+
+		/**
+		 * Checks the version of the protocol of the client, gets its room and symbol
+		 * and gives it a slot in the chat of the room, with a chess piece as its
+		 * symbol if someone in that chat already has it. Tells everyone in the chat
+		 * that the client joined and greets it.
+		 * 
+		 * @return boolean, false if the client was turned away or disconnected
+		 */
+		private boolean join() {
+			String name;
+			char asked;
+			try {
+				if (!connection.checkVersion(HANDSHAKE_TIMEOUT)) {
+					log(String.format("Turned away %s: wrong version of the protocol", connection.getInetAddress()));
+					close(connection);
+					return false;
+				}
+				name = ((String) connection.receive(HANDSHAKE_TIMEOUT)).trim();
+				asked = (char) connection.receive(HANDSHAKE_TIMEOUT);
+			} catch (IOException | ClassCastException e) {
+				logerr("Exception in join() while getting player room and symbol", e, printStackTrace);
+				close(connection);
+				return false;
+			}
+
+			String error = null;
+			if (!name.isEmpty() && !name.matches(RoomManager.ROOM_NAME))
+				error = "Room names can only have up to 20 letters, digits, spaces, '-' and '_'";
+			else if (!claimSlot(name))
+				error = channelCount == RoomManager.MAX_ROOMS
+						? String.format("All %d chats are taken; please try again later", RoomManager.MAX_ROOMS)
+						: String.format("The chat of room '%s' is full", name);
+			if (error != null) {
+				log(String.format("Turned away %s: %s", connection.getInetAddress(), error));
+				try {
+					connection.send(new Message.Rejected(error));
+				} catch (IOException e) {
+					logerr("IOException in join() while turning a client away", e, printStackTrace);
+				}
+				close(connection);
+				return false;
+			}
+
+			char symbol = asked;
+			synchronized (channel) {
+				for (int i = 0; i < playerCount; i++) {
+					if (i != index && channel.symbols[i] == symbol && !channel.chessPieces.isEmpty()) {
+						symbol = channel.chessPieces
+								.remove(ThreadLocalRandom.current().nextInt(0, channel.chessPieces.size()));
+						log(String.format("Duplicate found '%c', replaced with '\\u%04x'", asked, (int) symbol));
+					}
+				}
+				channel.symbols[index] = symbol;
+			}
+
+			try {
+				// inform everyone that someone has joined, before this player can get messages
+				broadcastTo(channel, String.format("Chat Server: '%c' just joined. Say hi!", symbol));
+
+				// finally greet the player, and let the others write to it after the greeting
+				if (symbol != asked)
+					connection.send(new Message.SymbolReassigned(index, symbol));
+				connection.send(new Message.Welcome(index, channel.name,
+						String.format("Hi player '%c', you're now connected.\nStart chatting!", symbol)));
+			} catch (IOException e) {
+				logerr("IOException in join() while greeting player", e, printStackTrace);
+				close(connection);
+				synchronized (channel) {
+					channel.symbols[index] = '\u0000';
+				}
+				releaseSlot(channel, index);
+				return false;
+			}
+			synchronized (channel) {
+				channel.connections[index] = connection;
+			}
+
+			log(String.format("Chat Connection #%d of chat '%s' established with '%c'", index, channel.name, symbol));
+			screen.updateChatConnectionCounter(1);
+			return true;
+		}
+
+		// takes a free slot of the chat called name, opening it if no one is in it
+		private boolean claimSlot(String name) {
+			synchronized (channels) {
+				Channel claimed = channels.get(name);
+				if (claimed == null) {
+					if (channels.size() == RoomManager.MAX_ROOMS)
+						return false;
+					claimed = new Channel(name);
+					channels.put(name, claimed);
+					channelCount = channels.size();
+				}
+				for (int i = 0; i < playerCount; i++) {
+					if (!claimed.taken[i]) {
+						claimed.taken[i] = true;
+						claimed.count++;
+						channel = claimed;
+						index = i;
+						return true;
+					}
+				}
+				return false;
+			}
+		}
 	}
 
 	// Utility methods for ChatServer below
 
 	/**
-	 * Returns the first slot of the {@code available} that is available to get a
-	 * connection and sets it to {@code false}.
+	 * Sends message {@code msg} to every client in the chat of {@code room}, if
+	 * anyone is in it.
 	 * 
-	 * @return int, the available slot, -1 when no slot is available.
-	 * @see ChatServer#available available
+	 * @param room String, the name of the room
+	 * @param msg  String, text to send
+	 * @param args Object[], arguments
 	 */
-	private int getAvailable() {
-		for (int i = 0; i < playerCount; i++)
-			if (available[i]) {
-				available[i] = false;
-				return i;
-			}
-		return -1;
+	void broadcastTo(String room, String msg, Object... args) {
+		Channel channel;
+		synchronized (channels) {
+			channel = channels.get(room);
+		}
+		// a message with no arguments is sent as it is, '%' and all
+		if (channel != null)
+			broadcastTo(channel, args.length == 0 ? msg : String.format(msg, args));
 	}
 
 	/**
-	 * Closes the Streams bound to client {@code index}, frees up the
-	 * {@code available} slot this Thread occupied (specified by {@code index}) and
-	 * decrements the {@code {@link Server#chatConnected chatConnected}} counter.
+	 * Sends {@code text} to every client in {@code channel}. The message is
+	 * encoded once and the same bytes are written to everyone.
 	 * 
-	 * @param index int, the index of the client
-	 * @see ChatServer#available available
+	 * @param channel Channel, the chat
+	 * @param text    String, text to send
 	 */
-	private void closeStreams(int index) {
-		log("Closing thread " + index);
-		broadcast("Chat Server: '%c' left the chat.", symbols[index]);
+	private void broadcastTo(Channel channel, String text) {
+		Protocol.Frame frame;
 		try {
-			outputs[index].close();
-			inputs[index].close();
+			frame = Protocol.frame(new Message.ChatMessage(text));
 		} catch (IOException e) {
-			logerr("IOException in closeStreams()", e, printStackTrace);
-		} finally {
-			outputs[index] = null;
-			inputs[index] = null;
-			symbols[index] = '\u0000';
-			available[index] = true;
-			screen.updateChatConnectionCounter(-1);
+			logerr("Error in broadcastTo() while encoding\n", e, printStackTrace);
+			return;
 		}
+		synchronized (channel) {
+			for (Connection connection : channel.connections) {
+				if (connection == null)
+					continue;
+				try {
+					connection.sendFrame(frame);
+				} catch (IOException e) {
+					logerr("Error in broadcastTo()\n", e, printStackTrace);
+				}
+			}
+		}
+		log(String.format("Broadcasted to '%s': %s", channel.name, text));
 	}
-	
-	void setScreen(Screen screen) {
-		this.screen.dispose();
-		this.screen = screen;
+
+	// frees up slot index of channel, and closes the chat once no one is in it
+	private void releaseSlot(Channel channel, int index) {
+		synchronized (channels) {
+			channel.taken[index] = false;
+			if (--channel.count == 0) {
+				channels.remove(channel.name);
+				channelCount = channels.size();
+			}
+		}
+	}
+
+	/**
+	 * Closes the Connection to client {@code index} of {@code channel}, frees up
+	 * its slot and decrements the {@code {@link Server#chatConnected
+	 * chatConnected}} counter.
+	 * 
+	 * @param channel Channel, the chat of the client
+	 * @param index   int, the index of the client
+	 */
+	private void closeStreams(Channel channel, int index) {
+		log(String.format("Closing thread %d of chat '%s'", index, channel.name));
+		char symbol;
+		synchronized (channel) {
+			close(channel.connections[index]);
+			channel.connections[index] = null;
+			symbol = channel.symbols[index];
+			channel.symbols[index] = '\u0000';
+		}
+		broadcastTo(channel, String.format("Chat Server: '%c' left the chat.", symbol));
+		releaseSlot(channel, index);
+		screen.updateChatConnectionCounter(-1);
+	}
+
+	private void close(Connection connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			logerr("IOException while closing connection", e, printStackTrace);
+		}
 	}
 	
 	protected int getGameCount() {
 		return 0;
 	}	
 
+	/**
+	 * Returns the number of slots in the chats that are open.
+	 */
 	protected int getChatCount() {
-		return playerCount;
+		return playerCount * Math.max(1, channelCount);
 	}
 
 	/**
@@ -0,0 +1,157 @@
+package ttt_online;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+
+/**
+ * A connection between a client and one of the servers that carries whole
+ * messages. Both sides send every message as a frame: its length, as a 4 byte
+ * {@code int}, followed by the message encoded on its own, so that messages
+ * can be read without blocking and no stream keeps references to the messages
+ * it sent.
+ *
+ * @see Protocol
+ * @see StreamConnection
+ * @see NioTransport
+ */
+abstract class Connection implements Closeable {
+
+	/**
+	 * The largest message that can be sent, in bytes
+	 */
+	static final int MAX_FRAME = 1 << 20;
+
+	/**
+	 * The most bytes of messages that may wait in a connection each way, sent
+	 * but not written yet or received but not read yet
+	 */
+	static final int MAX_QUEUED = 4 * MAX_FRAME;
+
+	/**
+	 * Sends {@code message}.
+	 *
+	 * @param message Object, the message, of a type that
+	 *                {@link Protocol#frame(Object) Protocol} can encode
+	 * @throws IOException if the connection is closed or the message can't be
+	 *                     sent
+	 */
+	void send(Object message) throws IOException {
+		sendFrame(Protocol.frame(message));
+	}
+
+	/**
+	 * Sends a message that is already encoded; the same Frame can be sent to
+	 * any number of connections.
+	 *
+	 * @param frame Frame, the message encoded
+	 * @throws IOException if the connection is closed or fails
+	 */
+	abstract void sendFrame(Protocol.Frame frame) throws IOException;
+
+	/**
+	 * Waits for the next message and returns it.
+	 *
+	 * @return Object, the message
+	 * @throws IOException if the connection is closed or fails, or the message
+	 *                     can't be decoded
+	 */
+	abstract Object receive() throws IOException;
+
+	/**
+	 * Waits at most {@code timeout} milliseconds for the next message and
+	 * returns it.
+	 *
+	 * @param timeout long, the time to wait in milliseconds
+	 * @return Object, the message
+	 * @throws java.net.SocketTimeoutException if no message arrived in time
+	 * @throws IOException                     if the connection is closed or
+	 *                                         fails, or the message can't be
+	 *                                         decoded
+	 */
+	abstract Object receive(long timeout) throws IOException;
+
+	/**
+	 * Waits for the next message, which must be of type {@code type}, and
+	 * returns it.
+	 *
+	 * @param type Class, the type of the message
+	 * @return T, the message
+	 * @throws ProtocolException if the message is of another type
+	 * @throws IOException       if the connection is closed or fails, or the
+	 *                           message can't be decoded
+	 */
+	<T> T receive(Class<T> type) throws IOException {
+		Object message = receive();
+		if (!type.isInstance(message))
+			throw new ProtocolException(String.format("Expected %s but got %s", type.getSimpleName(),
+					message.getClass().getSimpleName()));
+		return type.cast(message);
+	}
+
+	/**
+	 * Returns the address of the other side.
+	 *
+	 * @return InetAddress, the address
+	 */
+	abstract InetAddress getInetAddress();
+
+	/**
+	 * Returns the memory taken by the messages waiting in this connection; sent
+	 * but not written yet, and received but not read yet, along with what it
+	 * takes to keep each of them. Never more than {@code 2*MAX_QUEUED}.
+	 *
+	 * @return long, the bytes waiting
+	 */
+	abstract long getQueuedBytes();
+
+	/**
+	 * Returns the size of the buffers of this connection, which it keeps for as
+	 * long as it's open.
+	 *
+	 * @return long, the size in bytes
+	 */
+	abstract long getBufferBytes();
+
+	/**
+	 * Closes the connection once the messages already sent have been written.
+	 */
+	@Override
+	public abstract void close() throws IOException;
+
+	/**
+	 * Sends the version of the protocol this side speaks; the first message a
+	 * client sends.
+	 *
+	 * @throws IOException if the connection is closed or fails
+	 */
+	void hello() throws IOException {
+		send(new Protocol.Hello(Protocol.VERSION));
+	}
+
+	/**
+	 * Waits at most {@code timeout} milliseconds for the other side to say which
+	 * version of the protocol it speaks. If it isn't this side's version, tells
+	 * the other side why with a {@code Rejected} message and closes the
+	 * connection.
+	 *
+	 * @param timeout long, the time to wait in milliseconds
+	 * @return boolean, whether both sides speak the same version
+	 * @throws IOException if the connection is closed or fails, or the other side
+	 *                     doesn't start with its version
+	 */
+	boolean checkVersion(long timeout) throws IOException {
+		Object message = receive(timeout);
+		if (!(message instanceof Protocol.Hello))
+			throw new ProtocolException("Expected the version of the protocol");
+		int version = ((Protocol.Hello) message).version;
+		if (version == Protocol.VERSION)
+			return true;
+		send(new Message.Rejected(String.format(
+				"The server speaks version %d of the protocol but the client speaks version %d; please update",
+				Protocol.VERSION, version)));
+		close();
+		return false;
+	}
+}
@@ -1,75 +1,202 @@
 package ttt_online;
 
+import java.util.Arrays;
+
 /**
- * Represents the board where Tic-Tac-Toe is played.
+ * Represents the board where Tic-Tac-Toe is played; {@code ROWS} by
+ * {@code COLUMNS} squares where {@code CONSECUTIVE} marks in a row win.
+ * <p>
+ * The board is stored as bitboards: every symbol on the board, and the
+ * occupied squares, get one {@code long} per row where bit {@code col} is
+ * square {@code [row, col]}. Boards can be up to 64x64.
+ * <p>
+ * Moves are encoded as {@code STRIDE*row + col}, where {@code STRIDE} is 10 for
+ * boards with up to 10 columns and 100 for larger ones, so the classic 3x3 to
+ * 8x8 boards keep the {@code 10*row + col} coordinates.
+ * <p>
+ * The board keeps a 64-bit Zobrist hash of its position, updated in O(1) on
+ * every move, along with the hashes of its rotations and reflections so that
+ * positions equal up to symmetry share a canonical hash.
  */
 final class GameBoard {
 
+	/**
+	 * The largest number of rows or columns a board can have
+	 */
+	static final int MAX_SIZE = Long.SIZE;
+
 	final int CONSECUTIVE;
-	final int SIZE;
+	final int ROWS;
+	final int COLUMNS;
+	final int STRIDE;
 	private final static char EMPTY = GameEngine.DASH;
-	private final char[][] board;
+
+	// directions (i.e. steps to take on the board) in which lines are checked
+	private static final int[][] directions = { { 1, 0 }, { 0, 1 }, { 1, -1 }, { 1, 1 } };
+
+	// marks[i] is the symbol whose squares are stored in bitboards[i]
+	private char[] marks = new char[4];
+	private long[][] bitboards;
+	private int markCount = 0;
+	private final long[] occupied;
+
+	// number of squares marked and whether the last move won, for O(1) game over checks
+	private int moveCount = 0;
+	private boolean won = false;
+
+	/**
+	 * Zobrist hashes of the board as seen through each of its symmetries;
+	 * {@code hashes[0]} is the board itself. Square boards have 8 symmetries
+	 * (4 rotations, each optionally reflected), rectangular ones only the first 4.
+	 *
+	 * @see GameBoard#updateHashes(int, int, char) updateHashes()
+	 */
+	private final long[] hashes = new long[8];
+	private final int symmetries;
 
 	/**
-	 * Initialize board of size {@code dimension} with {@code EMPTY} characters.
+	 * Initialize a square board of size {@code boardSize} with {@code EMPTY}
+	 * characters.
 	 */
 	GameBoard(int boardSize, int winningCondition) {
-		this.SIZE = boardSize;
+		this(boardSize, boardSize, winningCondition);
+	}
+
+	/**
+	 * Initialize a {@code rows}x{@code columns} board with {@code EMPTY}
+	 * characters.
+	 *
+	 * @param rows             int, the number of rows
+	 * @param columns          int, the number of columns
+	 * @param winningCondition int, the number of consecutive marks needed to win
+	 */
+	GameBoard(int rows, int columns, int winningCondition) {
+		if (rows > MAX_SIZE || columns > MAX_SIZE)
+			throw new IllegalArgumentException(String.format("Board can't be larger than %dx%d, was %dx%d", MAX_SIZE,
+					MAX_SIZE, rows, columns));
+		this.ROWS = rows;
+		this.COLUMNS = columns;
 		this.CONSECUTIVE = winningCondition;
-		this.board = new char[SIZE][SIZE];
-		for (int i = 0; i < boardSize; i++)
-			for (int j = 0; j < boardSize; j++)
-				board[i][j] = EMPTY;
+		this.STRIDE = columns <= 10 ? 10 : 100;
+		this.bitboards = new long[marks.length][rows];
+		this.occupied = new long[rows];
+		this.symmetries = rows == columns ? 8 : 4;
 	}
 
 	/**
 	 * Initialize board by copying board {@code table}.
-	 * 
+	 *
 	 * @param table char[][], the table to be copied
 	 */
 	GameBoard(char[][] table) {
-		this.SIZE = table.length;
-		this.CONSECUTIVE = 5;// max value, doesn't matter as the check only happens on the GameServer
-		this.board = new char[SIZE][SIZE];
-		for (int i = 0; i < SIZE; i++)
-			for (int j = 0; j < SIZE; j++)
-				board[i][j] = table[i][j];
+		this(table.length, table.length == 0 ? 0 : table[0].length, 5);// max value, doesn't matter as the check only happens on the GameServer
+		for (int i = 0; i < ROWS; i++)
+			for (int j = 0; j < COLUMNS; j++)
+				if (table[i][j] != EMPTY) {
+					set(i, j, table[i][j]);
+					moveCount++;
+				}
+
+		for (int i = 0; i < ROWS && !won; i++)
+			for (int j = 0; j < COLUMNS && !won; j++)
+				if (table[i][j] != EMPTY)
+					won = findLine(i, j) != null;
+	}
+
+	/**
+	 * Initialize board by copying board {@code other}, including its hashes, so
+	 * that the copy can be changed without affecting the original.
+	 *
+	 * @param other GameBoard, the board to be copied
+	 */
+	GameBoard(GameBoard other) {
+		this(other.ROWS, other.COLUMNS, other.CONSECUTIVE);
+		marks = Arrays.copyOf(other.marks, other.marks.length);
+		bitboards = new long[other.bitboards.length][];
+		for (int i = 0; i < bitboards.length; i++)
+			bitboards[i] = Arrays.copyOf(other.bitboards[i], ROWS);
+		System.arraycopy(other.occupied, 0, occupied, 0, ROWS);
+		System.arraycopy(other.hashes, 0, hashes, 0, hashes.length);
+		markCount = other.markCount;
+		moveCount = other.moveCount;
+		won = other.won;
 	}
 
 	/**
 	 * Marks square a square {@code coord} of the board with {@code mark}.<br>
-	 * Returns boolean indicating success or failure.
-	 * 
+	 * Returns the result of the move, which is calculated by walking at most
+	 * {@code CONSECUTIVE - 1} squares in every direction from the square just
+	 * marked.
+	 *
 	 * @param coord int, the coordinate of the square to be marked, in the form of
-	 *              10*row + col
+	 *              STRIDE*row + col
 	 * @param mark  char, the symbol used to mark the board
-	 * @return boolean, true if square is empty, false if full (can't be marked).
+	 * @return MoveResult, {@code INVALID} if the square can't be marked,
+	 *         otherwise whether the move won, tied or the game continues
 	 * @see GameBoard#isValid(int) isValid()
+	 * @see MoveResult
 	 */
-	boolean markSquare(int coord, char mark) {
+	MoveResult markSquare(int coord, char mark) {
 		if (!isValid(coord))
-			return false;
-		board[coord / 10][coord % 10] = mark;
-		return true;
+			return MoveResult.INVALID;
+
+		int row = getRow(coord), col = getColumn(coord);
+		set(row, col, mark);
+		moveCount++;
+
+		int[] line = findLine(row, col);
+		if (line != null) {
+			won = true;
+			return new MoveResult(MoveResult.Outcome.WIN, line);
+		}
+		return moveCount == ROWS * COLUMNS ? MoveResult.TIE : MoveResult.CONTINUE;
+	}
+
+	/**
+	 * Takes back a move; empties square {@code coord} and updates the hashes and
+	 * counters as if it had never been marked. Used by the AI players to search
+	 * without copying the board, so it assumes that no one had won before the
+	 * move being taken back.
+	 *
+	 * @param coord int, the coordinate of a marked square
+	 */
+	void unmarkSquare(int coord) {
+		int row = getRow(coord), col = getColumn(coord);
+		for (int i = 0; i < markCount; i++) {
+			if ((bitboards[i][row] & (1L << col)) != 0) {
+				bitboards[i][row] &= ~(1L << col);
+				occupied[row] &= ~(1L << col);
+				updateHashes(row, col, marks[i]);
+				moveCount--;
+				won = false;
+				return;
+			}
+		}
 	}
 
 	/**
 	 * Checks if a move can be played at square {@code coord}.
-	 * 
+	 *
 	 * @param coord int, the coordinate to check
 	 * @return boolean, true if valid, false if not
 	 */
 	boolean isValid(int coord) {
-		return (board[coord / 10][coord % 10] == EMPTY) && (0 <= coord) && (coord <= 55);
+		if (coord < 0 || getRow(coord) >= ROWS || getColumn(coord) >= COLUMNS)
+			return false;
+		return (occupied[getRow(coord)] & (1L << getColumn(coord))) == 0;
 	}
 
 	/**
 	 * Clears the board; fills all squares with {@code EMPTY}
 	 */
 	void clear() {
-		for (int i = 0; i < SIZE; i++)
-			for (int j = 0; j < SIZE; j++)
-				board[i][j] = EMPTY;
+		for (long[] bitboard : bitboards)
+			Arrays.fill(bitboard, 0L);
+		Arrays.fill(occupied, 0L);
+		Arrays.fill(hashes, 0L);
+		markCount = 0;
+		moveCount = 0;
+		won = false;
 	}
 
 	/**
@@ -78,9 +205,9 @@ final class GameBoard {
 	@Override
 	public String toString() {
 		StringBuffer repr = new StringBuffer("");
-		for (char[] row : board) {
-			for (char c : row) {
-				repr.append(c);
+		for (int i = 0; i < ROWS; i++) {
+			for (int j = 0; j < COLUMNS; j++) {
+				repr.append(getSquare(i, j));
 				repr.append(" ");
 			}
 			repr.append("\n");
@@ -89,64 +216,414 @@ final class GameBoard {
 	}
 
 	/**
-	 * Checks if the game is over.<br>
-	 * Supports custom {@code directions} (i.e. steps to take on the board) and any
-	 * amount of {@code consecutive} squares.
-	 * 
+	 * Checks if the game is over; i.e. if a move has completed a line.
+	 *
 	 * @return boolean, true if someone has won, false otherwise
 	 */
 	boolean hasWon() {
-		int[][] directions = { { 1, 0 }, { 0, 1 }, { 1, -1 }, { 1, 1 } };
-		for (int[] direction : directions) {
-			// for every direction...
-			int dx = direction[0];
-			int dy = direction[1];
-			for (int x = 0; x < board.length; x++) {
-				for (int y = 0; y < board.length; y++) {
-					// for every square starting from [x, y] in that direction...
-					try {
-						// assume it's a winning sequence
-						boolean res = true;
-						char target = board[x][y];
-						for (int i = 0; i < CONSECUTIVE; i++) {
-							// for <CONSECUTIVE> squares in that direction,
-							// "and" square==target and the result
-							// so if once 'square != target', res is false
-							char boardSquare = board[x + i * dx][y + i * dy];
-							res = res && (boardSquare == target) && (boardSquare != EMPTY);
-						}
-						if (res)
-							return true; // winner
-					} catch (ArrayIndexOutOfBoundsException e) {
-						; // if search goes outside the board go to the next square
-					}
-				}
-			}
-		}
-		return false; // end of loop; no winner
+		return won;
 	}
 
 	/**
 	 * Checks if the board is filled and no one has won; i.e. it's a tie.
-	 * 
+	 *
 	 * @return boolean, true if there is a tie, false otherwise
 	 */
 	boolean hasTied() {
-		for (int i = 0; i < SIZE; i++) {
-			for (int j = 0; j < SIZE; j++) {
-				if (board[i][j] == EMPTY)
-					return false;
-			}
+		return moveCount == ROWS * COLUMNS && !won;
+	}
+
+	/**
+	 * Returns the number of squares marked since the board was last cleared.
+	 *
+	 * @return int, the number of moves
+	 */
+	int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Returns the symbol at square {@code [row, col]}.
+	 *
+	 * @param row int, the row of the square
+	 * @param col int, the column of the square
+	 * @return char, the symbol or {@code EMPTY}
+	 */
+	char getSquare(int row, int col) {
+		if ((occupied[row] & (1L << col)) != 0)
+			for (int i = 0; i < markCount; i++)
+				if ((bitboards[i][row] & (1L << col)) != 0)
+					return marks[i];
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the squares of row {@code row} marked with {@code mark} as a
+	 * bitboard; bit {@code col} is set if square {@code [row, col]} is marked.
+	 *
+	 * @param row  int, the row
+	 * @param mark char, the symbol
+	 * @return long, the bitboard of the row, 0 if the symbol isn't on the board
+	 */
+	long getBits(int row, char mark) {
+		for (int i = 0; i < markCount; i++)
+			if (marks[i] == mark)
+				return bitboards[i][row];
+		return 0L;
+	}
+
+	/**
+	 * Returns the occupied squares of row {@code row} as a bitboard.
+	 *
+	 * @param row int, the row
+	 * @return long, the bitboard of the row
+	 * @see GameBoard#getBits(int, char) getBits()
+	 */
+	long getOccupiedBits(int row) {
+		return occupied[row];
+	}
+
+	/**
+	 * Returns the Zobrist hash of the position; the XOR of a random-looking key
+	 * for every marked square and its symbol. Equal positions always have equal
+	 * hashes, on any board and in any process.
+	 *
+	 * @return long, the hash
+	 * @see GameBoard#zobrist(int, int, char) zobrist()
+	 */
+	long getHash() {
+		return hashes[0];
+	}
+
+	/**
+	 * Returns the hash of the position that is the same for all its rotations and
+	 * reflections; the smallest hash among the symmetries of the board.
+	 *
+	 * @return long, the canonical hash
+	 */
+	long getCanonicalHash() {
+		long min = hashes[0];
+		for (int i = 1; i < symmetries; i++)
+			min = Math.min(min, hashes[i]);
+		return min;
+	}
+
+	/**
+	 * Returns the rotation or reflection of the board whose hash is the canonical
+	 * hash, so that moves can be translated to and from the canonical position.
+	 *
+	 * @return int, the index of the symmetry
+	 * @see GameBoard#toSymmetry(int, int) toSymmetry()
+	 */
+	int getCanonicalSymmetry() {
+		int min = 0;
+		for (int i = 1; i < symmetries; i++)
+			if (hashes[i] < hashes[min])
+				min = i;
+		return min;
+	}
+
+	/**
+	 * Returns where rotation or reflection {@code symmetry} puts square
+	 * {@code coord}.
+	 *
+	 * @param coord    int, the coordinate of the square
+	 * @param symmetry int, the index of the symmetry
+	 * @return int, the coordinate of the square in the symmetric board
+	 */
+	int toSymmetry(int coord, int symmetry) {
+		int row = getRow(coord), col = getColumn(coord), n = ROWS - 1, m = COLUMNS - 1;
+		switch (symmetry) {
+		case 0:
+			return coord;
+		case 1:
+			return toCoord(row, m - col);
+		case 2:
+			return toCoord(n - row, col);
+		case 3:
+			return toCoord(n - row, m - col);
+		case 4:
+			return toCoord(col, row);
+		case 5:
+			return toCoord(col, n - row);
+		case 6:
+			return toCoord(m - col, row);
+		default:
+			return toCoord(m - col, n - row);
 		}
-		return !hasWon();
 	}
 
 	/**
-	 * Returns the GameBoard in 2D char[][] format
-	 * 
+	 * The opposite of {@code toSymmetry}; returns the square that rotation or
+	 * reflection {@code symmetry} puts at {@code coord}.
+	 *
+	 * @param coord    int, the coordinate of the square in the symmetric board
+	 * @param symmetry int, the index of the symmetry
+	 * @return int, the coordinate of the square
+	 * @see GameBoard#toSymmetry(int, int) toSymmetry()
+	 */
+	int fromSymmetry(int coord, int symmetry) {
+		// the two quarter turns undo each other, every other symmetry undoes itself
+		return toSymmetry(coord, symmetry == 5 ? 6 : symmetry == 6 ? 5 : symmetry);
+	}
+
+	/**
+	 * Returns the canonical hash the board would have after marking square
+	 * {@code coord} with {@code mark}, without marking it.
+	 *
+	 * @param coord int, the coordinate of an empty square
+	 * @param mark  char, the symbol
+	 * @return long, the canonical hash after the move
+	 * @see GameBoard#getCanonicalHash() getCanonicalHash()
+	 */
+	long getCanonicalHash(int coord, char mark) {
+		int row = getRow(coord), col = getColumn(coord);
+		long min = hashes[0] ^ symmetricKey(0, row, col, mark);
+		for (int i = 1; i < symmetries; i++)
+			min = Math.min(min, hashes[i] ^ symmetricKey(i, row, col, mark));
+		return min;
+	}
+
+	/**
+	 * Returns the Zobrist key of square {@code [row, col]} marked with
+	 * {@code mark}. The keys are calculated with the SplitMix64 mixing function
+	 * instead of being stored in tables, so they exist for every board size and
+	 * symbol and never change.
+	 *
+	 * @param row  int, the row of the square
+	 * @param col  int, the column of the square
+	 * @param mark char, the symbol
+	 * @return long, the key
+	 */
+	static long zobrist(int row, int col, char mark) {
+		long z = (((long) row << 32) | (col & 0xffffffffL)) * 0x9e3779b97f4a7c15L + mark * 0xc2b2ae3d27d4eb4fL;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns the GameBoard in 2D char[][] format. The array is a copy so changing
+	 * it doesn't affect the board.
+	 *
 	 * @return char[][], the board
 	 */
 	char[][] getBoard() {
+		char[][] board = new char[ROWS][COLUMNS];
+		for (int i = 0; i < ROWS; i++)
+			for (int j = 0; j < COLUMNS; j++)
+				board[i][j] = getSquare(i, j);
 		return board;
 	}
+
+	// ----- COORDINATES -----
+
+	/**
+	 * Returns the coordinate of square {@code [row, col]}.
+	 *
+	 * @param row int, the row of the square
+	 * @param col int, the column of the square
+	 * @return int, the coordinate in the form of STRIDE*row + col
+	 */
+	int toCoord(int row, int col) {
+		return STRIDE * row + col;
+	}
+
+	/**
+	 * Returns the row of coordinate {@code coord}.
+	 */
+	int getRow(int coord) {
+		return coord / STRIDE;
+	}
+
+	/**
+	 * Returns the column of coordinate {@code coord}.
+	 */
+	int getColumn(int coord) {
+		return coord % STRIDE;
+	}
+
+	/**
+	 * Returns the name of coordinate {@code coord} as shown to the players; the
+	 * row as letters (A-Z, AA-AZ, ...) followed by the column starting from 1.
+	 *
+	 * @param coord int, the coordinate
+	 * @return String, the name of the square, e.g. "B3"
+	 */
+	String toText(int coord) {
+		return rowName(getRow(coord)) + (getColumn(coord) + 1);
+	}
+
+	/**
+	 * Parses the name of a square, the opposite of {@code toText}.
+	 *
+	 * @param text String, the name of a square, e.g. "B3"
+	 * @return int, the coordinate or -1 if the text isn't a square of this board
+	 * @see GameBoard#toText(int) toText()
+	 */
+	int fromText(String text) {
+		int i = 0, row = 0, col = 0;
+		while (i < text.length() && text.charAt(i) >= 'A' && text.charAt(i) <= 'Z' && row <= MAX_SIZE)
+			row = 26 * row + text.charAt(i++) - 'A' + 1;
+		if (i == 0 || i == text.length())
+			return -1;
+		while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9' && col <= MAX_SIZE)
+			col = 10 * col + text.charAt(i++) - '0';
+		if (i != text.length() || row > ROWS || col < 1 || col > COLUMNS)
+			return -1;
+		return toCoord(row - 1, col - 1);
+	}
+
+	/**
+	 * Returns the letters of row {@code row}; A-Z, then AA-AZ, BA-BZ etc.
+	 *
+	 * @param row int, the row
+	 * @return String, the row's letters
+	 */
+	static String rowName(int row) {
+		String name = "";
+		for (row++; row > 0; row = (row - 1) / 26)
+			name = (char) ('A' + (row - 1) % 26) + name;
+		return name;
+	}
+
+	// ----- PRIVATE METHODS / CLASSES -----
+
+	/**
+	 * Marks square {@code [row, col]} with {@code mark}, adding a bitboard for the
+	 * symbol if it isn't on the board yet.
+	 */
+	private void set(int row, int col, char mark) {
+		int index = 0;
+		while (index < markCount && marks[index] != mark)
+			index++;
+
+		if (index == markCount) {
+			if (markCount == marks.length) {
+				marks = Arrays.copyOf(marks, 2 * markCount);
+				bitboards = Arrays.copyOf(bitboards, 2 * markCount);
+				for (int i = markCount; i < bitboards.length; i++)
+					bitboards[i] = new long[ROWS];
+			}
+			marks[index] = mark;
+			markCount++;
+		}
+
+		bitboards[index][row] |= 1L << col;
+		occupied[row] |= 1L << col;
+		updateHashes(row, col, mark);
+	}
+
+	/**
+	 * Toggles {@code mark} at square {@code [row, col]} in the hash of every
+	 * symmetry.
+	 */
+	private void updateHashes(int row, int col, char mark) {
+		for (int i = 0; i < symmetries; i++)
+			hashes[i] ^= symmetricKey(i, row, col, mark);
+	}
+
+	/**
+	 * Returns the Zobrist key of square {@code [row, col]} moved to where
+	 * rotation or reflection {@code symmetry} would put it.
+	 */
+	private long symmetricKey(int symmetry, int row, int col, char mark) {
+		int n = ROWS - 1, m = COLUMNS - 1;
+		switch (symmetry) {
+		case 0:
+			return zobrist(row, col, mark);
+		case 1:
+			return zobrist(row, m - col, mark);
+		case 2:
+			return zobrist(n - row, col, mark);
+		case 3:
+			return zobrist(n - row, m - col, mark);
+		case 4:
+			return zobrist(col, row, mark);
+		case 5:
+			return zobrist(col, n - row, mark);
+		case 6:
+			return zobrist(m - col, row, mark);
+		default:
+			return zobrist(m - col, n - row, mark);
+		}
+	}
+
+	/**
+	 * Returns the line of at least {@code CONSECUTIVE} squares with the same mark
+	 * as square {@code [row, col]} that passes through it, or null if there isn't
+	 * one. Only looks at the {@code CONSECUTIVE - 1} squares on either side of
+	 * the square in every direction.
+	 */
+	private int[] findLine(int row, int col) {
+		long[] bitboard = null;
+		for (int i = 0; i < markCount && bitboard == null; i++)
+			if ((bitboards[i][row] & (1L << col)) != 0)
+				bitboard = bitboards[i];
+
+		for (int[] direction : directions) {
+			int dx = direction[0], dy = direction[1];
+			int back = count(bitboard, row, col, -dx, -dy);
+			int forward = count(bitboard, row, col, dx, dy);
+			if (back + 1 + forward >= CONSECUTIVE) {
+				int[] line = new int[back + 1 + forward];
+				for (int i = 0; i < line.length; i++)
+					line[i] = toCoord(row + (i - back) * dx, col + (i - back) * dy);
+				return line;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Counts the squares marked in {@code bitboard} starting next to
+	 * {@code [row, col]} and moving by {@code [dx, dy]}, up to
+	 * {@code CONSECUTIVE - 1} squares.
+	 */
+	private int count(long[] bitboard, int row, int col, int dx, int dy) {
+		int count = 0;
+		for (int x = row + dx, y = col + dy; count < CONSECUTIVE - 1; x += dx, y += dy, count++)
+			if (x < 0 || x >= ROWS || y < 0 || y >= COLUMNS || (bitboard[x] & (1L << y)) == 0)
+				break;
+		return count;
+	}
+
+	/**
+	 * The result of marking a square; whether the move was invalid, won, tied or
+	 * the game continues. Winning moves also carry the squares of the line they
+	 * completed.
+	 */
+	static final class MoveResult {
+
+		enum Outcome {
+			INVALID, CONTINUE, WIN, TIE
+		}
+
+		// results without a line are shared so that most moves don't allocate
+		static final MoveResult INVALID = new MoveResult(Outcome.INVALID, new int[0]);
+		static final MoveResult CONTINUE = new MoveResult(Outcome.CONTINUE, new int[0]);
+		static final MoveResult TIE = new MoveResult(Outcome.TIE, new int[0]);
+
+		final Outcome outcome;
+
+		/**
+		 * The coordinates of the winning line in the form of STRIDE*row + col, empty
+		 * if the move didn't win
+		 */
+		final int[] line;
+
+		private MoveResult(Outcome outcome, int[] line) {
+			this.outcome = outcome;
+			this.line = line;
+		}
+
+		/**
+		 * Checks if this move ended the game.
+		 *
+		 * @return boolean, true if the move won or tied, false otherwise
+		 */
+		boolean isOver() {
+			return outcome == Outcome.WIN || outcome == Outcome.TIE;
+		}
+	}
 }
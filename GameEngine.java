@@ -8,14 +8,10 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.InetAddress;
-import java.net.Socket;
+import java.net.ProtocolException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.*;
 
 /**
@@ -28,6 +24,7 @@ final class GameEngine implements Logging {
 	// default ports of the Game and Chat Servers
 	private static final int GAME_PORT = 10001;
 	private static final int CHAT_PORT = 10002;
+	private static final int HINT_PORT = 10003;
 
 	final static char DASH = '-';
 
@@ -41,6 +38,8 @@ final class GameEngine implements Logging {
 
 	// variables Initialized from UI
 	private String address;
+	// the room asked for, empty for any room, then the room the server picked
+	private String room;
 	private boolean printStackTrace;
 	// used to determine UI and graphics size
 	private static final int HEIGHT_MULTIPLIER = Toolkit.getDefaultToolkit().getScreenSize().height < 750 ? 1 : 2;
@@ -55,15 +54,40 @@ final class GameEngine implements Logging {
 
 	private final GameUI ui;
 
-	private Socket serverSocket, chatSocket;
-	private ObjectOutputStream serverOutput, chatOutput;
-	private ObjectInputStream serverInput, chatInput;
+	private Connection server;
+	private Connection chat;
+
+	// what the client does with every message of the Game and Chat Servers
+	private final Message.Dispatcher gameDispatcher = new Message.Dispatcher();
+	private final Message.Dispatcher chatDispatcher = new Message.Dispatcher();
+
+	// the seat of the player in their room
+	private int seat;
 
 	private ChatReader chatReader;
 	private ChatWriter chatWriter;
 
+	private Connection hint;
+
+	// the threads that ask for hints and read them, which must not keep the client running, and when they stop
+	private final ExecutorService hintExec = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "hint");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private volatile boolean gameOver = false;
+
 	private GameBoard localGameBoard;
 
+	// the symbol of every seat, the sequence number of the board and whether the whole board was asked for
+	private char[] symbols;
+	private int sequence = -1;
+	private boolean syncing;
+
 	/**
 	 * Constructs the GameEngine and sets up the UI.
 	 * 
@@ -83,6 +107,8 @@ final class GameEngine implements Logging {
 
 		ui = new GameUI(color, character, GameEngine.HEIGHT_MULTIPLIER);
 		setupUI();
+		setupGameDispatcher();
+		setupChatDispatcher();
 	}
 
 	/**
@@ -99,28 +125,23 @@ final class GameEngine implements Logging {
 	 */
 	private void run() {
 		// use return codes of each method to determine success or failure
-		// and continue execution accordingly
-		if (serverCode == CHAT_GAME || serverCode == CHAT) {
-			if (getChatConnection() == 0) {
-				initChat();
-				ui.setEnableChat(true);
-			}
-		}
+		// and continue execution accordingly; players join the chat of their room
+		// once the Game Server has seated them
+		if (serverCode == CHAT)
+			joinChat();
 		if (serverCode == CHAT_GAME || serverCode == GAME) {
 			if (getServerConnection() == 1)
 				return;
+			hintExec.execute(new HintWriter());
 
 			// this loops exits when:
-			// - any method does not execute normally (return code 1)
-			// - game ends normally inside setup() (return code 2)
+			// - any message is not handled normally (return code 1)
+			// - game ends normally (return code 2)
 			while (true) {
-				if (setup(true) != 0)
-					break;
-				if (play() != 0)
-					break;
-				if (setup(false) != 0)
+				if (receiveGameMessage() != 0)
 					break;
 			}
+			gameOver = true;
 		}
 		ui.setEnableTurn(false);
 	}
@@ -140,158 +161,203 @@ final class GameEngine implements Logging {
 
 	/**
 	 * Initializes a connection to the Game Server.<br>
-	 * Gets its input and output streams.<br>
-	 * Exchanges some messages.<br>
-	 * <br>
-	 * If two or more players have the same symbol, the server allocates them
-	 * special unique chess pieces and informs the client here.<br>
+	 * Asks for a room and sends the player's symbol and color; the server
+	 * answers with messages that the {@code gameDispatcher} handles.<br>
 	 * <br>
 	 * If at any point something goes wrong, show pop-up message then exit.
 	 * 
 	 * @see GameEngine#exit(String, String, int, Exception, boolean) exit()
+	 * @see GameEngine#setupGameDispatcher() setupGameDispatcher()
 	 * @return int, 0 or 1, indicating success or fail
 	 */
 	private int getServerConnection() {
 		try {
 			// get connection
-			serverSocket = new Socket(InetAddress.getByName(address), GAME_PORT);
-			serverOutput = new ObjectOutputStream(serverSocket.getOutputStream());
-			serverInput = new ObjectInputStream(serverSocket.getInputStream());
-
-			// exchange messages and get the index of the connection to server (look below)
-			serverOutput.writeObject(ui.getSymbol());
-			serverOutput.writeObject(ui.getColor());
-
-			String serverMsg = (String) serverInput.readObject();
-			ui.pushMessage("\nGame Server said: %s", serverMsg);
-
-			Matcher m = Pattern.compile(".*#(\\d).*").matcher(serverMsg);
-			m.find();
-			int connectionToServerIndex = Integer.parseInt(m.group(1));
-
-			log(String.format(
-					"Connected to Game Server successfully as player '%c' with number #%d with color (r, g, b): (%d, %d %d)",
-					ui.getSymbol(), connectionToServerIndex, ui.getColor().getRed(), ui.getColor().getGreen(),
-					ui.getColor().getBlue()));
-
-			// wait for ready message and for updated symbols/colors
-			ui.pushMessage("\nGame Server said: %s", (String) serverInput.readObject());
-
-			char[] symbols = ((char[]) serverInput.readObject());
-			Color[] colors = ((Color[]) serverInput.readObject());
-
-			// using index of the connection to server, figure out if symbol has changed
-			// if it has, show popup and update the label at the top
-			if (ui.getSymbol() != symbols[connectionToServerIndex]) {
-				JOptionPane.showMessageDialog(this.ui,
-						"Looks like you selected the same symbol as another player connected to the Game Server.\nWorry not, because we provided you with an exclusive chess piece as your symbol!",
-						"Message", INFORMATION);
-				ui.setSymbol(symbols[connectionToServerIndex]);
-			}
-			ui.setCustomOptions(symbols, colors);
+			server = StreamConnection.connect(address, GAME_PORT);
 
+			server.send(room);
+			server.send(ui.getSymbol());
+			server.send(ui.getColor());
 		} catch (IOException e) {
 			exit("Couldn't connect to Game Server; if you're connected to chat server you may still chat.\n\nIf you don't know why this happened, please inform the developers",
 					"!game! IOException in getServerConnection()\n", WARNING, e, serverCode == GAME,
 					"Connection Error");
 			return 1;
-		} catch (ClassNotFoundException e) {
-			exit("Something went very wrong; please exit and inform the developers",
-					"!game! ClassNotFoundException in getServerConnection()\n", ERROR, e, true, "Very Serious Error");
-			return 1;
 		}
 		return 0;
 	}
 
 	/**
-	 * Sets up the UI and exchanges messages before and after the player makes their
-	 * move.<br>
+	 * Waits for the next message of the Game Server and hands it to the
+	 * {@code gameDispatcher}.<br>
 	 * If at any point something goes wrong, show pop-up message then exit.
 	 * 
-	 * @param starting boolean, whether or not it is the start or the end of the
-	 *                 player's turn
 	 * @see GameEngine#exit(String, String, int, Exception, boolean) exit()
 	 * @return int, 0, 1 or 2 indicating success, fail or normal game ending
 	 *         respectively
 	 */
-	private int setup(boolean starting) {
+	private int receiveGameMessage() {
 		try {
-			if (starting) {
+			return gameDispatcher.dispatch(server.receive(Message.class));
+		} catch (EOFException e) {
+			exit("Another player unexpectedly disconnected; if you're connected to chat server you may still chat.\n\nIf you don't know why this happened, please inform the developers",
+					"!game! EOFException in receiveGameMessage()", INFORMATION, e, serverCode == GAME,
+					"Player Disconnected");
+			return 1;
+		} catch (ProtocolException e) {
+			exit("Something went very wrong; please exit and inform the developers",
+					"!game! ProtocolException in receiveGameMessage()", ERROR, e, true, "Very Serious Error");
+			return 1;
+		} catch (IOException e) {
+			exit("Connection to Game Server lost; if you're connected to chat server you may still chat.\n\nIf you don't know why this happened, please inform the developers",
+					"!game! IOException in receiveGameMessage()", WARNING, e, serverCode == GAME, "Connection Error");
+			return 1;
+		}
+	}
+
+	/**
+	 * Sets up what the client does with every message of the Game Server.
+	 * Every handler returns 0, 1 or 2, indicating success, fail or normal game
+	 * ending respectively.
+	 * <ul>
+	 * <li>Welcome: the seat and room of the player
+	 * <li>Rejected: why there is no seat for the player
+	 * <li>SymbolReassigned: the chess piece that replaces a duplicate symbol
+	 * <li>GameStart: the symbols and colors of everyone
+	 * <li>BoardUpdate: the whole board
+	 * <li>BoardDelta: a move, played on the board the player already has; if it
+	 * doesn't follow the last one or the checksums don't match the whole board
+	 * is asked for
+	 * <li>TurnStart: the player makes their move, once their board is the
+	 * server's
+	 * <li>MoveAck: the move was played
+	 * <li>GameOver: who won, resigned or if it's a tie
+	 * <li>ChatMessage: anything else the server has to say
+	 * </ul>
+	 */
+	private void setupGameDispatcher() {
+		gameDispatcher.on(Message.Welcome.class, new Message.Handler<Message.Welcome>() {
+			@Override
+			public int handle(Message.Welcome welcome) {
+				seat = welcome.seat;
+				room = welcome.room;
+				ui.pushMessage("\nGame Server said: %s", welcome.text);
+				log(String.format(
+						"Connected to Game Server successfully as player '%c' with number #%d with color (r, g, b): (%d, %d %d)",
+						ui.getSymbol(), seat, ui.getColor().getRed(), ui.getColor().getGreen(),
+						ui.getColor().getBlue()));
+				if (serverCode == CHAT_GAME)
+					joinChat();
+				return 0;
+			}
+		}).on(Message.Rejected.class, new Message.Handler<Message.Rejected>() {
+			@Override
+			public int handle(Message.Rejected rejected) {
+				exit(String.format("The Game Server couldn't seat you:\n%s", rejected.reason),
+						"!game! no seat in getServerConnection()\n", WARNING, null, serverCode == GAME, "No Seat");
+				return 1;
+			}
+		}).on(Message.SymbolReassigned.class, new Message.Handler<Message.SymbolReassigned>() {
+			@Override
+			public int handle(Message.SymbolReassigned reassigned) {
+				JOptionPane.showMessageDialog(ui,
+						"Looks like you selected the same symbol as another player connected to the Game Server.\nWorry not, because we provided you with an exclusive chess piece as your symbol!",
+						"Message", INFORMATION);
+				ui.setSymbol(reassigned.symbol);
+				return 0;
+			}
+		}).on(Message.GameStart.class, new Message.Handler<Message.GameStart>() {
+			@Override
+			public int handle(Message.GameStart start) {
+				ui.pushMessage("\nGame Server said: %s", start.text);
+				ui.setCustomOptions(start.symbols, start.colors);
+				symbols = start.symbols;
+				return 0;
+			}
+		}).on(Message.BoardUpdate.class, new Message.Handler<Message.BoardUpdate>() {
+			@Override
+			public int handle(Message.BoardUpdate update) throws IOException {
+				updateBoard(update.board);
+				sequence = update.sequence;
+				syncing = false;
+				return 0;
+			}
+		}).on(Message.BoardDelta.class, new Message.Handler<Message.BoardDelta>() {
+			@Override
+			public int handle(Message.BoardDelta delta) throws IOException {
+				// the whole board is on its way
+				if (syncing)
+					return 0;
+				if (delta.sequence != sequence + 1 || !applyMove(delta)) {
+					log(String.format("Board out of sync at #%d; asking for the whole board", delta.sequence));
+					requestBoard();
+					return 0;
+				}
+				sequence = delta.sequence;
+				return 0;
+			}
+		}).on(Message.TurnStart.class, new Message.Handler<Message.TurnStart>() {
+			@Override
+			public int handle(Message.TurnStart start) throws IOException {
+				if (!syncing && start.sequence != sequence)
+					requestBoard();
+				// don't play on a board that isn't the server's
+				while (syncing) {
+					int code = receiveGameMessage();
+					if (code != 0)
+						return code;
+				}
+
 				ui.pushMessage("");
 				ui.focusMove();
 				log("\nStarting turn");
-			} else {
+				ui.pushMessage(start.text);
+				ui.setEnableTurn(true);
+
+				int code = play();
+
 				// disable buttons/text
-				if (serverCode == CHAT_GAME) {
+				if (serverCode == CHAT_GAME)
 					ui.focusChat();
-				}
 				ui.setEnableTurn(false);
+				return code;
 			}
-
-			// update boards till your turn
-			Object serverMessage = serverInput.readObject();
-			if (starting) {
-				do {
-					try {updateBoard((char[][]) serverMessage);}
-					catch (ClassCastException e) {break;}
-					serverMessage = serverInput.readObject();
-				} while (serverMessage instanceof char[][]);
+		}).on(Message.MoveAck.class, new Message.Handler<Message.MoveAck>() {
+			@Override
+			public int handle(Message.MoveAck ack) {
+				ui.pushMessage("%c", '\u2713');
+				return 0;
 			}
-			log("done reading boards");
-
-			// get ready message
-			String response = (String) serverMessage;
-
-			// if message is "won" or "resigned" or "tie"
-			// display some messages and stop game thread (return code 2)
-			if (response.matches("Player.*resigned") || response.matches("Player.*won!")) {
-				if (response.charAt(8) == ui.getSymbol())
+		}).on(Message.GameOver.class, new Message.Handler<Message.GameOver>() {
+			@Override
+			public int handle(Message.GameOver over) {
+				boolean you = over.player == ui.getSymbol();
+				boolean resigned = over.reason == Message.GameOver.Reason.RESIGNED;
+				// the move that ended the game isn't acknowledged otherwise
+				if (you)
 					ui.pushMessage("%c", '\u2713');
-				updateBoard((char[][]) serverInput.readObject());
 				ui.setEnableTurn(false);
 
-				// trust the spaghetti, it just makes the correct message without 4 if
-				// statements
-				String msg = String.format("\n\n%s\n\nGame ended; %s",
-						response.charAt(8) == ui.getSymbol()
-								? response.matches("Player.*resigned") ? "You resigned :(" : "You won :)"
-								: response.matches("Player.*resigned") ? response + " :)" : response + " :(",
-						serverCode == GAME ? "please exit" : "you can still chat, or exit to play another game");
-				exit(msg, "!game! game ended", INFORMATION, null, serverCode == GAME, "Game Over");
-				return 2;
-			} else if (response.equals("It's a tie!")) {
-				updateBoard((char[][]) serverInput.readObject());
-				ui.setEnableTurn(false);
-				String msg = String.format("\n\n%s\n\nGame ended; %s", "It's a tie!",
+				String result;
+				if (over.reason == Message.GameOver.Reason.TIE)
+					result = "It's a tie!";
+				else if (you)
+					result = resigned ? "You resigned :(" : "You won :)";
+				else
+					result = String.format(resigned ? "Player '%c' resigned :)" : "Player '%c' won! :(", over.player);
+
+				String msg = String.format("\n\n%s\n\nGame ended; %s", result,
 						serverCode == GAME ? "please exit" : "you can still chat, or exit to play another game");
 				exit(msg, "!game! game ended", INFORMATION, null, serverCode == GAME, "Game Over");
 				return 2;
 			}
-
-			log("Got response: " + response);
-			ui.pushMessage(response);
-
-			// update board
-			updateBoard((char[][]) serverInput.readObject());
-
-			// enable buttons/text
-			ui.setEnableTurn(starting);
-
-			log(String.format("End %s setup", starting ? "starting" : "ending"));
-		} catch (EOFException e) {
-			exit("Another player unexpectedly disconnected; if you're connected to chat server you may still chat.\n\nIf you don't know why this happened, please inform the developers",
-					"!game! EOFException in setup()", INFORMATION, e, serverCode == GAME, "Player Disconnected");
-			return 1;
-		} catch (IOException e) {
-			exit("Connection to Game Server lost; if you're connected to chat server you may still chat.\n\nIf you don't know why this happened, please inform the developers",
-					"!game! IOException in setup()", WARNING, e, serverCode == GAME, "Connection Error");
-			return 1;
-		} catch (ClassNotFoundException e) {
-			exit("Something went very wrong; please exit and inform the developers",
-					"!game! ClassNotFoundException in setup()", ERROR, e, true, "Very Serious Error");
-			return 1;
-		}
-		return 0;
+		}).on(Message.ChatMessage.class, new Message.Handler<Message.ChatMessage>() {
+			@Override
+			public int handle(Message.ChatMessage message) {
+				ui.pushMessage("%s", message.text);
+				return 0;
+			}
+		});
 	}
 
 	/**
@@ -307,9 +373,9 @@ final class GameEngine implements Logging {
 		int move = -1;
 		while (move == -1) {
 			move = ui.getAnswer();
-			if (move != -1 && move != -2 && !localGameBoard.isValid(move)) {
-				ui.pushMessage("You can't play %c%s!", 65 + move / 10, move % 10 + 1);
-				log(String.format("Tried to play %c%s", 65 + move / 10, move % 10 + 1));
+			if (move != -1 && move != Message.Move.RESIGN && !localGameBoard.isValid(move)) {
+				ui.pushMessage("You can't play %s!", localGameBoard.toText(move));
+				log(String.format("Tried to play %s", localGameBoard.toText(move)));
 				move = -1;
 			}
 			try {
@@ -320,76 +386,124 @@ final class GameEngine implements Logging {
 			}
 		}
 
-		if (move != -2)
-			ui.pushMessage(String.format("You played %c%s", 65 + move / 10, move % 10 + 1), false);
+		if (move != Message.Move.RESIGN)
+			ui.pushMessage(String.format("You played %s", localGameBoard.toText(move)), false);
 
 		// send the move
 		try {
-			serverOutput.writeObject(move);
+			server.send(new Message.Move(move));
 		} catch (IOException e) {
 			exit("Connection to Game Server lost; if you're connected to chat server you may still chat.\n\nIf you don't know why this happened, please inform the developers",
 					"!game! IOException in play()", WARNING, e, serverCode == GAME, "Connection Error");
 			return 1;
 		}
-		log(String.format("Got and sent move: [%d, %d]", move / 10, move % 10));
+		log(String.format("Got and sent move: [%d, %d]", localGameBoard.getRow(move), localGameBoard.getColumn(move)));
 
 		return 0;
 	}
 
 	/**
 	 * Initializes a connection to the Chat Server.<br>
-	 * Gets its input and output streams.<br>
-	 * Exchanges some messages.<br>
+	 * Sends the player's room and symbol and waits to be welcomed; the server's messages
+	 * are handled by the {@code chatDispatcher}.<br>
 	 * <br>
 	 * If at any point something goes wrong, show pop-up message then exit.
 	 * 
 	 * @see GameEngine#exit(String, String, int, Exception, boolean) exit()
+	 * @see GameEngine#setupChatDispatcher() setupChatDispatcher()
 	 * @return int, 0 or 1, indicating success or fail
 	 */
 	private int getChatConnection() {
 		try {
 			// get connection
-			chatSocket = new Socket(InetAddress.getByName(address), CHAT_PORT);
-			chatOutput = new ObjectOutputStream(chatSocket.getOutputStream());
-			chatOutput.flush();
-
-			// send symbol and wait for ack
-			chatOutput.writeObject(ui.getSymbol());
-
-			chatInput = new ObjectInputStream(chatSocket.getInputStream());
-			String response = (String) chatInput.readObject();
-
-			Matcher m = Pattern.compile(".*'(.{0,2})'.*").matcher(response);
-			m.find();
-			char newSymbol = m.group(1).charAt(0);
-			log(String.format("Symbol after duplicate check: '%c' ('%d')", newSymbol, (int) newSymbol));
-
-			if (newSymbol != ui.getSymbol()) {
-				JOptionPane.showMessageDialog(this.ui,
-						"Looks like you selected the same symbol as another player connected to the Chat Server.\nWorry not, because we provided you with an exclusive chess piece as your symbol!",
-						"Message", INFORMATION);
-				ui.setSymbol(newSymbol);
-			}
-
-			ui.pushMessage("\nChat Server said: %s", response);
-
-			ui.focusChat();
-
-			log("Connected to Chat Server successfully as player " + ui.getSymbol());
-
+			chat = StreamConnection.connect(address, CHAT_PORT);
+
+			// send room and symbol and wait to be welcomed, after a new symbol if it's a duplicate
+			chat.send(room);
+			chat.send(ui.getSymbol());
+			Message message;
+			do {
+				message = chat.receive(Message.class);
+				if (chatDispatcher.dispatch(message) != 0)
+					return 1;
+			} while (!(message instanceof Message.Welcome));
+
+		} catch (ProtocolException e) {
+			exit("Something went very wrong; please exit and inform the developers.",
+					"!chat! ProtocolException in getChatConnection()", ERROR, e, true, "Very Serious Error");
+			return 1;
 		} catch (IOException e) {
 			exit("Couldn't connect to Chat Server; if you're connected to game server you may still play.\n\nIf you don't know why this happened, please inform the developers",
 					"!chat! IOException in getChatConnection()\nExiting...\n", WARNING, e, serverCode == CHAT,
 					"Connection Error");
 			return 1;
-		} catch (ClassNotFoundException e) {
-			exit("Something went very wrong; please exit and inform the developers.",
-					"!chat! ClassNotFoundException in chatReader.run()", ERROR, e, true, "Very Serious Error");
-			return 1;
 		}
 		return 0;
 	}
 
+	/**
+	 * Sets up what the client does with every message of the Chat Server. Every
+	 * handler returns 0 or 1, indicating success or fail.
+	 * <ul>
+	 * <li>Welcome: the player can start chatting
+	 * <li>Rejected: why the player can't chat
+	 * <li>SymbolReassigned: the chess piece that replaces a duplicate symbol,
+	 * unless the player is playing too
+	 * <li>ChatMessage: what someone said
+	 * </ul>
+	 */
+	private void setupChatDispatcher() {
+		chatDispatcher.on(Message.Welcome.class, new Message.Handler<Message.Welcome>() {
+			@Override
+			public int handle(Message.Welcome welcome) {
+				ui.pushMessage("\nChat Server said: %s", welcome.text);
+				ui.focusChat();
+				log("Connected to Chat Server successfully as player " + ui.getSymbol());
+				return 0;
+			}
+		}).on(Message.Rejected.class, new Message.Handler<Message.Rejected>() {
+			@Override
+			public int handle(Message.Rejected rejected) {
+				exit(String.format("The Chat Server turned you away:\n%s", rejected.reason),
+						"!chat! rejected in getChatConnection()\n", WARNING, null, serverCode == CHAT, "Connection Error");
+				return 1;
+			}
+		}).on(Message.SymbolReassigned.class, new Message.Handler<Message.SymbolReassigned>() {
+			@Override
+			public int handle(Message.SymbolReassigned reassigned) {
+				log(String.format("Symbol after duplicate check: '%c' ('%d')", reassigned.symbol,
+						(int) reassigned.symbol));
+				// a player's symbol is the one the Game Server knows them by
+				if (serverCode == CHAT_GAME)
+					return 0;
+				JOptionPane.showMessageDialog(ui,
+						"Looks like you selected the same symbol as another player connected to the Chat Server.\nWorry not, because we provided you with an exclusive chess piece as your symbol!",
+						"Message", INFORMATION);
+				ui.setSymbol(reassigned.symbol);
+				return 0;
+			}
+		}).on(Message.ChatMessage.class, new Message.Handler<Message.ChatMessage>() {
+			@Override
+			public int handle(Message.ChatMessage message) {
+				// push it to the log JTextArea
+				log("!chat! received message: " + message.text);
+				ui.pushMessage("%s", message.text);
+				return 0;
+			}
+		});
+	}
+
+	/**
+	 * Connects to the chat of the {@code room} and, if the Chat Server lets the
+	 * player in, starts chatting.
+	 */
+	private void joinChat() {
+		if (getChatConnection() == 0) {
+			initChat();
+			ui.setEnableChat(true);
+		}
+	}
+
 	/**
 	 * Initializes connection to the Chat Server and starts two threads; one for
 	 * reading and one for writing to chat.
@@ -435,15 +549,43 @@ final class GameEngine implements Logging {
 	 * 
 	 * @see GameBoard#GameBoard(char[][]) GameBoard(char[][])
 	 * 
-	 * @throws ClassNotFoundException
-	 * @throws IOException            thrown when server disconnects
-	 * @throws EOFException           thrown when server closes connection
+	 * @throws IOException  thrown when server disconnects
+	 * @throws EOFException thrown when server closes connection
 	 */
-	private void updateBoard(char[][] localGameBoardConstructor) throws ClassNotFoundException, IOException, EOFException {
+	private void updateBoard(char[][] localGameBoardConstructor) throws IOException, EOFException {
 		localGameBoard = new GameBoard(localGameBoardConstructor);
 		ui.setScreen(localGameBoard);
 	}
 
+	/**
+	 * Plays the move of {@code delta} on the board the player already has,
+	 * instead of creating a new one, and checks that the board is the same as the
+	 * server's afterwards.
+	 *
+	 * @param delta BoardDelta, the move
+	 * @return boolean, whether the move could be played and the checksums match
+	 * @see Message.BoardDelta#checksum(GameBoard) checksum()
+	 */
+	private boolean applyMove(Message.BoardDelta delta) {
+		if (localGameBoard == null || symbols == null || delta.seat < 0 || delta.seat >= symbols.length)
+			return false;
+		if (localGameBoard.markSquare(delta.move, symbols[delta.seat]) == GameBoard.MoveResult.INVALID)
+			return false;
+		ui.refreshScreen();
+		return Message.BoardDelta.checksum(localGameBoard) == delta.checksum;
+	}
+
+	/**
+	 * Asks the Game Server for the whole board, once; it's sent when it's this
+	 * player's turn, and until then every move is ignored.
+	 *
+	 * @throws IOException if the connection fails
+	 */
+	private void requestBoard() throws IOException {
+		syncing = true;
+		server.send(new Message.SyncRequest());
+	}
+
 	/**
 	 * Creates a UI to get the GameEngine options.
 	 * 
@@ -473,6 +615,10 @@ final class GameEngine implements Logging {
 		JTextField addressField = new JTextField("127.0.0.1");
 		addressPanel.add(addressLabel);
 		addressPanel.add(addressField);
+		JLabel roomLabel = new JLabel("Room (empty for any):");
+		JTextField roomField = new JTextField("");
+		addressPanel.add(roomLabel);
+		addressPanel.add(roomField);
 
 		JPanel listPanel = new JPanel();
 		listPanel.setLayout(new BoxLayout(listPanel, BoxLayout.Y_AXIS));
@@ -541,6 +687,7 @@ final class GameEngine implements Logging {
 				character = charList.getSelectedValue().charAt(0);
 				printStackTrace = printButton.isSelected();
 				address = GameEngine.Utility.myStrip(addressField.getText(), ' ', '\t');
+				room = roomField.getText().trim();
 				if (gameChatButton.isSelected())
 					serverCode = CHAT_GAME;
 				else if (gameOnlyButton.isSelected())
@@ -561,18 +708,17 @@ final class GameEngine implements Logging {
 			boolean err = false;
 			while (!err) {
 				try {
-					// wait to receive a chat message and push it to the log JTextArea
-					String msg = (String) chatInput.readObject();
-					log("!chat! received message: " + msg);
-					ui.pushMessage(msg);
+					// wait to receive a chat message and handle it
+					err = chatDispatcher.dispatch(chat.receive(Message.class)) != 0;
+				} catch (ProtocolException e) {
+					exit("Something went very wrong; please exit and inform the developers.",
+							"!chat! ProtocolException in chatReader.run()", ERROR, e, true, "Very Serious Error");
+					return;
 				} catch (IOException e) {
 					exit("Connection to Chat Server lost; if you're connected to game server you may still play.\n\nIf you don't know why this happened, please inform the developers",
 							"!chat! IOException in chatReader.run()", WARNING, e, serverCode == CHAT,
 							"Connection Error");
 					return;
-				} catch (ClassNotFoundException e) {
-					exit("Something went very wrong; please exit and inform the developers.",
-							"!chat! ClassNotFoundException in chatReader.run()", ERROR, e, true, "Very Serious Error");
 				}
 			}
 		}
@@ -613,7 +759,7 @@ final class GameEngine implements Logging {
 					try {
 						String msg = String.format("%c: %s", ui.getSymbol(), chatText);
 						log("!chat! sent message:     " + msg);
-						chatOutput.writeObject(msg);
+						chat.send(new Message.ChatMessage(msg));
 					} catch (IOException e) {
 						exit("Connection to Chat Server lost; if you're connected to game server you may still play.\n\nIf you don't know why this happened, please inform the developers",
 								"!chat! IOException in chatWriter.run()", WARNING, e, serverCode == CHAT,
@@ -625,6 +771,82 @@ final class GameEngine implements Logging {
 		}
 	} // ChatWriter class
 
+	/**
+	 * Private inner class that, whenever the player asks for a hint, sends the
+	 * board and the player's symbol to the Hint Server. Connects to it the first
+	 * time, and starts a HintReader for the answers, which may come at any time.
+	 * There is one for the connection to the Game Server, which stops once the
+	 * game is over and closes the connection to the Hint Server, so that the
+	 * HintReader stops too.
+	 * <p>
+	 * Hints aren't needed to play, so when an Exception occurs the player is only
+	 * told that hints aren't available and this Thread terminates execution.
+	 */
+	private class HintWriter implements Runnable {
+
+		public void run() {
+			while (!gameOver) {
+				// if no hint was asked for, check again in 250 milliseconds
+				if (!ui.getHintRequest() || localGameBoard == null) {
+					try {
+						Thread.sleep(250);
+					} catch (InterruptedException e) {
+						break;
+					}
+					continue;
+				}
+
+				try {
+					if (hint == null) {
+						hint = StreamConnection.connect(address, HINT_PORT);
+						hint.send(room);
+						hintExec.execute(new HintReader());
+					}
+					hint.send(localGameBoard.getBoard());
+					hint.send(ui.getSymbol());
+					ui.pushMessage("Thinking about a hint...");
+				} catch (IOException e) {
+					logerr("!hint! IOException in hintWriter.run()", e, printStackTrace);
+					ui.pushMessage("Hints aren't available right now");
+					break;
+				}
+			}
+
+			if (hint != null) {
+				try {
+					hint.close();
+				} catch (IOException e) {
+					logerr("!hint! IOException while closing the hint connection", e, printStackTrace);
+				}
+			}
+		}
+	} // HintWriter class
+
+	/**
+	 * Pushes any hint it receives from the Hint Server to the UI.
+	 */
+	private class HintReader implements Runnable {
+		public void run() {
+			while (true) {
+				try {
+					int move = (int) hint.receive();
+					String evaluation = (String) hint.receive();
+					log(String.format("!hint! received hint: %d (%s)", move, evaluation));
+					if (move == -1)
+						ui.pushMessage("No hint: %s", evaluation);
+					else
+						ui.pushMessage("Hint: play %s (%s)", localGameBoard.toText(move), evaluation);
+				} catch (IOException e) {
+					logerr("!hint! IOException in hintReader.run()", e, printStackTrace);
+					return;
+				} catch (ClassCastException e) {
+					logerr("!hint! ClassCastException in hintReader.run()", e, printStackTrace);
+					return;
+				}
+			}
+		}
+	} // HintReader class
+
 	/**
 	 * A class with a set of static utility methods to be used throughout the
 	 * project.
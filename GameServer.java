@@ -6,61 +6,217 @@ import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.BindException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.ProtocolException;
 import java.net.SocketException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import javax.swing.*;
 
 /**
  * Server implementation that allows its users to play a game of Tic Tac Toe. By
  * default always runs a ChatServer
+ * <p>
+ * Every GameServer is one room of a {@link RoomManager}, which accepts the
+ * connections and hands each player to the room they asked for, so one
+ * process can host many games at once.
+ * <p>
+ * Seats that no one takes within {@code SEAT_TIMEOUT} of the previous player
+ * joining, and seats of players that disconnect, are taken by computer
+ * players whose moves run on a {@link BotScheduler}.
+ * <p>
+ * Also runs a HintServer, which suggests moves to the players without holding
+ * up the game.
  */
 final class GameServer extends Server {
-	// port of the Game Server
-	private static final int GAME_PORT = 10001;
+	// name of the room created with the options of the UI
+	private static final String FIRST_ROOM = "1";
 
-	private final Socket[] sockets;
-	private final Color[] colors;
+	private final String room;
 
-	private final GameBoard gameBoard;
-	private int currentPlayer = 0, boardSize, winCondition;
+	// players handed over by the RoomManager, and how many more can join before the game starts
+	private final BlockingQueue<Connection> arrivals = new LinkedBlockingQueue<Connection>();
+	private int vacancies;
+	// set once the RoomManager closed the room, and the thread running it, which is then interrupted
+	private boolean closed = false;
+	private volatile Thread runner;
+
+	// the color of every seat
+	private final Color[] colors = new Color[playerCount];
+
+	// the computer player of every seat, null for human players
+	private final AIPlayer[] bots = new AIPlayer[playerCount];
+
+	// time to wait for the next player before giving the empty seats to computer players
+	private static final int SEAT_TIMEOUT = 30000;
+	private static final char[] BOT_SYMBOLS = { 'X', 'O', '#', '@', '&', '%' };
+	private static final Color BOT_COLOR = Color.GRAY;
+
+	// empty squares shown around the marks of the infinite board, and the smallest viewport
+	private static final int VIEWPORT_MARGIN = 3;
+	private static final int MIN_VIEWPORT = 8;
+
+	/**
+	 * The board being played or, when playing on the {@code infiniteBoard}, the
+	 * viewport of it that is sent to the players
+	 */
+	private GameBoard gameBoard;
+	private SparseGameBoard infiniteBoard;
+	private int viewportTop, viewportLeft;
+
+	// goes up by one every time the board changes, so that the players can tell if they missed a move and a
+	// solve can tell that its position is gone
+	private volatile int boardSequence;
+
+	// boardRows and boardColumns are 0 when playing on the infinite board
+	private int currentPlayer = 0, boardRows, boardColumns, winCondition;
 
 	private static ChatServer chatServer;
 	private int chatCount;
 
+	// a copy of the board after every move and whose turn it is, for the hints, which are searched on other threads
+	private static HintServer hintServer;
+	private HintService hintService;
+	private volatile HintPosition hintPosition;
+
+	private static final class HintPosition {
+		private final GameBoard board;
+		private final int toMove;
+
+		HintPosition(GameBoard board, int toMove) {
+			this.board = board;
+			this.toMove = toMove;
+		}
+	}
+
+	// time budget of a computer player's move in milliseconds, and the threads it may use
+	private static final long AI_TIME_LIMIT = 1000;
+	// max^n must move in under half a second, and can't search much deeper in twice the time anyway
+	private static final long MAXN_TIME_LIMIT = 450;
+	// games of more than 2 players on larger boards are played by Monte Carlo Tree Search
+	private static final int MCTS_SQUARES = 64;
+	private int aiThreads;
+
+	// runs the computer players' moves, leaving a core for everything else, with some slack after AI_TIME_LIMIT
+	private static BotScheduler botScheduler;
+	private static final long BOT_DEADLINE = 2 * AI_TIME_LIMIT;
+
+	// the tablebase of the board, if it has one; loaded once for every room
+	private static Future<Tablebase> tablebase;
+
+	// loads the tablebase and solves positions, one at a time and below the priority of the games
+	private static final ExecutorService backgroundExec = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "background");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	// forced wins are announced in 2 player games on boards of up to SOLVER_SQUARES squares
+	private static final int SOLVER_SQUARES = 64;
+	private static final long SOLVER_NODES = 200000;
+	private boolean solvable;
+	private volatile boolean forcedWinAnnounced = false;
+
+	// solvers are large, so there is one for the thread of the backgroundExec
+	private static final ThreadLocal<ProofNumberSolver> solvers = new ThreadLocal<ProofNumberSolver>() {
+
+		@Override
+		protected ProofNumberSolver initialValue() {
+			return new ProofNumberSolver(SOLVER_NODES, 16);
+		}
+	};
+
+	// set while a solve of this room waits for or runs on the backgroundExec
+	private final AtomicBoolean solving = new AtomicBoolean();
+
 	/**
-	 * Constructor to initialize fields.
+	 * Constructor to initialize fields; gets the options from the UI and creates
+	 * the first room.
 	 * 
 	 * @see Server#Server() Server()
 	 */
 	public GameServer() {
 		super();
-		sockets = new Socket[playerCount];
-		colors = new Color[playerCount];
-		gameBoard = new GameBoard(boardSize, winCondition);
+		room = FIRST_ROOM;
+		setUp();
 	}
 
 	/**
-	 * Main method. Run to create and run a Game Server. Also creates and runs a
-	 * Chat Server with the same parameters as the Game Server.
+	 * Constructs another room with the options of {@code first}, without the UI.
+	 *
+	 * @param first GameServer, the first room
+	 * @param room  String, the name of the room
+	 */
+	GameServer(GameServer first, String room) {
+		super(first.playerCount, printStackTrace);
+		this.room = room;
+		boardRows = first.boardRows;
+		boardColumns = first.boardColumns;
+		winCondition = first.winCondition;
+		chatCount = first.chatCount;
+		aiThreads = first.aiThreads;
+		setUp();
+	}
+
+	/**
+	 * Initializes the board and the services of the game, once the options are
+	 * known.
+	 */
+	private void setUp() {
+		vacancies = playerCount;
+		if (botScheduler == null) {
+			int cores = Runtime.getRuntime().availableProcessors();
+			botScheduler = new BotScheduler(Math.max(1, (cores - 1) / aiThreads), BOT_DEADLINE);
+		}
+		hintService = new HintService(botScheduler, AI_TIME_LIMIT,
+				boardRows != 0 && Tablebase.isSupported(boardRows, boardColumns, playerCount) ? loadTablebase() : null);
+		if (boardRows == 0) {
+			infiniteBoard = new SparseGameBoard(winCondition);
+			updateViewport();
+		} else {
+			gameBoard = new GameBoard(boardRows, boardColumns, winCondition);
+			solvable = playerCount == 2 && boardRows * boardColumns <= SOLVER_SQUARES;
+		}
+		hintPosition = new HintPosition(new GameBoard(gameBoard), currentPlayer);
+	}
+
+	/**
+	 * Main method. Run to create and run a Game Server, whose rooms all have the
+	 * options chosen in the UI. Also creates and runs a Chat Server with the same
+	 * parameters as the Game Server, and a Hint Server for its players.
 	 *
 	 * @param args not used
 	 * @see Server#Server() Server()
 	 */
 	public static void main(String[] args) {
-		GameServer server = new GameServer();
-		chatServer = new ChatServer(server.chatCount, Server.printStackTrace);
-		server.setupScreen();
-		chatServer.setScreen(server.screen);
-		ExecutorService exec = Executors.newCachedThreadPool();
-		exec.execute(server);
+		GameServer first = new GameServer();
+		chatServer = new ChatServer(first.chatCount, Server.printStackTrace);
+		RoomManager rooms = new RoomManager(first, chatServer);
+		rooms.setupScreen();
+		chatServer.setScreen(rooms.screen);
+		hintServer = new HintServer(first.playerCount, Server.printStackTrace, rooms);
+		hintServer.setScreen(rooms.screen);
+		ExecutorService exec = VirtualThreads.newExecutor();
+		exec.execute(rooms);
 		exec.execute(chatServer);
+		exec.execute(hintServer);
 	}
 
 	/**
@@ -72,11 +228,17 @@ final class GameServer extends Server {
 	 */
 	@Override
 	public void run() {
+		runner = Thread.currentThread();
+		if (isClosed())
+			return;
 		initializeServer();
 		getConnections();
+		if (isClosed())
+			return;
 
 		log("Starting game");
-		while (true) {
+		// a room is reset by running it again, which only returns once it's closed
+		while (!isClosed()) {
 			makeTurn();
 		}
 	}
@@ -97,7 +259,7 @@ final class GameServer extends Server {
 		JFrame optWind = new JFrame("Select Game Options");
 		optWind.setVisible(true);
 		optWind.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		optWind.setSize(new Dimension(500, 350));
+		optWind.setSize(new Dimension(500, 450));
 		optWind.setResizable(false);
 
 		// mainPanel = listPanel + submitBut
@@ -112,7 +274,7 @@ final class GameServer extends Server {
 		JPanel boardPanel = new JPanel();
 		boardPanel.setLayout(new BoxLayout(boardPanel, BoxLayout.Y_AXIS));
 		JLabel boardLabel = new JLabel("Choose the boards size");
-		String[] boardOptions = { "3x3", "4x4", "5x5", "6x6", "7x7", "8x8" };
+		String[] boardOptions = { "3x3", "4x4", "5x5", "6x6", "7x7", "8x8", "6x7", "10x10", "15x15", "19x19", "Infinite" };
 		JList<String> boardLs = new JList<String>(boardOptions);
 		boardLs.setBackground(Color.BLUE);
 		boardLs.setFont(font);
@@ -154,6 +316,22 @@ final class GameServer extends Server {
 		chatSlider.setPaintTicks(true);
 		chatPanel.add(centerPanel2);
 		chatPanel.add(chatSlider);
+
+		// aiPanel = centered aiLabel + aiSlider
+		int cores = Runtime.getRuntime().availableProcessors();
+		JPanel aiPanel = new JPanel();
+		aiPanel.setLayout(new BoxLayout(aiPanel, BoxLayout.Y_AXIS));
+		JLabel aiLabel = new JLabel("Select the computer player threads");
+		aiLabel.setFont(font);
+		JPanel centerPanel3 = new JPanel();
+		centerPanel3.add(aiLabel);
+		JSlider aiSlider = new JSlider(1, Math.max(2, cores), 1);
+		aiSlider.setFont(font);
+		aiSlider.setMajorTickSpacing(Math.max(1, cores / 4));
+		aiSlider.setPaintLabels(true);
+		aiSlider.setPaintTicks(true);
+		aiPanel.add(centerPanel3);
+		aiPanel.add(aiSlider);
 		
 		listPanel.add(boardPanel);
 		listPanel.add(winCondPanel);
@@ -162,20 +340,29 @@ final class GameServer extends Server {
 		mainPanel.add(listPanel);
 		mainPanel.add(Box.createRigidArea(new Dimension(50,50)));
 		mainPanel.add(chatPanel);
+		mainPanel.add(aiPanel);
 		mainPanel.add(submitBut);
 		optWind.add(mainPanel);
 		submitBut.addActionListener(new ActionListener() {
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				boardSize = boardLs.getSelectedIndex() + 3;
+				// options are in the form of "<rows>x<columns>", except for "Infinite"
+				if (boardLs.getSelectedValue().equals("Infinite")) {
+					boardRows = boardColumns = 0;
+				} else {
+					String[] dimensions = boardLs.getSelectedValue().split("x");
+					boardRows = Integer.parseInt(dimensions[0]);
+					boardColumns = Integer.parseInt(dimensions[1]);
+				}
 				winCondition = winLs.getSelectedIndex() + 3;
-				if (winCondition > boardSize) {
+				if (boardRows != 0 && winCondition > Math.max(boardRows, boardColumns)) {
 					JOptionPane.showMessageDialog(optWind,
 							"The current configuration would lead to an unwinnable game.", "Invalid Options",
 							JOptionPane.ERROR_MESSAGE);
 				} else {
 					chatCount = chatSlider.getValue();
+					aiThreads = aiSlider.getValue();
 					// System.out.println("GetServerOptions: "+ chatConnected);
 					optWind.dispose();
 					argumentsPassed = true;
@@ -186,28 +373,16 @@ final class GameServer extends Server {
 	}
 
 	/**
-	 * Initializes the server on port {@code GAME_PORT} with {@code playerCount}
-	 * total connections.
+	 * Gets the room ready for a new game. The connections are accepted by the
+	 * RoomManager, so there is no server to set up.
 	 */
 	protected void initializeServer() {
-		try {
-			server = new ServerSocket(GAME_PORT, playerCount);
-			log(String.format("Game Server ready, waiting for %d players", playerCount));
-		} catch (BindException e) {
-			logerr("BindException while setting up server; a server is already running on this port", e,
-					printStackTrace);
-			JOptionPane.showMessageDialog(screen,
-					String.format("Error while setting up server:\nPort %d already in use\n\nServer will now exit",
-							GAME_PORT), "Error", JOptionPane.ERROR_MESSAGE);
-			System.exit(1);
-		} catch (IOException e) {
-			logerr("IOException while setting up server", e, printStackTrace);
-		}
+		log(String.format("Room ready, waiting for %d players", playerCount));
 	}
 
 	/**
 	 * <ul>
-	 * <li>Initializes {@code playerCount} connections.
+	 * <li>Takes {@code playerCount} connections from the RoomManager.
 	 * <li>Gets their input and output streams.
 	 * <li>Exchanges some messages.
 	 * <li>Increments the {@code {@link Server#gameConnected gameConnected}}
@@ -217,6 +392,10 @@ final class GameServer extends Server {
 	 * special unique chess pieces and the clients interpret the message
 	 * accordingly.<br>
 	 * <br>
+	 * The server waits for the first player as long as it takes, but for the rest
+	 * only {@code SEAT_TIMEOUT} milliseconds each; then the remaining seats are
+	 * given to computer players.<br>
+	 * <br>
 	 * If at any point something goes wrong, reset server :)
 	 * 
 	 * @see GameServer#reset() reset()
@@ -226,19 +405,36 @@ final class GameServer extends Server {
 		try {
 			// connect to every player
 			for (int i = 0; i < playerCount; i++) {
-				// get connections
-				sockets[i] = server.accept();
-				inputs[i] = new ObjectInputStream(sockets[i].getInputStream());
-				outputs[i] = new ObjectOutputStream(sockets[i].getOutputStream());
+				// get connections; once no one else can join, only the ones already here
+				Connection arrival;
+				if (i == 0)
+					arrival = arrivals.take();
+				else if (isWaiting())
+					arrival = arrivals.poll(SEAT_TIMEOUT, TimeUnit.MILLISECONDS);
+				else
+					arrival = arrivals.poll();
+				if (arrival == null) {
+					// someone may have joined right before the seats were closed
+					closeSeats();
+					arrival = arrivals.poll();
+				}
+				if (arrival == null) {
+					log(String.format("No player joined for %d seconds; computer players take the remaining %d seats",
+							SEAT_TIMEOUT / 1000, playerCount - i));
+					for (; i < playerCount; i++)
+						seatBot(i);
+					break;
+				}
+				connections[i] = arrival;
 
 				// get player symbol
-				symbols[i] = (char) inputs[i].readObject();
-				colors[i] = (Color) inputs[i].readObject();
+				symbols[i] = connections[i].receive(Character.class);
+				colors[i] = connections[i].receive(Color.class);
 
 				// exchange send ack message
-				outputs[i].writeObject(
-						String.format("Hi player '%c', you're now connected as #%d.\nPlease wait for others to join.",
-								symbols[i], i));
+				connections[i].send(new Message.Welcome(i, room, String.format(
+						"Hi player '%c', you're now connected as #%d in room '%s'.\nPlease wait for others to join.",
+						symbols[i], i, room)));
 
 				log(String.format("Player #%d connected as '%c'", i, symbols[i]));
 				screen.updateGameConnectionCounter(1);
@@ -259,6 +455,8 @@ final class GameServer extends Server {
 						log(String.format("Duplicate found '%c', replaced with '\\u%04x'", symbols[i],
 								(int) chessPiece));
 						symbols[i] = chessPiece;
+						if (bots[i] == null)
+							connections[i].send(new Message.SymbolReassigned(i, chessPiece));
 						break;
 					}
 				}
@@ -266,18 +464,18 @@ final class GameServer extends Server {
 			}
 
 			// send ready message and symbol and color array
-			for (int j = 0; j < playerCount; j++) {
-				outputs[j].writeObject("Everyone has joined; get ready to start the game!");
-				outputs[j].writeObject(symbols);
-				outputs[j].writeObject(colors);
-			}
+			broadcast(new Message.GameStart("Everyone has joined; get ready to start the game!", symbols, colors));
+			broadcast(new Message.BoardUpdate(boardSequence, gameBoard.getBoard()));
 
 		} catch (IOException e) {
 			logerr("IOException inside getConnections() while getting connections or sending messages", e,
 					printStackTrace);
 			reset = true;
-		} catch (ClassNotFoundException e) {
-			logerr("ClassNotFoundException inside getConnections() while getting player symbol", e, printStackTrace);
+		} catch (InterruptedException e) {
+			// a room is only closed while no one is in it
+			if (isClosed())
+				return;
+			logerr("InterruptedException inside getConnections() while waiting for players", e, printStackTrace);
 			reset = true;
 		}
 
@@ -290,84 +488,101 @@ final class GameServer extends Server {
 	/**
 	 * Executes one turn of a player.
 	 * <ul>
-	 * <li>Sends 'ok' to start
-	 * <li>Sends the board
-	 * <li>Receives and processes the move
+	 * <li>Sends 'ok' to start, with the sequence number of the board
+	 * <li>Sends the board if the player asks for it
+	 * <li>Receives and processes the move, asking again while it's invalid
 	 * <li>Sends acknowledgement for the move
-	 * <li>Resends board
+	 * <li>Sends the move to everyone
 	 * </ul>
 	 * 
-	 * If something goes wrong, reset the server.
+	 * A computer player's move is requested from the {@code botScheduler} instead
+	 * of sent and received. If a human player disconnects, a computer player
+	 * takes their seat; if something else goes wrong, or no human players are
+	 * left, reset the server.
 	 * 
-	 * @see GameServer#sendBoard(int) sendBoard()
+	 * @see GameServer#sendMove(int, boolean) sendMove()
 	 * @see GameServer#reset() reset()
 	 */
 	private void makeTurn() {
-		boolean reset = false;
+		boolean reset = false, moved = false;
 		log(String.format("Player #%d starts their turn", currentPlayer));
 		try {
 			int move;
+			GameBoard.MoveResult.Outcome outcome = null;
+			int top = viewportTop, left = viewportLeft, rows = gameBoard.ROWS, columns = gameBoard.COLUMNS;
 
-			// send ok to start
-			outputs[currentPlayer].writeObject("Make your move!");
-			log("sent once");
+			// an invalid move changes nothing, so the same player moves again
+			do {
+				if (bots[currentPlayer] != null) {
+					move = outcome == null ? botMove() : BotScheduler.fallbackMove(gameBoard, symbols, currentPlayer);
+				} else {
+					if (outcome != null)
+						connections[currentPlayer]
+								.send(new Message.ChatMessage("That square can't be played; make another move"));
 
-			// send board
-			sendBoard(currentPlayer);
-			log(String.format("Sent board:\n%s", gameBoard));
+					// send ok to start
+					connections[currentPlayer].send(new Message.TurnStart("Make your move!", boardSequence));
+					log("sent once");
 
-			// get, register and respond to move
-			move = (int) inputs[currentPlayer].readObject();
+					// get, register and respond to move
+					move = receiveMove();
+				}
 
-			if (move == -2) {
-				log("Final board:\n" + gameBoard);
-				broadcast("Player '%c' resigned", symbols[currentPlayer]);
-				log(String.format("Player '%c' resigned!\nGame over", symbols[currentPlayer]));
-				for (int i = 0; i < playerCount; i++)
-					sendBoard(i);
-				log("Server will now reset");
-				reset();
-				run();
-			}
+				if (move == Message.Move.RESIGN) {
+					log("Final board:\n" + gameBoard);
+					broadcast(new Message.GameOver(Message.GameOver.Reason.RESIGNED, symbols[currentPlayer]));
+					log(String.format("Player '%c' resigned!\nGame over", symbols[currentPlayer]));
+					log("Server will now reset");
+					reset();
+					run();
+					return;
+				}
+
+				outcome = playMove(move);
+				if (outcome == GameBoard.MoveResult.Outcome.INVALID)
+					log(String.format("Invalid move '%d'; asking again", move));
+			} while (outcome == GameBoard.MoveResult.Outcome.INVALID);
 
-			gameBoard.markSquare(move, symbols[currentPlayer]);
+			boardChanged((currentPlayer + 1) % playerCount);
+			boolean snapshot = top != viewportTop || left != viewportLeft || rows != gameBoard.ROWS
+					|| columns != gameBoard.COLUMNS;
 			// check if game has ended
-			if (gameBoard.hasWon() || gameBoard.hasTied()) {
-				log("Final board:\n" + gameBoard);
-				String msg = gameBoard.hasTied() ? "It's a tie!"
-						: String.format("Player '%c' won!", symbols[currentPlayer]);
-				broadcast(msg);
-				log(msg + " Game over");
-				for (int i = 0; i < playerCount; i++) {
-					sendBoard(i);
+			if (outcome == GameBoard.MoveResult.Outcome.WIN || outcome == GameBoard.MoveResult.Outcome.TIE) {
+				log("Final board:\n" + (infiniteBoard == null ? gameBoard : infiniteBoard));
+				sendMove(move, snapshot);
+				if (outcome == GameBoard.MoveResult.Outcome.TIE) {
+					broadcast(new Message.GameOver(Message.GameOver.Reason.TIE, '\u0000'));
+					log("It's a tie! Game over");
+				} else {
+					broadcast(new Message.GameOver(Message.GameOver.Reason.WON, symbols[currentPlayer]));
+					log(String.format("Player '%c' won! Game over", symbols[currentPlayer]));
 				}
 
 				log("Server will now reset");
 				reset();
 				run();
+				return;
 			}
+			moved = true;
 
 			// send acknowledgement
-			outputs[currentPlayer].writeObject(String.format("%c", '\u2713'));
+			if (bots[currentPlayer] == null)
+				connections[currentPlayer].send(new Message.MoveAck(move));
 
 			log(String.format("Move received: '%d'", move));
 
-			// send board again
-			for (int i = 0; i < playerCount; i++) {
-				sendBoard(i);
-			}
+			// send the move to everyone
+			sendMove(move, snapshot);
 
+			announceForcedWin();
 			currentPlayer = (currentPlayer + 1) % playerCount;
 
 		} catch (SocketException e) {
 			logerr("SocketException inside makeTurn()", e, printStackTrace);
-			reset = true;
+			reset = !replaceWithBot(currentPlayer, moved);
 		} catch (IOException e) {
 			logerr("IOException inside makeTurn() while sending/receiving data", e, printStackTrace);
-			reset = true;
-		} catch (ClassNotFoundException e) {
-			logerr("ClassNotFoundException inside makeTurn() while getting move\\n\n", e, printStackTrace);
-			reset = true;
+			reset = !replaceWithBot(currentPlayer, moved);
 		}
 
 		if (reset) {
@@ -378,21 +593,31 @@ final class GameServer extends Server {
 
 	/**
 	 * Resets everything in case something goes wrong while getting connections.<br>
-	 * Closes connections, empties {@code symbols} array and resets the
-	 * {@code {@link Server#gameConnected gameConnected}} counter.
+	 * Closes connections, empties {@code symbols} array, takes this room's
+	 * players off the {@code {@link Server#gameConnected gameConnected}} counter
+	 * and opens the seats again.
 	 */
 	private void reset() {
-		gameBoard.clear();
-		try {
-			server.close();
-		} catch (IOException e) {
-			logerr("IOException while closing server while reset", e, printStackTrace);
+		int humans = 0;
+		forcedWinAnnounced = false;
+		if (infiniteBoard == null)
+			gameBoard.clear();
+		else {
+			infiniteBoard.clear();
+			updateViewport();
 		}
+		boardChanged(currentPlayer);
 		for (int i = 0; i < playerCount; i++) {
+			if (bots[i] != null) {
+				bots[i] = null;
+				symbols[i] = '\u0000';
+				colors[i] = new Color(0, 0, 0);
+				continue;
+			}
 			try {
-				sockets[i].close();
-				inputs[i].close();
-				outputs[i].close();
+				connections[i].close();
+				humans++;
+				connections[i] = null;
 				symbols[i] = '\u0000';
 				colors[i] = new Color(0, 0, 0);
 			} catch (SocketException e) {
@@ -404,39 +629,451 @@ final class GameServer extends Server {
 						printStackTrace);
 			}
 		}
+		openSeats();
+		log(PositionCache.getShared().toString());
 		log("Done resetting");
-		screen.updateGameConnectionCounter(0);
+		screen.updateGameConnectionCounter(-humans);
+	}
+
+	/**
+	 * Hands a player who asked for this room to it; called by the RoomManager.
+	 * The room takes the connection over and greets the player when it gets to
+	 * them.
+	 *
+	 * @param connection Connection, the connection
+	 * @return boolean, false if there are no free seats
+	 */
+	synchronized boolean join(Connection connection) {
+		if (vacancies == 0)
+			return false;
+		vacancies--;
+		arrivals.add(connection);
+		return true;
+	}
+
+	/**
+	 * Returns whether the room is waiting for players, i.e. its game hasn't
+	 * started and it has free seats.
+	 *
+	 * @return boolean, true if players can join
+	 */
+	synchronized boolean isWaiting() {
+		return vacancies > 0;
+	}
+
+	/**
+	 * Closes the room if no one has joined it, so that no one can join it
+	 * anymore, and stops it; called by the RoomManager.
+	 *
+	 * @return boolean, false if someone has joined the room, which is left open
+	 */
+	synchronized boolean close() {
+		if (vacancies != playerCount)
+			return false;
+		vacancies = 0;
+		closed = true;
+		log("Closing room");
+		Thread thread = runner;
+		if (thread != null)
+			thread.interrupt();
+		return true;
+	}
+
+	/**
+	 * Returns whether the room was closed.
+	 *
+	 * @return boolean, true if the room was closed
+	 */
+	synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns the name of the room.
+	 *
+	 * @return String, the name
+	 */
+	String getRoomName() {
+		return room;
+	}
+
+	// no one else can join once the remaining seats are given to computer players
+	private synchronized void closeSeats() {
+		vacancies = 0;
+	}
+
+	// players who joined a game that was reset never got a seat, so they are let go
+	private synchronized void openSeats() {
+		for (Connection arrival; (arrival = arrivals.poll()) != null;) {
+			try {
+				arrival.close();
+			} catch (IOException e) {
+				logerr("IOException while closing the connection of a waiting player", e, printStackTrace);
+			}
+		}
+		vacancies = playerCount;
 	}
 
 	/**
-	 * Sends the board to the currentPlayer.
+	 * Logs {@code text}, with the name of the room as a prefix.
+	 */
+	@Override
+	public void log(String text) {
+		super.log(String.format("[%s] %s", room, text));
+	}
+
+	/**
+	 * Waits for the move of the current player, sending them the whole board
+	 * first every time they ask for it.
+	 *
+	 * @return int, the move
+	 * @throws IOException if the player sends anything else, or the connection
+	 *                     fails
+	 */
+	private int receiveMove() throws IOException {
+		Message message = connections[currentPlayer].receive(Message.class);
+		while (message instanceof Message.SyncRequest) {
+			log(String.format("Player #%d asked for the board", currentPlayer));
+			connections[currentPlayer].send(new Message.BoardUpdate(boardSequence, gameBoard.getBoard()));
+			message = connections[currentPlayer].receive(Message.class);
+		}
+		if (!(message instanceof Message.Move))
+			throw new ProtocolException(
+					String.format("Expected Move but got %s", message.getClass().getSimpleName()));
+		return ((Message.Move) message).move;
+	}
+
+	/**
+	 * Sends the move the current player just played to everyone, with the
+	 * checksum of the board after it, so that the players play it on the board
+	 * they already have. The whole board is sent instead when the move changed
+	 * more than one square of what they see.
 	 * <p>
-	 * It works by de-constructing the GameBoard here and re-constructing it at the
-	 * client using the GameBoard's {@code char[][] array} because there is a
-	 * problem when sending GameBoard objects.
-	 * 
+	 * {@code getBoard()} already returns a new array every time so it can be sent
+	 * as is.
+	 *
+	 * @param move     int, the move
+	 * @param snapshot boolean, whether to send the whole board; when the
+	 *                 viewport of the infinite board moved
 	 * @see GameBoard#getBoard() getBoard()
-	 * 
-	 * @throws SocketException Thrown if client disconnects while trying to send
-	 *                         board
+	 * @see Message.BoardDelta#checksum(GameBoard) checksum()
+	 */
+	private void sendMove(int move, boolean snapshot) {
+		if (snapshot)
+			broadcast(new Message.BoardUpdate(boardSequence, gameBoard.getBoard()));
+		else
+			broadcast(new Message.BoardDelta(boardSequence, currentPlayer, move,
+					Message.BoardDelta.checksum(gameBoard)));
+	}
+
+	/**
+	 * Marks square {@code move} with the current player's symbol and logs the
+	 * winning line, if there is one. On the infinite board {@code move} is a
+	 * square of the viewport, and invalid if it's outside of it; the viewport is
+	 * moved afterwards to show the new mark.
+	 *
+	 * @param move int, the coordinate of the square as sent by the player
+	 * @return Outcome, the outcome of the move
+	 */
+	private GameBoard.MoveResult.Outcome playMove(int move) {
+		if (infiniteBoard == null) {
+			GameBoard.MoveResult result = gameBoard.markSquare(move, symbols[currentPlayer]);
+			if (result.outcome == GameBoard.MoveResult.Outcome.WIN)
+				log(String.format("Winning line: %s", Arrays.toString(result.line)));
+			return result.outcome;
+		}
+
+		// a square outside the viewport would be translated to any square of the infinite board
+		if (!gameBoard.isValid(move))
+			return GameBoard.MoveResult.Outcome.INVALID;
+
+		GameBoard.MoveResult.Outcome outcome = infiniteBoard.markSquare(viewportTop + gameBoard.getRow(move),
+				viewportLeft + gameBoard.getColumn(move), symbols[currentPlayer]);
+		if (outcome == GameBoard.MoveResult.Outcome.WIN) {
+			StringBuffer line = new StringBuffer();
+			for (long square : infiniteBoard.getWinningLine())
+				line.append(String.format("(%d, %d) ", SparseGameBoard.row(square), SparseGameBoard.column(square)));
+			log(String.format("Winning line: %s", line));
+		}
+		updateViewport();
+		return outcome;
+	}
+
+	/**
+	 * Tries to solve the position after a move, within {@code SOLVER_NODES}
+	 * nodes, on the {@code backgroundExec} so that neither the players nor the
+	 * computer players wait for it, and the first time one of the players can
+	 * force a win tells everyone in the chat of the room. A position is skipped while the
+	 * previous one is still being solved, or if the board changed while it waited
+	 * for the rooms before it, and a result is dropped if the board changed
+	 * before it was ready.
 	 */
-	private void sendBoard(int currentPlayer) throws SocketException {
-		char[][] newBoard = new char[boardSize][boardSize];
-		char[][] currentBoard = gameBoard.getBoard();
-		for (int i = 0; i < boardSize; i++)
-			for (int j = 0; j < boardSize; j++)
-				newBoard[i][j] = currentBoard[i][j];
+	private void announceForcedWin() {
+		if (!solvable || forcedWinAnnounced || !solving.compareAndSet(false, true))
+			return;
+
+		GameBoard position = new GameBoard(gameBoard);
+		char[] players = symbols.clone();
+		int next = (currentPlayer + 1) % playerCount, sequence = boardSequence;
+		backgroundExec.submit(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				try {
+					if (sequence != boardSequence)
+						return null;
+					ProofNumberSolver.Result result = solvers.get().solve(position, players, next);
+					log(String.format("Solved position in %d nodes: %s for '%c'", result.nodes, result.value,
+							players[next]));
+					if (sequence == boardSequence && (result.value == ProofNumberSolver.Value.WIN
+							|| result.value == ProofNumberSolver.Value.LOSS)) {
+						char winner = players[result.value == ProofNumberSolver.Value.WIN ? next : 1 - next];
+						chatServer.broadcastTo(room, "Game Server: forced win detected for player '%c'", winner);
+						forcedWinAnnounced = true;
+					}
+				} finally {
+					solving.set(false);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Gives seat {@code seat} to a new computer player, with the first of the
+	 * {@code BOT_SYMBOLS} no one before them uses.
+	 */
+	private void seatBot(int seat) {
+		symbols[seat] = BOT_SYMBOLS[0];
+		for (char symbol : BOT_SYMBOLS) {
+			boolean used = false;
+			for (int i = 0; i < seat && !used; i++)
+				used = symbols[i] == symbol;
+			if (!used) {
+				symbols[seat] = symbol;
+				break;
+			}
+		}
+		colors[seat] = BOT_COLOR;
+		bots[seat] = createAIPlayer();
+		log(String.format("Computer player #%d joined as '%c'", seat, symbols[seat]));
+	}
+
+	/**
+	 * Gives the seat of a human player who disconnected to a computer player, who
+	 * keeps their symbol and color, and tells everyone in the chat of the room.
+	 *
+	 * @param seat  int, the seat of the player
+	 * @param moved boolean, whether the player's move of this turn was already
+	 *              played, in which case the turn passes to the next player
+	 * @return boolean, false if no human players are left and the server should
+	 *         reset instead
+	 */
+	private boolean replaceWithBot(int seat, boolean moved) {
 		try {
-			outputs[currentPlayer].writeObject(newBoard);
+			connections[seat].close();
 		} catch (IOException e) {
-			logerr("Error while sending board", e, printStackTrace);
+			logerr(String.format("IOException while closing the connection of player #%d", seat), e, printStackTrace);
 		}
+		connections[seat] = null;
+		bots[seat] = createAIPlayer();
+		screen.updateGameConnectionCounter(-1);
+
+		boolean humans = false;
+		for (AIPlayer bot : bots)
+			humans |= bot == null;
+		if (!humans)
+			return false;
+
+		chatServer.broadcastTo(room, "Game Server: player '%c' disconnected; a computer player takes their seat",
+				symbols[seat]);
+		if (moved)
+			currentPlayer = (currentPlayer + 1) % playerCount;
+		return true;
+	}
+
+	/**
+	 * Requests the current computer player's move from the {@code botScheduler},
+	 * or plays a fallback move if it misses the deadline or fails.
+	 *
+	 * @return int, the move
+	 * @see BotScheduler#fallbackMove(GameBoard, char[], int) fallbackMove()
+	 */
+	private int botMove() {
+		try {
+			return botScheduler.findMove(bots[currentPlayer], gameBoard, symbols, currentPlayer);
+		} catch (TimeoutException e) {
+			log(String.format("Computer player #%d ran out of time; playing a fallback move", currentPlayer));
+		} catch (ExecutionException e) {
+			logerr("ExecutionException while computing a computer player's move", e, printStackTrace);
+		} catch (InterruptedException e) {
+			logerr("InterruptedException while waiting for a computer player's move", e, printStackTrace);
+			Thread.currentThread().interrupt();
+		}
+		return BotScheduler.fallbackMove(gameBoard, symbols, currentPlayer);
+	}
+
+	/**
+	 * Requests a hint for the player with symbol {@code symbol}, if
+	 * {@code board} is the board of the game; called by the HintServer.
+	 * <p>
+	 * The hint is always the move of the player whose turn it is, so that every
+	 * player asking about the same position shares one search; a player asking
+	 * on someone else's turn is told whose move it is.
+	 *
+	 * @param board  char[][], the board the player sees
+	 * @param symbol char, the symbol of the player
+	 * @return CompletableFuture, the hint, or the reason there is none
+	 * @see HintService#requestHint(GameBoard, char[], int) requestHint()
+	 */
+	CompletableFuture<HintService.Hint> requestHint(char[][] board, char symbol) {
+		HintPosition hint = hintPosition;
+		GameBoard position = hint.board;
+		String error = null;
+		int player = -1;
+		for (int i = 0; i < playerCount; i++)
+			if (symbols[i] == symbol)
+				player = i;
+
+		if (player == -1)
+			error = String.format("Player '%c' isn't playing", symbol);
+		else if (position.hasWon() || position.getMoveCount() == position.ROWS * position.COLUMNS)
+			error = "The game is over";
+		else if (board.length != position.ROWS || board.length == 0 || board[0].length != position.COLUMNS)
+			error = "The board changed before the hint was requested";
+		for (int row = 0; row < position.ROWS && error == null; row++)
+			for (int col = 0; col < position.COLUMNS && error == null; col++)
+				if (board[row][col] != position.getSquare(row, col))
+					error = "The board changed before the hint was requested";
+
+		if (error == null && player == hint.toMove)
+			return hintService.requestHint(position, symbols, player);
+		if (error == null) {
+			char toMove = symbols[hint.toMove];
+			return hintService.requestHint(position, symbols, hint.toMove)
+					.thenApply(new Function<HintService.Hint, HintService.Hint>() {
+
+						@Override
+						public HintService.Hint apply(HintService.Hint best) {
+							return new HintService.Hint(best.move,
+									String.format("best for '%c', whose turn it is: %s", toMove, best.evaluation));
+						}
+					});
+		}
+		CompletableFuture<HintService.Hint> failed = new CompletableFuture<HintService.Hint>();
+		failed.completeExceptionally(new IllegalStateException(error));
+		return failed;
+	}
+
+	/**
+	 * Moves the board to the next sequence number, copies it for the hints and
+	 * cancels the hints of older positions.
+	 *
+	 * @param toMove int, the seat whose turn it is on the new board
+	 */
+	private void boardChanged(int toMove) {
+		boardSequence++;
+		GameBoard board = new GameBoard(gameBoard);
+		hintPosition = new HintPosition(board, toMove);
+		hintService.boardChanged(board);
+	}
+
+	/**
+	 * Creates a computer player for this game; the tablebase of small boards,
+	 * otherwise alpha-beta, using {@code aiThreads} threads, for 2 players and
+	 * max^n for more. On boards of more than {@code MCTS_SQUARES} squares, and on
+	 * the infinite board, max^n can't look far enough ahead, so games of more
+	 * than 2 players get Monte Carlo Tree Search instead; every seat has its own,
+	 * so its tree is kept from one move to the next.
+	 * <p>
+	 * The tablebase is loaded, and generated the first time, on the
+	 * {@code backgroundExec} rather than on this room's thread; computer players
+	 * search until it's ready.
+	 *
+	 * @return AIPlayer, the computer player
+	 */
+	private AIPlayer createAIPlayer() {
+		if (infiniteBoard == null && Tablebase.isSupported(boardRows, boardColumns, playerCount)) {
+			Future<Tablebase> loaded = loadTablebase();
+			if (loaded.isDone()) {
+				try {
+					return loaded.get();
+				} catch (ExecutionException e) {
+					logerr("Exception while loading tablebase; searching instead", e, printStackTrace);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		if (playerCount == 2)
+			return new AlphaBetaPlayer(AI_TIME_LIMIT, AlphaBetaPlayer.MAX_PLY - 1, 16, aiThreads);
+		if (infiniteBoard != null || boardRows * boardColumns > MCTS_SQUARES)
+			return new MonteCarloPlayer(AI_TIME_LIMIT);
+		return new MaxNPlayer(MaxNPlayer.Mode.MAX_N, MAXN_TIME_LIMIT);
+	}
+
+	// starts loading the tablebase of the board, shared by every room, the first time it's called
+	private Future<Tablebase> loadTablebase() {
+		synchronized (GameServer.class) {
+			if (tablebase == null) {
+				tablebase = backgroundExec.submit(new Callable<Tablebase>() {
+
+					@Override
+					public Tablebase call() throws IOException {
+						return Tablebase.load(boardRows, boardColumns, winCondition, playerCount);
+					}
+				});
+			}
+			return tablebase;
+		}
+	}
+
+	/**
+	 * Updates the {@code gameBoard} to a viewport of the {@code infiniteBoard}
+	 * that shows every mark with {@code VIEWPORT_MARGIN} empty squares around
+	 * them. When the marks span more than {@code GameBoard.MAX_SIZE} squares the
+	 * viewport is centered around the last move instead.
+	 */
+	private void updateViewport() {
+		int moves = infiniteBoard.getMoveCount();
+		long last = moves == 0 ? 0L : infiniteBoard.getMove(moves - 1);
+
+		int[] rows = fitViewport(infiniteBoard.getMinRow(), infiniteBoard.getMaxRow(), SparseGameBoard.row(last),
+				moves == 0);
+		int[] columns = fitViewport(infiniteBoard.getMinColumn(), infiniteBoard.getMaxColumn(),
+				SparseGameBoard.column(last), moves == 0);
+
+		viewportTop = rows[0];
+		viewportLeft = columns[0];
+		gameBoard = infiniteBoard.getViewport(viewportTop, viewportLeft, rows[1], columns[1]);
+	}
+
+	/**
+	 * Fits the viewport along one axis, rows or columns.
+	 *
+	 * @param min   int, the smallest row/column marked
+	 * @param max   int, the largest row/column marked
+	 * @param last  int, the row/column of the last move
+	 * @param empty boolean, whether the board is empty
+	 * @return int[], the first row/column of the viewport and its size
+	 */
+	private static int[] fitViewport(int min, int max, int last, boolean empty) {
+		if (empty)
+			return new int[] { -MIN_VIEWPORT / 2, MIN_VIEWPORT };
+
+		int size = max - min + 1 + 2 * VIEWPORT_MARGIN;
+		if (size > GameBoard.MAX_SIZE)
+			return new int[] { last - GameBoard.MAX_SIZE / 2, GameBoard.MAX_SIZE };
+		if (size < MIN_VIEWPORT)
+			return new int[] { (min + max) / 2 - MIN_VIEWPORT / 2, MIN_VIEWPORT };
+		return new int[] { min - VIEWPORT_MARGIN, size };
 	}
 
 	@Override
 	protected int getGameCount() {
 		return playerCount;
 	}
+
 	
 	/**
 	 * Returns the maximum player count for the internal chat server instance
@@ -27,16 +27,16 @@ final class GameUI extends JFrame {
 	private String chatText = "";
 	private boolean dataReceived = false;
 	private int answer = -1;
+	private boolean hintRequested = false;
 
 	// UI components
 	private final JLabel errorMsg;
 	private final Screen screen;
 	private final JTextArea logTextArea;
 	private final JTextField playerTextArea, moveTextArea, chatTextArea;
-	private final JButton moveButton, resignButton, chatButton;
+	private final JButton moveButton, resignButton, chatButton, hintButton;
 	private final JPanel autismPanel, movePanel, chatPanel, logPanel;
 	private final JScrollPane scroll;
-	private static final String[] letters = { "A", "B", "C", "D", "E", "F", "G", "H" };
 
 	// UI Constants
 	private final int HEIGHT_MULTIPLIER; // used to calculate graphics size
@@ -146,8 +146,22 @@ final class GameUI extends JFrame {
 				submitMove();
 			}
 		});
+		// hintButton
+		hintButton = new JButton("Hint");
+		hintButton.setMnemonic(KeyEvent.VK_H);
+		hintButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (!dataReceived)
+					JOptionPane.showMessageDialog(getContentPane(), "Please wait for the other players to connect",
+							"Error", JOptionPane.ERROR_MESSAGE);
+				else
+					hintRequested = true;
+			}
+		});
 /*ADD*/ movePanel.add(moveTextArea);
 /*ADD*/ movePanel.add(moveButton);
+/*ADD*/ movePanel.add(hintButton);
 
 		// disconnectB
 		resignButton = new JButton("Resign");
@@ -214,10 +228,11 @@ final class GameUI extends JFrame {
 		// for some reason maybe doesn't work as expected (?)
 		// maybe because `screen.setPreferredSize()` is called at constructor?
 		screen.board = gameBoard;
-		screen.setPreferredSize(new Dimension(100 * gameBoard.SIZE, 100 * gameBoard.SIZE));
+		screen.setPreferredSize(
+				new Dimension(100 * Math.min(8, gameBoard.COLUMNS), 100 * Math.min(8, gameBoard.ROWS)));
 		screen.repaint();
 		errorMsg.setText(String.format("Invalid input! Please insert: [A-%s][1-%d]",
-				letters[screen.board.SIZE - 1], screen.board.SIZE));
+				GameBoard.rowName(screen.board.ROWS - 1), screen.board.COLUMNS));
 
 		// Wait until it loads then update the whole thing.
 		// TODO DELETEME comments below if not necessary
@@ -232,6 +247,11 @@ final class GameUI extends JFrame {
 		this.update(this.getGraphics());
 	}
 
+	// repaints the board after a square of it was marked; its size didn't change
+	void refreshScreen() {
+		screen.repaint();
+	}
+
 	// ----- CHAT FIELDS ENABLE METHODS -----
 	void setEnableTurn(boolean enable) {
 		moveButton.setEnabled(enable);
@@ -296,6 +316,17 @@ final class GameUI extends JFrame {
 		return ans;
 	}
 
+	/**
+	 * Returns whether the player asked for a hint since the last call.
+	 *
+	 * @return boolean, true if the Hint button was pressed
+	 */
+	boolean getHintRequest() {
+		boolean requested = hintRequested;
+		hintRequested = false;
+		return requested;
+	}
+
 	String getChatText() {
 		String ans = "";
 		if (!chatText.equals("")) {
@@ -320,15 +351,16 @@ final class GameUI extends JFrame {
 	// ----- PRIVATE METHODS / CLASSES -----
 
 	/**
-	 * Converts the player's input from {@code Char-Int} to {@code Int-Int} so that
+	 * Converts the player's input from {@code Letters-Int} to a coordinate so that
 	 * the GameBoard can understand it
 	 * 
 	 * @param str String, the player's input
-	 * @return int, the data the GameBoard understands
+	 * @return int, the data the GameBoard understands, -1 if the input isn't a
+	 *         square of the board
+	 * @see GameBoard#fromText(String) fromText()
 	 */
-	private static int convertInput(String str) {
-		String characters = "ABCDEFGH";
-		return characters.indexOf(str.charAt(0)) * 10 + Integer.parseInt(Character.toString(str.charAt(1))) - 1;
+	private int convertInput(String str) {
+		return screen.board.fromText(str);
 	}
 
 	private void submitMove() {
@@ -338,11 +370,12 @@ final class GameUI extends JFrame {
 			return;
 		}
 		String input = GameEngine.Utility.myStrip(moveTextArea.getText().toUpperCase(), ' ', '\t');
-		if (!input.matches(String.format("[A-%s][1-%d]", letters[screen.board.SIZE - 1], screen.board.SIZE))) {
+		int move = convertInput(input);
+		if (move == -1) {
 			errorMsg.setVisible(true);
 		} else {
 			errorMsg.setVisible(false);
-			answer = convertInput(input);
+			answer = move;
 			moveTextArea.setText("");
 		}
 	}
@@ -364,29 +397,31 @@ final class GameUI extends JFrame {
 
 		@Override
 		public void paintComponent(Graphics g) {
+			// squares are 25*HEIGHT_MULTIPLIER pixels up to 8x8, larger boards shrink
+			// them to fit in the same space
+			int cell = 25 * HEIGHT_MULTIPLIER * 8 / Math.max(8, Math.max(board.ROWS, board.COLUMNS));
+
 			g.setColor(Color.BLACK);
-			g.setFont(new Font("Serif", Font.PLAIN, 30 * HEIGHT_MULTIPLIER));
+			g.setFont(new Font("Serif", Font.PLAIN, cell * 6 / 5));
 
 			// paint board
-			for (int i = 1; i < board.SIZE + 1; i++) {
+			for (int i = 1; i < board.COLUMNS + 1; i++) {
 				// 53 instead of 50 to compensate for character width
-				g.drawString(Integer.toString(i), i * 26 * HEIGHT_MULTIPLIER, 25 * HEIGHT_MULTIPLIER);
-				for (int j = 1; j < board.SIZE + 1; j++) {
-					g.drawString(letters[j - 1], 0, (j + 1) * 25 * HEIGHT_MULTIPLIER);
-					g.drawRect(i * 25 * HEIGHT_MULTIPLIER, j * 25 * HEIGHT_MULTIPLIER, 25 * HEIGHT_MULTIPLIER,
-							25 * HEIGHT_MULTIPLIER); // kill me :(
+				g.drawString(Integer.toString(i), i * (cell + cell / 25), cell);
+				for (int j = 1; j < board.ROWS + 1; j++) {
+					g.drawString(GameBoard.rowName(j - 1), 0, (j + 1) * cell);
+					g.drawRect(i * cell, j * cell, cell, cell); // kill me :(
 				}
 			}
 
 			// paint marks
-			g.setFont(new Font("Monospaced", Font.BOLD, 32 * HEIGHT_MULTIPLIER));
-			for (int i = 0; i < board.SIZE; i++) {
-				for (int j = 0; j < board.SIZE; j++) {
-					char c = board.getBoard()[i][j];
+			g.setFont(new Font("Monospaced", Font.BOLD, cell * 32 / 25));
+			for (int i = 0; i < board.ROWS; i++) {
+				for (int j = 0; j < board.COLUMNS; j++) {
+					char c = board.getSquare(i, j);
 					if (c != GameEngine.DASH) {
 						g.setColor(colorMap.get(c));
-						g.drawString(Character.toString(c), (j + 1) * 25 * HEIGHT_MULTIPLIER,
-								(i + 2) * 25 * HEIGHT_MULTIPLIER);
+						g.drawString(Character.toString(c), (j + 1) * cell, (i + 2) * cell);
 					}
 				}
 			}
@@ -0,0 +1,187 @@
+package ttt_online;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import javax.swing.JOptionPane;
+
+/**
+ * Server-side application that suggests moves to the players of the rooms of
+ * a RoomManager.
+ * <p>
+ * A client first says which version of the protocol it speaks and sends the
+ * name of its room, as a {@code String}. Then, for
+ * every hint, it sends the board it sees, as a {@code char[][]}, and its
+ * symbol; the
+ * server answers, once the hint is ready, with the move as an {@code Integer}
+ * and its evaluation as a {@code String}, or with -1 and the reason there is no
+ * hint. Requests are answered out of order, as soon as their hints are ready,
+ * so a client can ask again without waiting.
+ *
+ * @see HintService
+ */
+final class HintServer extends Server {
+
+	// port of the Hint Server
+	private static final int HINT_PORT = 10003;
+
+	// time a client has to ask for a room after connecting
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+
+	private final RoomManager rooms;
+
+	/**
+	 * Constructs the Hint Server for the players of the rooms of {@code rooms},
+	 * without the UI.
+	 *
+	 * @param playerCount     int, the number of players of every game
+	 * @param printStackTrace boolean, whether or not to print full Stack Trace on
+	 *                        Exceptions
+	 * @param rooms           RoomManager, the server of the games
+	 */
+	HintServer(int playerCount, boolean printStackTrace, RoomManager rooms) {
+		super(playerCount, printStackTrace);
+		this.rooms = rooms;
+	}
+
+	/**
+	 * Main method that calls other methods to actually run the server.
+	 *
+	 * @see HintServer#initializeServer() InitializeServer()
+	 * @see HintServer#getConnections() getConnections()
+	 */
+	@Override
+	public void run() {
+		initializeServer();
+		getConnections();
+	}
+
+	/**
+	 * Initializes the Hint Server on port {@code HINT_PORT}.
+	 */
+	@Override
+	protected void initializeServer() {
+		try {
+			server = new ServerSocket(HINT_PORT);
+			log("Hint Server ready");
+		} catch (IOException e) {
+			logerr("IOException in InitializeServer()", e, printStackTrace);
+			JOptionPane.showMessageDialog(screen,
+					String.format("Error while setting up server:\nPort %d already in use\n\nServer will now exit",
+							HINT_PORT),
+					"Error", JOptionPane.ERROR_MESSAGE);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Accepts connections and starts a HintServerThread for each one.
+	 *
+	 * @see HintServerThread
+	 */
+	@Override
+	protected void getConnections() {
+		ExecutorService exec = VirtualThreads.newExecutor();
+		try {
+			while (true) {
+				Connection connection = new StreamConnection(server.accept());
+				exec.execute(new HintServerThread(connection));
+			}
+		} catch (IOException e) {
+			logerr("IOException in getConnections()", e, printStackTrace);
+		}
+	}
+
+	/**
+	 * Private inner class that reads the requests of one client and writes the
+	 * hints back when they are ready. When an Exception occurs, the connection is
+	 * closed and this Thread terminates execution.
+	 */
+	private class HintServerThread implements Runnable {
+
+		private final Connection connection;
+
+		// hints are answered from the threads that search them, and each takes two messages
+		private final ReentrantLock outputLock = new ReentrantLock();
+
+		HintServerThread(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!connection.checkVersion(HANDSHAKE_TIMEOUT))
+					return;
+				String name = (String) connection.receive(HANDSHAKE_TIMEOUT);
+				GameServer game = rooms.getRoom(name);
+				log(String.format("Hint connection from %s for room '%s'", connection.getInetAddress(), name));
+				while (true) {
+					char[][] board = (char[][]) connection.receive();
+					char symbol = (char) connection.receive();
+					if (game == null) {
+						respond(-1, String.format("There is no room '%s'", name));
+						continue;
+					}
+					game.requestHint(board, symbol).whenComplete(new BiConsumer<HintService.Hint, Throwable>() {
+
+						@Override
+						public void accept(HintService.Hint hint, Throwable error) {
+							if (error == null)
+								respond(hint.move, hint.evaluation);
+							else
+								respond(-1, reason(error));
+						}
+					});
+				}
+			} catch (SocketException e) {
+				logerr("SocketException in HintServerThread.run(); connection closed by user", e, printStackTrace);
+			} catch (IOException e) {
+				logerr("IOException in HintServerThread.run()", e, printStackTrace);
+			} catch (ClassCastException e) {
+				logerr("ClassCastException in HintServerThread.run()", e, printStackTrace);
+			}
+			try {
+				connection.close();
+			} catch (IOException e) {
+				logerr("IOException while closing hint connection", e, printStackTrace);
+			}
+		}
+
+		private void respond(int move, String text) {
+			outputLock.lock();
+			try {
+				connection.send(move);
+				connection.send(text);
+			} catch (IOException e) {
+				logerr("IOException while sending hint", e, printStackTrace);
+			} finally {
+				outputLock.unlock();
+			}
+		}
+	}
+
+	private static String reason(Throwable error) {
+		if (error instanceof CompletionException && error.getCause() != null)
+			error = error.getCause();
+		if (error instanceof CancellationException)
+			return "The board changed before the hint was ready";
+		return error.getMessage() == null ? error.toString() : error.getMessage();
+	}
+
+	@Override
+	protected int getGameCount() {
+		return 0;
+	}
+
+	@Override
+	protected int getChatCount() {
+		return 0;
+	}
+}
@@ -0,0 +1,234 @@
+package ttt_online;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Suggests moves to players, searching on the threads of a
+ * {@link BotScheduler} so that the game never waits for a hint. On boards with
+ * a {@link Tablebase}, hints are looked up in it instead once it's loaded.
+ * <p>
+ * Hints are returned as futures. A hint is always the move of the player whose
+ * turn it is, so a position is searched once whoever asks; requests for a
+ * position that is already being searched, e.g. when several players of a game
+ * ask at the same time, share that search instead of starting another one;
+ * finished hints are kept in the shared {@link PositionCache}. Once the game
+ * moves on, the searches of positions that are no longer on the board are
+ * cancelled and their futures complete with a {@code CancellationException}.
+ */
+final class HintService {
+
+	/**
+	 * A suggested move and how good the position is after it.
+	 */
+	static final class Hint {
+
+		/**
+		 * The suggested move
+		 */
+		final int move;
+
+		/**
+		 * The evaluation of the move for the player to move, e.g.
+		 * {@code "forced win"}, {@code "draw"} or {@code "+120"}
+		 */
+		final String evaluation;
+
+		Hint(int move, String evaluation) {
+			this.move = move;
+			this.evaluation = evaluation;
+		}
+	}
+
+	// the kind of the hints in the PositionCache
+	private static final long CACHE_KIND = 0x9b05688c2b3e6c1fL;
+
+	// searchers are large, so every service shares the one of the scheduler thread that runs its search
+	private static final ThreadLocal<AlphaBetaPlayer> searchers = new ThreadLocal<AlphaBetaPlayer>();
+
+	// the score of a position that the tablebase knows is a draw
+	private static final int DRAW_SCORE = Integer.MIN_VALUE;
+
+	private final BotScheduler scheduler;
+	private final long timeLimit;
+	private final Future<Tablebase> tablebase;
+	private final PositionCache cache = PositionCache.getShared();
+
+	// the searches running, by key
+	private final Map<Long, Request> pending = new HashMap<Long, Request>();
+
+	/**
+	 * A search for a hint; the hash of its board, to tell when it's stale, and
+	 * its result: the move on the canonical board in the lower half and the score
+	 * in the upper.
+	 */
+	private static final class Request {
+		private final long position;
+		private final CompletableFuture<Long> result = new CompletableFuture<Long>();
+		private Future<?> task;
+
+		Request(long position) {
+			this.position = position;
+		}
+	}
+
+	/**
+	 * Constructs a service that searches for {@code timeLimit} milliseconds per
+	 * hint on the threads of {@code scheduler}, until {@code tablebase} is
+	 * loaded.
+	 *
+	 * @param scheduler BotScheduler, the scheduler whose threads to use
+	 * @param timeLimit long, the time budget of every hint in milliseconds
+	 * @param tablebase Future, the tablebase of the board, or null if it has none
+	 */
+	HintService(BotScheduler scheduler, long timeLimit, Future<Tablebase> tablebase) {
+		this.scheduler = scheduler;
+		this.timeLimit = timeLimit;
+		this.tablebase = tablebase;
+	}
+
+	/**
+	 * Requests a hint for {@code player}, whose turn it is, in the position on
+	 * {@code board}. Searches and hints are keyed by the position, which
+	 * includes whose turn it is.
+	 *
+	 * @param board   GameBoard, the position, which must not change until the
+	 *                hint is ready; copy it if it might
+	 * @param symbols char[], the symbols of the players, in the order they play
+	 * @param player  int, the index of the player whose turn it is
+	 * @return CompletableFuture, the hint
+	 */
+	synchronized CompletableFuture<Hint> requestHint(GameBoard board, char[] symbols, int player) {
+		long key = PositionCache.key(board, symbols, player, CACHE_KIND);
+		int symmetry = board.getCanonicalSymmetry();
+		Function<Long, Hint> toHint = new Function<Long, Hint>() {
+
+			@Override
+			public Hint apply(Long value) {
+				int move = board.fromSymmetry((int) (long) value, symmetry);
+				return new Hint(move, describe((int) (value >> 32)));
+			}
+		};
+
+		long cached = cache.get(key);
+		if (cached != PositionCache.MISSING)
+			return CompletableFuture.completedFuture(toHint.apply(cached));
+
+		Request request = pending.get(key);
+		if (request == null) {
+			Request created = new Request(board.getHash());
+			created.task = scheduler.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					try {
+						int[] hint = search(board, symbols, player);
+						long value = (long) hint[1] << 32 | board.toSymmetry(hint[0], symmetry) & 0xffffffffL;
+						// a cancelled search may have stopped early, so it isn't worth keeping
+						if (!Thread.currentThread().isInterrupted())
+							cache.put(key, value);
+						created.result.complete(value);
+					} catch (RuntimeException e) {
+						created.result.completeExceptionally(e);
+					} finally {
+						finish(key, created);
+					}
+					return null;
+				}
+			});
+			pending.put(key, created);
+			request = created;
+		}
+		return request.result.thenApply(toHint);
+	}
+
+	/**
+	 * Cancels the searches of every position but the one on {@code board}.
+	 *
+	 * @param board GameBoard, the position of the game
+	 */
+	synchronized void boardChanged(GameBoard board) {
+		for (Iterator<Request> it = pending.values().iterator(); it.hasNext();) {
+			Request request = it.next();
+			if (request.position != board.getHash()) {
+				request.task.cancel(true);
+				request.result.cancel(false);
+				it.remove();
+			}
+		}
+	}
+
+	private synchronized void finish(long key, Request request) {
+		if (pending.get(key) == request)
+			pending.remove(key);
+	}
+
+	/**
+	 * Searches for the best move of {@code player}; in the tablebase if it's
+	 * loaded, otherwise with alpha-beta for 2 players and max^n for more, where
+	 * the move is scored by how much more its player's lines are worth than the
+	 * best of everyone else's.
+	 *
+	 * @return int[], the move and its score
+	 */
+	private int[] search(GameBoard board, char[] symbols, int player) {
+		Tablebase solved = loadedTablebase();
+		if (solved != null) {
+			int value = solved.getValue(board, symbols, player);
+			int score = value == Tablebase.TIE ? DRAW_SCORE
+					: value == 0 ? AlphaBetaPlayer.WIN_SCORE : -AlphaBetaPlayer.WIN_SCORE;
+			return new int[] { solved.findMove(board, symbols, player), score };
+		}
+
+		if (symbols.length == 2) {
+			AlphaBetaPlayer searcher = searchers.get();
+			if (searcher == null || searcher.getTimeLimit() != timeLimit) {
+				searcher = new AlphaBetaPlayer(timeLimit, AlphaBetaPlayer.MAX_PLY - 1, 4);
+				searchers.set(searcher);
+			}
+			int move = searcher.findMove(board, symbols, player);
+			return new int[] { move, searcher.getScore() };
+		}
+
+		int move = new MaxNPlayer(MaxNPlayer.Mode.MAX_N, timeLimit).findMove(board, symbols, player);
+		GameBoard after = new GameBoard(board);
+		after.markSquare(move, symbols[player]);
+		LineEvaluator evaluator = new LineEvaluator(after, symbols);
+		int best = 0;
+		for (int seat = 0; seat < symbols.length; seat++)
+			if (seat != player)
+				best = Math.max(best, evaluator.getScore(seat));
+		return new int[] { move, evaluator.getScore(player) - best };
+	}
+
+	// the tablebase, or null if there is none or it isn't loaded yet
+	private Tablebase loadedTablebase() {
+		if (tablebase == null || !tablebase.isDone())
+			return null;
+		try {
+			return tablebase.get();
+		} catch (ExecutionException e) {
+			// the Game Server logs why it couldn't be loaded; hints are searched instead
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private static String describe(int score) {
+		if (score == DRAW_SCORE)
+			return "draw";
+		if (score >= AlphaBetaPlayer.WIN_SCORE - AlphaBetaPlayer.MAX_PLY)
+			return "forced win";
+		if (score <= -AlphaBetaPlayer.WIN_SCORE + AlphaBetaPlayer.MAX_PLY)
+			return "forced loss";
+		return String.format("%+d", score);
+	}
+}
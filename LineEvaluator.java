@@ -0,0 +1,411 @@
+package ttt_online;
+
+import java.util.Arrays;
+
+/**
+ * Keeps count of the windows of a GameBoard, the lines of {@code CONSECUTIVE}
+ * squares a player could win with, so that positions can be evaluated without
+ * scanning the board.
+ * <p>
+ * A window is open for a player if only they have marks in it. For every
+ * player the evaluator knows how many open windows they have with each number
+ * of marks, and how many different empty squares would complete one of their
+ * windows (their threats). Marking or unmarking a square only updates the
+ * windows through it, at most {@code 4*CONSECUTIVE} of them, so search engines
+ * can keep the counts in step with their board as they make and undo moves.
+ */
+final class LineEvaluator {
+
+	/**
+	 * The worth of an open window by the number of marks in it
+	 */
+	static final int[] WEIGHTS = { 0, 1, 8, 64, 512, 4096, 32768, 262144 };
+
+	// directions of the windows
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	final int CONSECUTIVE;
+	private final int rows, columns, stride, players;
+	private final char[] symbols;
+
+	// seat + 1 of the mark on every square, 0 if empty
+	private final byte[] cells;
+
+	// the first square of every window and the step to the next one
+	private final int[] windowStarts, windowSteps;
+	// the windows through square i are cellWindows[cellStarts[i]] to cellWindows[cellStarts[i + 1] - 1]
+	private final int[] cellStarts, cellWindows;
+
+	// the number of marks of every player in every window and in total
+	private final byte[] windowCounts, windowTotals;
+
+	// openCounts[p][n] is the number of windows open for p with n marks
+	private final int[][] openCounts;
+	// completes[p][i] is the number of windows square i completes for p
+	private final int[][] completes;
+	private final int[] threats;
+
+	// the partner of every square in the pairing being built, -1 if none, and the windows it must cover
+	private int[] partners, pairingWindows;
+	private int pairingEffort;
+
+	/**
+	 * Constructs an evaluator for {@code board} and counts the marks already on
+	 * it. Marks that don't belong to any of the {@code symbols} block windows for
+	 * everyone.
+	 *
+	 * @param board   GameBoard, the board
+	 * @param symbols char[], the symbols of the players, in the order they play
+	 */
+	LineEvaluator(GameBoard board, char[] symbols) {
+		this.CONSECUTIVE = board.CONSECUTIVE;
+		this.rows = board.ROWS;
+		this.columns = board.COLUMNS;
+		this.stride = board.STRIDE;
+		this.symbols = symbols.clone();
+		// one extra player for the marks of no one
+		this.players = symbols.length + 1;
+		this.cells = new byte[rows * columns];
+
+		int k = CONSECUTIVE, windows = 0;
+		int[] cellCounts = new int[rows * columns + 1];
+		for (int[] direction : DIRECTIONS)
+			for (int row = 0; row + (k - 1) * direction[0] < rows; row++)
+				for (int col = 0; col < columns; col++)
+					if (col + (k - 1) * direction[1] >= 0 && col + (k - 1) * direction[1] < columns)
+						windows++;
+
+		windowStarts = new int[windows];
+		windowSteps = new int[windows];
+		int w = 0;
+		for (int[] direction : DIRECTIONS) {
+			for (int row = 0; row + (k - 1) * direction[0] < rows; row++) {
+				for (int col = 0; col < columns; col++) {
+					if (col + (k - 1) * direction[1] < 0 || col + (k - 1) * direction[1] >= columns)
+						continue;
+					windowStarts[w] = row * columns + col;
+					windowSteps[w] = direction[0] * columns + direction[1];
+					for (int i = 0; i < k; i++)
+						cellCounts[windowStarts[w] + i * windowSteps[w]]++;
+					w++;
+				}
+			}
+		}
+
+		cellStarts = new int[rows * columns + 1];
+		for (int i = 0; i < rows * columns; i++)
+			cellStarts[i + 1] = cellStarts[i] + cellCounts[i];
+		cellWindows = new int[cellStarts[rows * columns]];
+		for (w = 0; w < windows; w++) {
+			for (int i = 0; i < k; i++) {
+				int cell = windowStarts[w] + i * windowSteps[w];
+				cellWindows[cellStarts[cell + 1] - cellCounts[cell]--] = w;
+			}
+		}
+
+		windowCounts = new byte[windows * players];
+		windowTotals = new byte[windows];
+		openCounts = new int[players][k + 1];
+		completes = new int[players][rows * columns];
+		threats = new int[players];
+		for (int p = 0; p < players; p++)
+			openCounts[p][0] = windows;
+
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < columns; col++) {
+				char mark = board.getSquare(row, col);
+				if (mark != GameEngine.DASH)
+					mark(board.toCoord(row, col), seatOf(mark));
+			}
+		}
+	}
+
+	/**
+	 * Updates the counts after {@code seat} marks a square.
+	 *
+	 * @param coord int, the coordinate of the square, in the form of STRIDE*row +
+	 *              col
+	 * @param seat  int, the index of the player, or -1 for a mark of no one
+	 */
+	void mark(int coord, int seat) {
+		int cell = (coord / stride) * columns + coord % stride;
+		int player = seat == -1 ? players - 1 : seat;
+		for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++)
+			leave(cellWindows[i]);
+		cells[cell] = (byte) (player + 1);
+		for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+			int w = cellWindows[i];
+			windowCounts[w * players + player]++;
+			windowTotals[w]++;
+			enter(w);
+		}
+	}
+
+	/**
+	 * Updates the counts after a square is unmarked.
+	 *
+	 * @param coord int, the coordinate of the square, in the form of STRIDE*row +
+	 *              col
+	 */
+	void unmark(int coord) {
+		int cell = (coord / stride) * columns + coord % stride;
+		int player = cells[cell] - 1;
+		for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++)
+			leave(cellWindows[i]);
+		cells[cell] = 0;
+		for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+			int w = cellWindows[i];
+			windowCounts[w * players + player]--;
+			windowTotals[w]--;
+			enter(w);
+		}
+	}
+
+	/**
+	 * Returns the number of windows that only {@code seat} has marks in, with
+	 * exactly {@code marks} of them; e.g. the open threes are
+	 * {@code getWindowCount(seat, 3)}.
+	 *
+	 * @param seat  int, the index of the player
+	 * @param marks int, the number of marks, 1 to {@code CONSECUTIVE}
+	 * @return int, the number of windows
+	 */
+	int getWindowCount(int seat, int marks) {
+		return openCounts[seat][marks];
+	}
+
+	/**
+	 * Returns the number of different empty squares that would complete a line
+	 * for {@code seat}. A player to move with a threat wins; a player facing two
+	 * threats can't block both.
+	 *
+	 * @param seat int, the index of the player
+	 * @return int, the number of threats
+	 */
+	int getThreatCount(int seat) {
+		return threats[seat];
+	}
+
+	/**
+	 * Returns how many lines {@code coord} would complete for {@code seat}.
+	 *
+	 * @param coord int, the coordinate of the square, in the form of STRIDE*row +
+	 *              col
+	 * @param seat  int, the index of the player
+	 * @return int, the number of lines, 0 if the square doesn't win
+	 */
+	int getCompletions(int coord, int seat) {
+		return completes[seat][(coord / stride) * columns + coord % stride];
+	}
+
+	/**
+	 * Returns the worth of the open windows of {@code seat}, weighted by the
+	 * number of marks in them.
+	 *
+	 * @param seat int, the index of the player
+	 * @return int, the score
+	 */
+	int getScore(int seat) {
+		int score = 0;
+		int[] counts = openCounts[seat];
+		for (int marks = 1; marks < counts.length; marks++)
+			score += WEIGHTS[Math.min(marks, WEIGHTS.length - 1)] * counts[marks];
+		return score;
+	}
+
+	/**
+	 * Returns the number of windows through {@code coord} that only {@code seat}
+	 * has marks in, with exactly {@code marks} of them; e.g. marking a square with
+	 * {@code getWindowCount(coord, seat, CONSECUTIVE - 2) > 0} makes a threat.
+	 *
+	 * @param coord int, the coordinate of an empty square
+	 * @param seat  int, the index of the player
+	 * @param marks int, the number of marks, 1 to {@code CONSECUTIVE}
+	 * @return int, the number of windows
+	 */
+	int getWindowCount(int coord, int seat, int marks) {
+		int cell = (coord / stride) * columns + coord % stride, count = 0;
+		for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+			int w = cellWindows[i];
+			if (windowTotals[w] == marks && owner(w) == seat)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks whether any player could still win with {@code coord}, i.e. if it is
+	 * in a window that is open for one of the players. Marking a square that
+	 * isn't changes nothing but the number of empty squares.
+	 *
+	 * @param coord int, the coordinate of a square
+	 * @return boolean, true if the square is in an open window
+	 */
+	boolean isLive(int coord) {
+		int cell = (coord / stride) * columns + coord % stride;
+		for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+			int owner = owner(cellWindows[i]);
+			if (owner == -2 || owner >= 0 && owner < players - 1)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the empty squares of the windows through {@code coord} that only
+	 * {@code seat} has marks in, with exactly {@code marks} of them, into
+	 * {@code squares}. A square in more than one window is written more than
+	 * once.
+	 *
+	 * @param coord   int, the coordinate of a square
+	 * @param seat    int, the index of the player
+	 * @param marks   int, the number of marks, 1 to {@code CONSECUTIVE}
+	 * @param squares int[], where to write the coordinates of the squares, with
+	 *                room for {@code 4*CONSECUTIVE*CONSECUTIVE} of them
+	 * @return int, the number of squares written
+	 */
+	int getEmptySquares(int coord, int seat, int marks, int[] squares) {
+		int cell = (coord / stride) * columns + coord % stride, count = 0;
+		for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+			int w = cellWindows[i];
+			if (windowTotals[w] != marks || owner(w) != seat)
+				continue;
+			for (int j = 0, square = windowStarts[w]; j < CONSECUTIVE; j++, square += windowSteps[w])
+				if (cells[square] == 0)
+					squares[count++] = (square / columns) * stride + square % columns;
+		}
+		return count;
+	}
+
+	/**
+	 * Looks for a pairing strategy against {@code seat}: disjoint pairs of empty
+	 * squares such that every window open for {@code seat} holds one of the pairs.
+	 * Whenever {@code seat} marks a square of a pair, another player marks the
+	 * other one, so {@code seat} can never complete a window, whoever is to move.
+	 * <p>
+	 * Windows with the fewest empty squares are paired first, and the search
+	 * gives up after trying {@code effort} pairs, so false means no pairing was
+	 * found rather than that there is none.
+	 *
+	 * @param seat   int, the index of the player
+	 * @param effort int, the most pairs to try
+	 * @return boolean, true if a pairing was found
+	 */
+	boolean hasPairing(int seat, int effort) {
+		if (partners == null) {
+			partners = new int[cells.length];
+			pairingWindows = new int[windowStarts.length];
+			Arrays.fill(partners, -1);
+		}
+		// the open windows, sorted by their number of empty squares
+		int count = 0;
+		for (int empty = 1; empty <= CONSECUTIVE; empty++) {
+			for (int w = 0; w < windowStarts.length; w++) {
+				int owner = owner(w);
+				if ((owner == seat || owner == -2) && CONSECUTIVE - windowTotals[w] == empty) {
+					if (empty == 1)
+						return false;
+					pairingWindows[count++] = w;
+				}
+			}
+		}
+		pairingEffort = effort;
+		boolean found = pair(0, count);
+		Arrays.fill(partners, -1);
+		return found;
+	}
+
+	// pairs the windows from the i-th of the pairingWindows on, with the partners set so far
+	private boolean pair(int i, int count) {
+		if (i == count)
+			return true;
+		int w = pairingWindows[i], start = windowStarts[w], step = windowSteps[w];
+		int end = start + CONSECUTIVE * step;
+		for (int a = start; a != end; a += step)
+			if (cells[a] == 0 && partners[a] != -1 && (partners[a] - start) % step == 0
+					&& (partners[a] - start) / step >= 0 && (partners[a] - start) / step < CONSECUTIVE)
+				return pair(i + 1, count);
+
+		for (int a = start; a != end; a += step) {
+			if (cells[a] != 0 || partners[a] != -1)
+				continue;
+			for (int b = a + step; b != end; b += step) {
+				if (cells[b] != 0 || partners[b] != -1)
+					continue;
+				if (--pairingEffort < 0)
+					return false;
+				partners[a] = b;
+				partners[b] = a;
+				boolean paired = pair(i + 1, count);
+				partners[a] = partners[b] = -1;
+				if (paired)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the index of {@code mark} in the symbols, or -1.
+	 */
+	int seatOf(char mark) {
+		for (int seat = 0; seat < symbols.length; seat++)
+			if (symbols[seat] == mark)
+				return seat;
+		return -1;
+	}
+
+	// remove window w from the counts, before one of its squares changes
+	private void leave(int w) {
+		int owner = owner(w);
+		if (owner == -1)
+			return;
+		int total = windowTotals[w];
+		if (owner == -2) {
+			for (int p = 0; p < players; p++)
+				openCounts[p][0]--;
+			return;
+		}
+		openCounts[owner][total]--;
+		if (total == CONSECUTIVE - 1 && --completes[owner][gap(w)] == 0)
+			threats[owner]--;
+	}
+
+	// add window w to the counts, after one of its squares changed
+	private void enter(int w) {
+		int owner = owner(w);
+		if (owner == -1)
+			return;
+		int total = windowTotals[w];
+		if (owner == -2) {
+			for (int p = 0; p < players; p++)
+				openCounts[p][0]++;
+			return;
+		}
+		openCounts[owner][total]++;
+		if (total == CONSECUTIVE - 1 && completes[owner][gap(w)]++ == 0)
+			threats[owner]++;
+	}
+
+	/**
+	 * Returns the only player with marks in window {@code w}, -2 if it's empty or
+	 * -1 if more than one player has marks in it.
+	 */
+	private int owner(int w) {
+		int total = windowTotals[w];
+		if (total == 0)
+			return -2;
+		for (int p = 0; p < players; p++)
+			if (windowCounts[w * players + p] != 0)
+				return windowCounts[w * players + p] == total ? p : -1;
+		return -1;
+	}
+
+	// the first empty square of window w
+	private int gap(int w) {
+		int cell = windowStarts[w];
+		while (cells[cell] != 0)
+			cell += windowSteps[w];
+		return cell;
+	}
+}
@@ -0,0 +1,117 @@
+package ttt_online;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from {@code long} keys to {@code char} values that doesn't box
+ * its keys or values. Uses open addressing with linear probing over two
+ * parallel arrays and doubles its capacity when it gets half full.
+ * <p>
+ * The value {@code '\u0000'} marks empty slots, so it can't be stored.
+ */
+final class LongCharMap {
+
+	static final char ABSENT = '\u0000';
+
+	private long[] keys;
+	private char[] values;
+	private int size = 0;
+	private int mask;
+
+	/**
+	 * Constructs an empty map with room for at least {@code expected} entries
+	 * before it has to grow.
+	 *
+	 * @param expected int, the number of entries expected
+	 */
+	LongCharMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, 2 * expected - 1)) << 1;
+		keys = new long[capacity];
+		values = new char[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Returns the value of {@code key}.
+	 *
+	 * @param key long, the key
+	 * @return char, the value or {@code ABSENT} if there is none
+	 */
+	char get(long key) {
+		for (int i = slot(key);; i = (i + 1) & mask) {
+			if (values[i] == ABSENT || keys[i] == key)
+				return values[i];
+		}
+	}
+
+	/**
+	 * Maps {@code key} to {@code value}, replacing the previous value if there
+	 * was one.
+	 *
+	 * @param key   long, the key
+	 * @param value char, the value, anything except {@code ABSENT}
+	 * @return char, the previous value or {@code ABSENT}
+	 */
+	char put(long key, char value) {
+		if (value == ABSENT)
+			throw new IllegalArgumentException("Can't store '\\u0000' in a LongCharMap");
+
+		int i = slot(key);
+		while (values[i] != ABSENT && keys[i] != key)
+			i = (i + 1) & mask;
+
+		char previous = values[i];
+		keys[i] = key;
+		values[i] = value;
+		if (previous == ABSENT && ++size > keys.length / 2)
+			grow();
+		return previous;
+	}
+
+	/**
+	 * Returns the number of entries in the map.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every entry, keeping the current capacity.
+	 */
+	void clear() {
+		Arrays.fill(values, ABSENT);
+		size = 0;
+	}
+
+	/**
+	 * Returns the first slot to look at for {@code key}, mixing its bits so that
+	 * neighbouring keys end up in different parts of the table.
+	 */
+	private int slot(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	/**
+	 * Doubles the capacity of the map and re-inserts every entry.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		char[] oldValues = values;
+		keys = new long[2 * oldKeys.length];
+		values = new char[2 * oldValues.length];
+		mask = keys.length - 1;
+
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] == ABSENT)
+				continue;
+			int i = slot(oldKeys[j]);
+			while (values[i] != ABSENT)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+}
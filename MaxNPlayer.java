@@ -0,0 +1,384 @@
+package ttt_online;
+
+import java.util.Arrays;
+
+/**
+ * A computer player for games with any number of players, usually 3 or 4,
+ * where 2 player alpha-beta doesn't apply. Supports two searches:
+ * <ul>
+ * <li>{@code MAX_N}: every player maximizes their own share of the
+ * evaluation. Scores are vectors with one entry per player that always add up
+ * to {@code MAX_SUM}, which allows shallow pruning: once a player is sure to
+ * get more than what the previous player leaves them, the rest of their moves
+ * are skipped.
+ * <li>{@code PARANOID}: assumes everyone else plays against this player, which
+ * turns the game into a 2 sided one that can be searched with alpha-beta.
+ * </ul>
+ * Both searches are iteratively deepened until the time limit runs out and
+ * share a cache of evaluations, which is kept between moves.
+ */
+final class MaxNPlayer implements AIPlayer {
+
+	enum Mode {
+		MAX_N, PARANOID
+	}
+
+	/**
+	 * The sum of every player's score in a {@code MAX_N} evaluation
+	 */
+	static final int MAX_SUM = 1000;
+
+	private static final int MAX_PLY = 64;
+	private static final int WIN_SCORE = AlphaBetaPlayer.WIN_SCORE;
+
+	// size of the evaluation cache, in entries
+	private static final int CACHE_SIZE = 1 << 16;
+
+	private final Mode mode;
+	private final long timeLimit;
+	private final int maxDepth;
+
+	// direct mapped evaluation cache; entry i has key cacheKeys[i] and the scores
+	// of every player starting at cacheScores[i * players]
+	private final long[] cacheKeys = new long[CACHE_SIZE];
+	private int[] cacheScores = new int[0];
+
+	private long nodeCount = 0;
+
+	/**
+	 * Constructs a player that thinks for {@code timeLimit} milliseconds per move.
+	 *
+	 * @param mode      Mode, {@code MAX_N} or {@code PARANOID}
+	 * @param timeLimit long, the time budget of every move in milliseconds
+	 */
+	MaxNPlayer(Mode mode, long timeLimit) {
+		this(mode, timeLimit, MAX_PLY - 1);
+	}
+
+	/**
+	 * Constructs a player that thinks for {@code timeLimit} milliseconds per move
+	 * but never searches deeper than {@code maxDepth} plies.
+	 *
+	 * @param mode      Mode, {@code MAX_N} or {@code PARANOID}
+	 * @param timeLimit long, the time budget of every move in milliseconds
+	 * @param maxDepth  int, the maximum depth of the search
+	 */
+	MaxNPlayer(Mode mode, long timeLimit, int maxDepth) {
+		this.mode = mode;
+		this.timeLimit = timeLimit;
+		this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+	}
+
+	@Override
+	public synchronized int findMove(GameBoard board, char[] symbols, int player) {
+		if (cacheScores.length != CACHE_SIZE * symbols.length) {
+			cacheScores = new int[CACHE_SIZE * symbols.length];
+			Arrays.fill(cacheKeys, 0L);
+		}
+		Search search = new Search(new GameBoard(board), symbols, System.nanoTime() + timeLimit * 1000000);
+		int move = search.run(player);
+		nodeCount = search.nodes;
+		return move;
+	}
+
+	/**
+	 * Returns the number of positions visited during the last search.
+	 *
+	 * @return long, the number of nodes
+	 */
+	synchronized long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * The state of one search.
+	 */
+	private final class Search {
+
+		private final GameBoard board;
+		private final char[] symbols;
+		private final int players;
+		private final long deadline;
+		private final long symbolsKey;
+
+		private final int[][] moves, scores;
+		private final int[] history;
+
+		// result[ply] holds the score vector returned to ply - 1, best[ply] the best so far
+		private final int[][] result, best;
+
+		private final LineEvaluator evaluator;
+		private final long columnMask;
+
+		private long nodes = 0;
+		private int iteration, root;
+		private boolean aborted = false;
+		private int rootMove = -1;
+
+		Search(GameBoard board, char[] symbols, long deadline) {
+			this.board = board;
+			this.symbols = symbols;
+			this.players = symbols.length;
+			this.deadline = deadline;
+			this.moves = new int[MAX_PLY][board.ROWS * board.COLUMNS];
+			this.scores = new int[MAX_PLY][board.ROWS * board.COLUMNS];
+			this.history = new int[board.ROWS * board.STRIDE];
+			this.result = new int[MAX_PLY + 1][players];
+			this.best = new int[MAX_PLY][players];
+			this.evaluator = new LineEvaluator(board, symbols);
+			this.columnMask = board.COLUMNS == Long.SIZE ? -1L : (1L << board.COLUMNS) - 1;
+
+			long key = 0L;
+			for (int i = 0; i < players; i++)
+				key = key * 31 + GameBoard.zobrist(i, i, symbols[i]);
+			this.symbolsKey = key;
+		}
+
+		/**
+		 * Deepens the search one ply at a time until time runs out or the whole tree
+		 * has been searched.
+		 *
+		 * @param player int, the player to move
+		 * @return int, the best move found
+		 */
+		int run(int player) {
+			root = player;
+			int bestMove = -1;
+			int empty = board.ROWS * board.COLUMNS - board.getMoveCount();
+			for (iteration = 1; iteration <= maxDepth && iteration <= empty; iteration++) {
+				rootMove = -1;
+				if (mode == Mode.MAX_N)
+					maxN(iteration, 0, player, MAX_SUM + 1);
+				else
+					paranoid(iteration, 0, player, -WIN_SCORE - 1, WIN_SCORE + 1);
+				if (aborted)
+					break;
+				bestMove = rootMove;
+			}
+			return bestMove != -1 ? bestMove : rootMove;
+		}
+
+		/**
+		 * Max^n search; writes the score vector of the position into
+		 * {@code result[ply]}. Stops looking at moves once {@code seat}'s score
+		 * reaches {@code bound}, i.e. what the previous player leaves them.
+		 */
+		private void maxN(int depth, int ply, int seat, int bound) {
+			if (checkAborted())
+				return;
+			if (depth == 0) {
+				evaluate(seat, result[ply]);
+				return;
+			}
+
+			int[] bestScores = best[ply];
+			bestScores[seat] = -1;
+			int next = (seat + 1) % players;
+			int count = generateMoves(ply);
+			for (int i = 0; i < count; i++) {
+				int move = nextMove(ply, i, count);
+				GameBoard.MoveResult outcome = board.markSquare(move, symbols[seat]);
+				evaluator.mark(move, seat);
+				int[] child = result[ply + 1];
+				if (outcome.outcome == GameBoard.MoveResult.Outcome.WIN)
+					fill(child, seat);
+				else if (outcome.outcome == GameBoard.MoveResult.Outcome.TIE)
+					fill(child, -1);
+				else
+					maxN(depth - 1, ply + 1, next, MAX_SUM - Math.max(0, bestScores[seat]));
+				board.unmarkSquare(move);
+				evaluator.unmark(move);
+
+				if (aborted)
+					return;
+				if (child[seat] > bestScores[seat]) {
+					System.arraycopy(child, 0, bestScores, 0, players);
+					if (ply == 0)
+						rootMove = move;
+				}
+				if (bestScores[seat] >= bound) {
+					history[move] += depth * depth;
+					break; // shallow pruning
+				}
+			}
+			System.arraycopy(bestScores, 0, result[ply], 0, players);
+		}
+
+		/**
+		 * Paranoid search; alpha-beta where the {@code root} player maximizes and
+		 * every other player minimizes the root player's score.
+		 *
+		 * @return int, the score of the position for the root player
+		 */
+		private int paranoid(int depth, int ply, int seat, int alpha, int beta) {
+			if (checkAborted())
+				return 0;
+			if (depth == 0) {
+				int[] scores = result[ply];
+				evaluate(seat, scores);
+				return scores[root] == MAX_SUM ? WIN_SCORE - ply - 1
+						: scores[root] == 0 && isWon(scores) ? -(WIN_SCORE - ply - 1) : scores[root] - MAX_SUM / players;
+			}
+
+			boolean maximizing = seat == root;
+			int bestScore = maximizing ? -WIN_SCORE - 1 : WIN_SCORE + 1;
+			int next = (seat + 1) % players;
+			int count = generateMoves(ply);
+			for (int i = 0; i < count; i++) {
+				int move = nextMove(ply, i, count);
+				GameBoard.MoveResult outcome = board.markSquare(move, symbols[seat]);
+				evaluator.mark(move, seat);
+				int score;
+				if (outcome.outcome == GameBoard.MoveResult.Outcome.WIN)
+					score = maximizing ? WIN_SCORE - ply - 1 : -(WIN_SCORE - ply - 1);
+				else if (outcome.outcome == GameBoard.MoveResult.Outcome.TIE)
+					score = 0;
+				else
+					score = paranoid(depth - 1, ply + 1, next, alpha, beta);
+				board.unmarkSquare(move);
+				evaluator.unmark(move);
+
+				if (aborted)
+					return 0;
+				if (maximizing ? score > bestScore : score < bestScore) {
+					bestScore = score;
+					if (ply == 0)
+						rootMove = move;
+				}
+				if (maximizing)
+					alpha = Math.max(alpha, score);
+				else
+					beta = Math.min(beta, score);
+				if (alpha >= beta) {
+					history[move] += depth * depth;
+					break;
+				}
+			}
+			return bestScore;
+		}
+
+		/**
+		 * Checks the clock, and whether the thread was interrupted, every 128 nodes;
+		 * the first iteration always finishes so there is always a move to play.
+		 */
+		private boolean checkAborted() {
+			if ((++nodes & 127) == 0 && iteration > 1
+					&& (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()))
+				aborted = true;
+			return aborted;
+		}
+
+		/**
+		 * Fills {@code scores} with {@code MAX_SUM} shared equally, or all of it
+		 * going to {@code winner} if {@code winner} isn't -1.
+		 */
+		private void fill(int[] scores, int winner) {
+			for (int i = 0; i < players; i++)
+				scores[i] = winner == -1 ? MAX_SUM / players : i == winner ? MAX_SUM : 0;
+		}
+
+		private boolean isWon(int[] scores) {
+			for (int score : scores)
+				if (score == MAX_SUM)
+					return true;
+			return false;
+		}
+
+		/**
+		 * Writes the evaluation of the position into {@code scores}; each player's
+		 * share of {@code MAX_SUM}, proportional to the windows of
+		 * {@code CONSECUTIVE} squares only they have marks in. If the player to move
+		 * can complete a window they get everything. Evaluations are cached by the
+		 * hash of the position.
+		 *
+		 * @param seat   int, the player to move
+		 * @param scores int[], where to write the score of every player
+		 */
+		private void evaluate(int seat, int[] scores) {
+			long key = board.getHash() ^ symbolsKey ^ GameBoard.zobrist(-1, seat, '\u0000');
+			int index = (int) (key ^ (key >>> 32)) & (CACHE_SIZE - 1);
+			if (cacheKeys[index] == key) {
+				System.arraycopy(cacheScores, index * players, scores, 0, players);
+				return;
+			}
+
+			boolean winNext = evaluator.getThreatCount(seat) > 0;
+			for (int p = 0; p < players; p++)
+				scores[p] = 1 + evaluator.getScore(p);
+
+			if (winNext) {
+				fill(scores, seat);
+			} else {
+				long total = 0;
+				for (int score : scores)
+					total += score;
+				for (int p = 0; p < players; p++)
+					scores[p] = (int) (scores[p] * (MAX_SUM - players) / total) + 1;
+			}
+
+			cacheKeys[index] = key;
+			System.arraycopy(scores, 0, cacheScores, index * players, players);
+		}
+
+		/**
+		 * Fills {@code moves[ply]} with the empty squares within 2 squares of a mark
+		 * (or the center of an empty board) and scores them for ordering.
+		 *
+		 * @return int, the number of moves
+		 */
+		private int generateMoves(int ply) {
+			int[] list = moves[ply], score = scores[ply];
+			if (board.getMoveCount() == 0) {
+				list[0] = board.toCoord(board.ROWS / 2, board.COLUMNS / 2);
+				return 1;
+			}
+
+			int count = 0;
+			for (int row = 0; row < board.ROWS; row++) {
+				long near = 0L;
+				for (int r = Math.max(0, row - 2); r <= Math.min(board.ROWS - 1, row + 2); r++) {
+					long occupied = board.getOccupiedBits(r);
+					near |= occupied | (occupied << 1) | (occupied << 2) | (occupied >>> 1) | (occupied >>> 2);
+				}
+				near &= ~board.getOccupiedBits(row) & columnMask;
+
+				for (; near != 0; near &= near - 1) {
+					int col = Long.numberOfTrailingZeros(near);
+					list[count] = board.toCoord(row, col);
+					score[count] = history[list[count]] + neighbours(row, col);
+					count++;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Moves the best scored of the remaining moves to position {@code i} and
+		 * returns it.
+		 */
+		private int nextMove(int ply, int i, int count) {
+			int[] list = moves[ply], score = scores[ply];
+			int best = i;
+			for (int j = i + 1; j < count; j++)
+				if (score[j] > score[best])
+					best = j;
+			int move = list[best], moveScore = score[best];
+			list[best] = list[i];
+			score[best] = score[i];
+			list[i] = move;
+			score[i] = moveScore;
+			return move;
+		}
+
+		/**
+		 * Returns the number of marked squares next to {@code [row, col]}.
+		 */
+		private int neighbours(int row, int col) {
+			int count = 0;
+			long around = (7L << col) >>> 1;
+			for (int r = Math.max(0, row - 1); r <= Math.min(board.ROWS - 1, row + 1); r++)
+				count += Long.bitCount(board.getOccupiedBits(r) & around);
+			return count;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package ttt_online;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A typed message of the game or the chat. Each kind of event has its own
+ * message, so that the side that gets one reacts to its type with a
+ * {@link Dispatcher} instead of reading the meaning out of text. How every
+ * message is encoded is defined in {@link Protocol}.
+ */
+abstract class Message {
+
+	/**
+	 * The type of the message on the wire
+	 */
+	final byte type;
+
+	Message(byte type) {
+		this.type = type;
+	}
+
+	/**
+	 * Sent to a player once they have a seat in a room, or a slot in the chat.
+	 */
+	static final class Welcome extends Message {
+
+		/**
+		 * The seat of the player, which is their index in {@link GameStart#symbols}
+		 */
+		final int seat;
+
+		/**
+		 * The room of the player, empty in the chat
+		 */
+		final String room;
+
+		/**
+		 * The greeting to show the player
+		 */
+		final String text;
+
+		Welcome(int seat, String room, String text) {
+			super(Protocol.WELCOME);
+			this.seat = seat;
+			this.room = room;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Sent to a client that can't be served, right before it's disconnected.
+	 */
+	static final class Rejected extends Message {
+
+		/**
+		 * Why the client can't be served
+		 */
+		final String reason;
+
+		Rejected(String reason) {
+			super(Protocol.REJECTED);
+			this.reason = reason;
+		}
+	}
+
+	/**
+	 * Sent to a player whose symbol someone else already had, with the chess
+	 * piece that replaces it.
+	 */
+	static final class SymbolReassigned extends Message {
+
+		/**
+		 * The seat of the player
+		 */
+		final int seat;
+
+		/**
+		 * The new symbol of the player
+		 */
+		final char symbol;
+
+		SymbolReassigned(int seat, char symbol) {
+			super(Protocol.SYMBOL_REASSIGNED);
+			this.seat = seat;
+			this.symbol = symbol;
+		}
+	}
+
+	/**
+	 * Sent to every player once everyone has joined.
+	 */
+	static final class GameStart extends Message {
+
+		/**
+		 * The message to show the players
+		 */
+		final String text;
+
+		/**
+		 * The symbol and color of every seat
+		 */
+		final char[] symbols;
+		final Color[] colors;
+
+		GameStart(String text, char[] symbols, Color[] colors) {
+			super(Protocol.GAME_START);
+			this.text = text;
+			this.symbols = symbols;
+			this.colors = colors;
+		}
+	}
+
+	/**
+	 * Sent to a player when it's their turn.
+	 */
+	static final class TurnStart extends Message {
+
+		/**
+		 * The message to show the player
+		 */
+		final String text;
+
+		/**
+		 * The sequence number of the board the player should have
+		 */
+		final int sequence;
+
+		TurnStart(String text, int sequence) {
+			super(Protocol.TURN_START);
+			this.text = text;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * Sent by a player to play their move.
+	 */
+	static final class Move extends Message {
+
+		/**
+		 * The move that resigns the game
+		 */
+		static final int RESIGN = -2;
+
+		/**
+		 * The square, as {@code STRIDE*row + col} of the board, or {@code RESIGN}
+		 */
+		final int move;
+
+		Move(int move) {
+			super(Protocol.MOVE);
+			this.move = move;
+		}
+	}
+
+	/**
+	 * Sent to a player once their move has been played.
+	 */
+	static final class MoveAck extends Message {
+
+		/**
+		 * The move that was played
+		 */
+		final int move;
+
+		MoveAck(int move) {
+			super(Protocol.MOVE_ACK);
+			this.move = move;
+		}
+	}
+
+	/**
+	 * The whole board; sent to every player when the game starts or when the
+	 * board they see moves, and to a player who asks for it.
+	 */
+	static final class BoardUpdate extends Message {
+
+		/**
+		 * The sequence number of the board, which goes up by one on every change
+		 */
+		final int sequence;
+
+		/**
+		 * The board
+		 */
+		final char[][] board;
+
+		BoardUpdate(int sequence, char[][] board) {
+			super(Protocol.BOARD_UPDATE);
+			this.sequence = sequence;
+			this.board = board;
+		}
+	}
+
+	/**
+	 * Sent to every player after a move, which they play on the board they
+	 * already have. The checksum of the board after the move tells them if
+	 * their board is still the same as the server's.
+	 */
+	static final class BoardDelta extends Message {
+
+		/**
+		 * The sequence number of the board after the move
+		 */
+		final int sequence;
+
+		/**
+		 * The seat of the player who moved, which is their index in
+		 * {@link GameStart#symbols}
+		 */
+		final int seat;
+
+		/**
+		 * The square that was marked
+		 */
+		final int move;
+
+		/**
+		 * The {@link #checksum(GameBoard) checksum} of the board after the move
+		 */
+		final int checksum;
+
+		BoardDelta(int sequence, int seat, int move, int checksum) {
+			super(Protocol.BOARD_DELTA);
+			this.sequence = sequence;
+			this.seat = seat;
+			this.move = move;
+			this.checksum = checksum;
+		}
+
+		/**
+		 * Returns the checksum of {@code board}; its Zobrist hash folded to 32 bits,
+		 * which is the same in every process.
+		 *
+		 * @param board GameBoard, the board
+		 * @return int, the checksum
+		 * @see GameBoard#getHash() getHash()
+		 */
+		static int checksum(GameBoard board) {
+			long hash = board.getHash();
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+
+	/**
+	 * Sent by a player whose board isn't the server's any more, to get the whole
+	 * board. The server answers it with a {@code BoardUpdate} when it's the
+	 * player's turn.
+	 */
+	static final class SyncRequest extends Message {
+
+		SyncRequest() {
+			super(Protocol.SYNC_REQUEST);
+		}
+	}
+
+	/**
+	 * Sent to every player when the game ends, after the final board.
+	 */
+	static final class GameOver extends Message {
+
+		enum Reason {
+			WON, RESIGNED, TIE
+		}
+
+		/**
+		 * Why the game ended
+		 */
+		final Reason reason;
+
+		/**
+		 * The symbol of the player who won or resigned, {@code 0} on a tie
+		 */
+		final char player;
+
+		GameOver(Reason reason, char player) {
+			super(Protocol.GAME_OVER);
+			this.reason = reason;
+			this.player = player;
+		}
+	}
+
+	/**
+	 * A line of text; what a player says in the chat, or a message of a server.
+	 */
+	static final class ChatMessage extends Message {
+
+		/**
+		 * The text
+		 */
+		final String text;
+
+		ChatMessage(String text) {
+			super(Protocol.CHAT_MESSAGE);
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Reacts to messages of one type.
+	 *
+	 * @param <T> the type of the messages
+	 */
+	interface Handler<T extends Message> {
+
+		/**
+		 * Reacts to {@code message}.
+		 *
+		 * @param message T, the message
+		 * @return int, a code for whoever dispatched the message
+		 * @throws IOException if reacting to the message needs the connection and
+		 *                     it fails
+		 */
+		int handle(T message) throws IOException;
+	}
+
+	/**
+	 * A table from the type of a message to the Handler that reacts to it.
+	 */
+	static final class Dispatcher {
+
+		private final Map<Class<? extends Message>, Handler<?>> handlers = new HashMap<Class<? extends Message>, Handler<?>>();
+
+		/**
+		 * Makes {@code handler} react to the messages of type {@code type}.
+		 *
+		 * @param type    Class, the type of the messages
+		 * @param handler Handler, what reacts to them
+		 * @return Dispatcher, this Dispatcher
+		 */
+		<T extends Message> Dispatcher on(Class<T> type, Handler<? super T> handler) {
+			handlers.put(type, handler);
+			return this;
+		}
+
+		/**
+		 * Hands {@code message} to the Handler of its type.
+		 *
+		 * @param message Message, the message
+		 * @return int, the code the Handler returned
+		 * @throws ProtocolException if no Handler reacts to messages of its type
+		 * @throws IOException       if the Handler fails
+		 */
+		int dispatch(Message message) throws IOException {
+			@SuppressWarnings("unchecked")
+			Handler<Message> handler = (Handler<Message>) handlers.get(message.getClass());
+			if (handler == null)
+				throw new ProtocolException(String.format("Unexpected %s", message.getClass().getSimpleName()));
+			return handler.handle(message);
+		}
+	}
+}
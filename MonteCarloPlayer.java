@@ -0,0 +1,546 @@
+package ttt_online;
+
+import java.util.Arrays;
+
+/**
+ * A computer player for any number of players that uses Monte Carlo Tree
+ * Search with the UCT selection rule.
+ * <p>
+ * Every iteration walks down the tree picking the child with the best upper
+ * confidence bound, expands the leaf it reaches and plays random moves from
+ * there until the game ends; the result is added to every node on the way.
+ * Each player picks the moves that are best for them, so it plays games of 3
+ * or 4 players as well as 2 player ones.
+ * <p>
+ * Plain random games tell little on large boards, so the search is guided:
+ * a node whose player can win at once only gets the winning move, and one
+ * whose next player threatens to win only gets the blocks. The other moves are
+ * the squares near the marks, each with a prior from the open lines through
+ * it that favours it until it has been visited a few times. The random games
+ * take a win, or block one, next to the last mark of each player, and prefer
+ * squares next to a mark.
+ * <p>
+ * Nothing is allocated while searching. The nodes of the tree live in
+ * preallocated arrays and the random games are played on a {@code byte[]}
+ * copy of the board with a list of its empty squares. The tree is kept between
+ * moves; on the next move the root advances along the moves played since,
+ * so the search continues from where it left off.
+ */
+final class MonteCarloPlayer implements AIPlayer {
+
+	/**
+	 * The exploration constant that works well for win/loss rewards
+	 */
+	static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+
+	// outcomes of the move leading to a node
+	private static final byte UNKNOWN = 0, CONTINUE = 1, WIN = 2, TIE = 3;
+
+	private static final int PLAYOUT_TRIES = 8;
+
+	// more than the upper confidence bound of any visited child
+	private static final double UNVISITED = 1000;
+
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	private final long timeLimit;
+	private final double exploration;
+	private final int capacity;
+
+	// the tree; node i was reached by playing moves[i], its children are the
+	// childCounts[i] nodes starting at children[i], or childCounts[i] is -1 if
+	// it hasn't been expanded yet. rewards[i] is the total reward of the player
+	// that played moves[i], priors[i] how promising moves[i] looked before it was
+	// searched, from 0 to 1
+	private int[] moves, children, childCounts, visits;
+	private float[] rewards, priors;
+	private byte[] outcomes;
+	// the same arrays, used when moving the root to the front of the pool
+	private int[] spareMoves, spareChildren, spareChildCounts, spareVisits;
+	private float[] spareRewards, sparePriors;
+	private byte[] spareOutcomes;
+	private int nodeCount, root;
+
+	// the position at the root; seat + 1 of the mark on every square, 0 if empty
+	private int rows, columns, consecutive, players, rootSeat;
+	private char[] symbols;
+	private byte[] rootCells;
+	private int[] rootEmpties, rootPositions;
+	private int rootEmptyCount;
+
+	// the position of the current iteration
+	private byte[] cells;
+	private int[] empties, positions, rowOf, columnOf;
+	private int emptyCount;
+	private int[] path;
+	// the last square every seat marked in the current iteration, -1 if none yet
+	private int[] lastMoves;
+
+	private long random = 0x9e3779b97f4a7c15L;
+	private long playouts;
+
+	/**
+	 * Constructs a player that thinks for {@code timeLimit} milliseconds per move.
+	 *
+	 * @param timeLimit long, the time budget of every move in milliseconds
+	 */
+	MonteCarloPlayer(long timeLimit) {
+		this(timeLimit, DEFAULT_EXPLORATION, 1 << 19);
+	}
+
+	/**
+	 * Constructs a player that thinks for {@code timeLimit} milliseconds per move
+	 * and keeps at most {@code capacity} nodes in its tree.
+	 *
+	 * @param timeLimit   long, the time budget of every move in milliseconds
+	 * @param exploration double, the exploration constant of UCT; higher values
+	 *                    try more moves, lower values search the best ones deeper
+	 * @param capacity    int, the maximum number of nodes in the tree
+	 */
+	MonteCarloPlayer(long timeLimit, double exploration, int capacity) {
+		this.timeLimit = timeLimit;
+		this.exploration = exploration;
+		this.capacity = capacity;
+		moves = new int[capacity];
+		children = new int[capacity];
+		childCounts = new int[capacity];
+		visits = new int[capacity];
+		rewards = new float[capacity];
+		priors = new float[capacity];
+		outcomes = new byte[capacity];
+		spareMoves = new int[capacity];
+		spareChildren = new int[capacity];
+		spareChildCounts = new int[capacity];
+		spareVisits = new int[capacity];
+		spareRewards = new float[capacity];
+		sparePriors = new float[capacity];
+		spareOutcomes = new byte[capacity];
+	}
+
+	@Override
+	public synchronized int findMove(GameBoard board, char[] symbols, int player) {
+		long deadline = System.nanoTime() + timeLimit * 1000000;
+		setRoot(board, symbols, player);
+		playouts = 0;
+
+		do {
+			for (int i = 0; i < 64; i++)
+				iterate();
+		} while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted());
+
+		// play a winning move, or else the most visited one
+		int best = children[root];
+		for (int i = children[root]; i < children[root] + childCounts[root]; i++) {
+			if (outcomes[i] == WIN) {
+				best = i;
+				break;
+			}
+			if (visits[i] > visits[best])
+				best = i;
+		}
+		return board.toCoord(rowOf[moves[best]], columnOf[moves[best]]);
+	}
+
+	/**
+	 * Returns the number of random games played during the last search.
+	 *
+	 * @return long, the number of playouts
+	 */
+	synchronized long getPlayoutCount() {
+		return playouts;
+	}
+
+	/**
+	 * Sets the root of the tree to {@code board}. If the tree of the last move
+	 * contains the position, that part of the tree is kept and moved to the front
+	 * of the pool; otherwise a new tree is started.
+	 */
+	private void setRoot(GameBoard board, char[] symbols, int player) {
+		boolean sameGame = rootCells != null && rows == board.ROWS && columns == board.COLUMNS
+				&& consecutive == board.CONSECUTIVE && Arrays.equals(this.symbols, symbols);
+		if (!sameGame) {
+			rows = board.ROWS;
+			columns = board.COLUMNS;
+			consecutive = board.CONSECUTIVE;
+			players = symbols.length;
+			this.symbols = symbols.clone();
+			lastMoves = new int[players];
+			int size = rows * columns;
+			rootCells = new byte[size];
+			rootEmpties = new int[size];
+			rootPositions = new int[size];
+			cells = new byte[size];
+			empties = new int[size];
+			positions = new int[size];
+			rowOf = new int[size];
+			columnOf = new int[size];
+			path = new int[size + 1];
+			for (int i = 0; i < size; i++) {
+				rowOf[i] = i / columns;
+				columnOf[i] = i % columns;
+			}
+		}
+
+		// the new position, in cells
+		for (int i = 0; i < cells.length; i++) {
+			char mark = board.getSquare(rowOf[i], columnOf[i]);
+			byte cell = 0;
+			if (mark != GameEngine.DASH) {
+				cell = Byte.MAX_VALUE;
+				for (int seat = 0; seat < players; seat++)
+					if (symbols[seat] == mark)
+						cell = (byte) (seat + 1);
+			}
+			cells[i] = cell;
+		}
+
+		int node = sameGame ? advance(player) : -1;
+		if (node == -1) {
+			nodeCount = 1;
+			root = 0;
+			newNode(0, -1);
+		} else {
+			moveToFront(node);
+		}
+
+		System.arraycopy(cells, 0, rootCells, 0, cells.length);
+		rootEmptyCount = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] == 0) {
+				rootPositions[i] = rootEmptyCount;
+				rootEmpties[rootEmptyCount++] = i;
+			}
+		}
+		rootSeat = player;
+	}
+
+	/**
+	 * Follows the moves played since the last search down the tree.
+	 *
+	 * @return int, the node of the new position, or -1 if it isn't in the tree
+	 */
+	private int advance(int player) {
+		int played = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if (rootCells[i] != cells[i]) {
+				if (rootCells[i] != 0)
+					return -1;
+				played++;
+			}
+		}
+		if ((rootSeat + played) % players != player)
+			return -1;
+
+		int node = root;
+		for (int step = 0; step < played; step++) {
+			byte cell = (byte) ((rootSeat + step) % players + 1);
+			int next = -1;
+			for (int i = children[node]; i < children[node] + childCounts[node] && next == -1; i++)
+				if (rootCells[moves[i]] == 0 && cells[moves[i]] == cell)
+					next = i;
+			if (next == -1 || outcomes[next] == WIN || outcomes[next] == TIE)
+				return -1;
+			node = next;
+		}
+		return node;
+	}
+
+	/**
+	 * Copies the subtree of {@code node} to the front of the spare arrays, breadth
+	 * first so that siblings stay next to each other, and swaps the arrays.
+	 */
+	private void moveToFront(int node) {
+		spareMoves[0] = moves[node];
+		spareVisits[0] = visits[node];
+		spareRewards[0] = rewards[node];
+		sparePriors[0] = priors[node];
+		spareOutcomes[0] = outcomes[node];
+		spareChildCounts[0] = childCounts[node];
+		spareChildren[0] = children[node];
+		int count = 1;
+		for (int i = 0; i < count; i++) {
+			int first = spareChildren[i];
+			spareChildren[i] = count;
+			for (int j = 0; j < spareChildCounts[i]; j++, count++) {
+				int old = first + j;
+				spareMoves[count] = moves[old];
+				spareVisits[count] = visits[old];
+				spareRewards[count] = rewards[old];
+				sparePriors[count] = priors[old];
+				spareOutcomes[count] = outcomes[old];
+				spareChildCounts[count] = childCounts[old];
+				spareChildren[count] = children[old];
+			}
+		}
+
+		int[] swap = moves; moves = spareMoves; spareMoves = swap;
+		swap = children; children = spareChildren; spareChildren = swap;
+		swap = childCounts; childCounts = spareChildCounts; spareChildCounts = swap;
+		swap = visits; visits = spareVisits; spareVisits = swap;
+		float[] swapRewards = rewards; rewards = spareRewards; spareRewards = swapRewards;
+		swapRewards = priors; priors = sparePriors; sparePriors = swapRewards;
+		byte[] swapOutcomes = outcomes; outcomes = spareOutcomes; spareOutcomes = swapOutcomes;
+		nodeCount = count;
+		root = 0;
+	}
+
+	private void newNode(int node, int move) {
+		moves[node] = move;
+		children[node] = 0;
+		childCounts[node] = -1;
+		visits[node] = 0;
+		rewards[node] = 0f;
+		priors[node] = 0f;
+		outcomes[node] = UNKNOWN;
+	}
+
+	/**
+	 * One iteration of the search; selection, expansion, a random game and
+	 * backpropagation of its result.
+	 */
+	private void iterate() {
+		System.arraycopy(rootCells, 0, cells, 0, cells.length);
+		System.arraycopy(rootEmpties, 0, empties, 0, rootEmptyCount);
+		System.arraycopy(rootPositions, 0, positions, 0, positions.length);
+		emptyCount = rootEmptyCount;
+		Arrays.fill(lastMoves, -1);
+
+		int node = root, depth = 0, seat = rootSeat, winner = -2;
+		path[0] = root;
+		while (true) {
+			if (childCounts[node] == -1 && (visits[node] == 0 && node != root || !expand(node, seat)))
+				break;
+			if (childCounts[node] == 0)
+				break;
+
+			node = select(node);
+			place(moves[node], seat);
+			lastMoves[seat] = moves[node];
+			path[++depth] = node;
+			if (outcomes[node] == UNKNOWN)
+				outcomes[node] = wins(moves[node], seat) ? WIN : emptyCount == 0 ? TIE : CONTINUE;
+			if (outcomes[node] != CONTINUE) {
+				winner = outcomes[node] == WIN ? seat : -1;
+				break;
+			}
+			seat = (seat + 1) % players;
+		}
+
+		if (winner == -2)
+			winner = playout(seat);
+		playouts++;
+
+		for (int d = depth; d >= 0; d--) {
+			int n = path[d];
+			visits[n]++;
+			if (d > 0) {
+				int mover = (rootSeat + d - 1) % players;
+				rewards[n] += winner == -1 ? 1f / players : winner == mover ? 1f : 0f;
+			}
+		}
+	}
+
+	/**
+	 * Adds the children of {@code node}, where {@code seat} is to move: a square
+	 * that wins if there is one, else the squares that stop the next player from
+	 * winning if they can, else the empty squares within 2 squares of a mark, or
+	 * the center of an empty board.
+	 *
+	 * @return boolean, false if the pool is full
+	 */
+	private boolean expand(int node, int seat) {
+		int first = nodeCount, count = 0;
+		if (emptyCount == cells.length) {
+			if (nodeCount == capacity)
+				return false;
+			newNode(nodeCount++, (rows / 2) * columns + columns / 2);
+			count = 1;
+		} else {
+			// the seat whose winning squares are the only moves worth searching, -1 if no one can win
+			int next = (seat + 1) % players, winner = -1;
+			for (int i = 0; i < emptyCount && winner != seat; i++) {
+				if (wins(empties[i], seat))
+					winner = seat;
+				else if (winner == -1 && wins(empties[i], next))
+					winner = next;
+			}
+			for (int i = 0; i < emptyCount; i++) {
+				int cell = empties[i];
+				if (winner == -1 ? !hasNeighbour(cell) : !wins(cell, winner))
+					continue;
+				if (nodeCount == capacity) {
+					nodeCount = first;
+					return false;
+				}
+				newNode(nodeCount++, cell);
+				count++;
+				if (winner == seat)
+					break;
+			}
+
+			float most = 0f;
+			for (int i = first; i < first + count; i++) {
+				priors[i] = lineValue(moves[i], seat);
+				most = Math.max(most, priors[i]);
+			}
+			for (int i = first; i < first + count && most > 0f; i++)
+				priors[i] /= most;
+		}
+		children[node] = first;
+		childCounts[node] = count;
+		return true;
+	}
+
+	/**
+	 * Returns how much marking {@code cell} adds to the lines of {@code seat}
+	 * and takes away from everyone else's; every window through it that holds
+	 * the marks of only one player counts 4 times more for every mark in it.
+	 */
+	private float lineValue(int cell, int seat) {
+		byte own = (byte) (seat + 1);
+		float value = 0f;
+		int row = rowOf[cell], col = columnOf[cell];
+		for (int[] direction : DIRECTIONS) {
+			for (int start = 1 - consecutive; start <= 0; start++) {
+				int marks = 0;
+				byte mark = 0;
+				for (int step = start; step < start + consecutive && marks >= 0; step++) {
+					int r = row + step * direction[0], c = col + step * direction[1];
+					if (r < 0 || r >= rows || c < 0 || c >= columns)
+						marks = -1;
+					else if (step != 0 && cells[r * columns + c] != 0) {
+						if (mark != 0 && cells[r * columns + c] != mark)
+							marks = -1;
+						else {
+							mark = cells[r * columns + c];
+							marks++;
+						}
+					}
+				}
+				if (marks > 0)
+					value += (mark == own ? 1f : 0.75f) * (1 << 2 * marks);
+			}
+		}
+		return value;
+	}
+
+	private boolean hasNeighbour(int cell) {
+		int row = rowOf[cell], col = columnOf[cell];
+		for (int r = Math.max(0, row - 2); r <= Math.min(rows - 1, row + 2); r++)
+			for (int c = Math.max(0, col - 2); c <= Math.min(columns - 1, col + 2); c++)
+				if (cells[r * columns + c] != 0)
+					return true;
+		return false;
+	}
+
+	/**
+	 * Returns the child of {@code node} with the highest upper confidence bound;
+	 * unvisited children and winning moves come first.
+	 */
+	private int select(int node) {
+		double logVisits = Math.log(visits[node]);
+		int best = -1;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int i = children[node]; i < children[node] + childCounts[node]; i++) {
+			if (outcomes[i] == WIN)
+				return i;
+			// unvisited children are tried first, the most promising ones first
+			double value = visits[i] == 0 ? UNVISITED + priors[i]
+					: rewards[i] / visits[i] + exploration * Math.sqrt(logVisits / visits[i])
+							+ priors[i] / (visits[i] + 1);
+			if (value > bestValue) {
+				bestValue = value;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Plays random moves until the game ends, except that a player completes
+	 * their line, or blocks the next player's, when the last move of either left
+	 * a square that wins.
+	 *
+	 * @param seat int, the player to move
+	 * @return int, the winner, or -1 if it's a tie
+	 */
+	private int playout(int seat) {
+		while (emptyCount > 0) {
+			int next = (seat + 1) % players;
+			int cell = winningSquare(lastMoves[seat], seat);
+			if (cell == -1)
+				cell = winningSquare(lastMoves[next], next);
+			// squares far from every mark rarely matter, so a few tries are made to avoid them
+			for (int tries = 0; cell == -1 || tries < PLAYOUT_TRIES && !hasNeighbour(cell); tries++)
+				cell = empties[nextInt(emptyCount)];
+			place(cell, seat);
+			if (wins(cell, seat))
+				return seat;
+			lastMoves[seat] = cell;
+			seat = next;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns an empty square on one of the lines through {@code cell}, close
+	 * enough to share a window with it, where {@code seat} would win.
+	 *
+	 * @return int, the square, or -1 if there is none or {@code cell} is -1
+	 */
+	private int winningSquare(int cell, int seat) {
+		if (cell == -1)
+			return -1;
+		int row = rowOf[cell], col = columnOf[cell];
+		for (int[] direction : DIRECTIONS) {
+			for (int step = 1 - consecutive; step < consecutive; step++) {
+				int r = row + step * direction[0], c = col + step * direction[1];
+				if (r < 0 || r >= rows || c < 0 || c >= columns)
+					continue;
+				int square = r * columns + c;
+				if (cells[square] == 0 && wins(square, seat))
+					return square;
+			}
+		}
+		return -1;
+	}
+
+	private void place(int cell, int seat) {
+		cells[cell] = (byte) (seat + 1);
+		int position = positions[cell], last = empties[--emptyCount];
+		empties[position] = last;
+		positions[last] = position;
+	}
+
+	/**
+	 * Checks if the mark at {@code cell} completes a line of {@code consecutive}
+	 * marks.
+	 */
+	private boolean wins(int cell, int seat) {
+		byte mark = (byte) (seat + 1);
+		int row = rowOf[cell], col = columnOf[cell];
+		for (int[] direction : DIRECTIONS) {
+			int dr = direction[0], dc = direction[1], count = 1;
+			for (int r = row + dr, c = col + dc; r >= 0 && r < rows && c >= 0 && c < columns
+					&& cells[r * columns + c] == mark; r += dr, c += dc)
+				count++;
+			for (int r = row - dr, c = col - dc; r >= 0 && r < rows && c >= 0 && c < columns
+					&& cells[r * columns + c] == mark; r -= dr, c -= dc)
+				count++;
+			if (count >= consecutive)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a pseudorandom number between 0 (inclusive) and {@code bound}
+	 * (exclusive), using xorshift64*.
+	 */
+	private int nextInt(int bound) {
+		random ^= random >>> 12;
+		random ^= random << 25;
+		random ^= random >>> 27;
+		return (int) ((((random * 0x2545f4914f6cdd1dL) >>> 32) * bound) >>> 32);
+	}
+}
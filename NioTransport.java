@@ -0,0 +1,407 @@
+package ttt_online;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accepts connections on a port and serves all of them with a few event loop
+ * threads, each one waiting on a {@code Selector} for any of its connections
+ * to be ready, so that thousands of mostly idle players don't need a thread
+ * each.
+ * <p>
+ * The event loops only move bytes. Incoming bytes are split into frames that
+ * wait in the inbox of their connection until whoever serves the connection
+ * asks for the next message; outgoing messages are encoded by the thread that
+ * sends them and queued until the channel can take them. A Frame sent to many
+ * connections is queued as a view of the same bytes on each, and the queued
+ * frames of a connection are written with one gathering write. Every
+ * connection has a small read buffer, which only grows to fit a larger frame
+ * while reading it.
+ * <p>
+ * The frames waiting either way are bounded by {@link Connection#MAX_QUEUED}:
+ * a client that doesn't read its messages, or sends more than is read, is
+ * disconnected instead of making the server hold on to them.
+ */
+final class NioTransport {
+
+	/**
+	 * Gets the connections of a NioTransport.
+	 */
+	interface Listener {
+
+		/**
+		 * Called on an event loop thread for every new connection; must not block.
+		 *
+		 * @param connection Connection, the new connection
+		 */
+		void accepted(Connection connection);
+	}
+
+	// size of the read buffer of a connection that isn't reading a larger frame
+	private static final int READ_BUFFER = 4096;
+
+	// most frames written by one gathering write
+	private static final int WRITE_BATCH = 16;
+
+	// what a frame in an inbox costs besides its bytes; its array header and its node in the queue
+	private static final int FRAME_OVERHEAD = 64;
+
+	// marks the end of the messages in an inbox
+	private static final byte[] CLOSED = new byte[0];
+
+	private final ServerSocketChannel server;
+	private final EventLoop[] loops;
+	private final Listener listener;
+	private final Logging logger;
+	private final boolean printStackTrace;
+	private int nextLoop = 0;
+
+	/**
+	 * Binds the transport to {@code port}; nothing is accepted until it's
+	 * started.
+	 *
+	 * @param port            int, the port
+	 * @param threads         int, the number of event loop threads
+	 * @param listener        Listener, gets the new connections
+	 * @param logger          Logging, where to log errors
+	 * @param printStackTrace boolean, whether or not to print full Stack Trace on
+	 *                        Exceptions
+	 * @throws IOException if the port can't be bound
+	 */
+	NioTransport(int port, int threads, Listener listener, Logging logger, boolean printStackTrace)
+			throws IOException {
+		this.listener = listener;
+		this.logger = logger;
+		this.printStackTrace = printStackTrace;
+		this.server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+
+		loops = new EventLoop[Math.max(1, threads)];
+		for (int i = 0; i < loops.length; i++)
+			loops[i] = new EventLoop();
+		server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Starts the event loop threads.
+	 */
+	void start() {
+		for (int i = 0; i < loops.length; i++)
+			new Thread(loops[i], "nio-" + (i + 1)).start();
+	}
+
+	/**
+	 * An event loop; a thread that serves the connections registered with its
+	 * {@code selector}. Other threads hand it work through its queues and wake
+	 * it up.
+	 */
+	private final class EventLoop implements Runnable {
+
+		private final Selector selector;
+
+		// connections to register, and connections with messages to write or to close
+		private final Queue<NioConnection> registrations = new ConcurrentLinkedQueue<NioConnection>();
+		private final Queue<NioConnection> flushes = new ConcurrentLinkedQueue<NioConnection>();
+
+		// the frames of one gathering write, shared by the connections of this loop
+		private final ByteBuffer[] batch = new ByteBuffer[WRITE_BATCH];
+
+		EventLoop() throws IOException {
+			selector = Selector.open();
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					logger.logerr("IOException in EventLoop.run() while selecting", e, printStackTrace);
+					continue;
+				}
+
+				for (NioConnection connection; (connection = registrations.poll()) != null;)
+					register(connection);
+				for (NioConnection connection; (connection = flushes.poll()) != null;)
+					flush(connection);
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					NioConnection connection = (NioConnection) key.attachment();
+					if (key.isReadable())
+						read(connection);
+					if (key.isValid() && key.isWritable())
+						flush(connection);
+				}
+			}
+		}
+
+		private void accept() {
+			try {
+				for (SocketChannel channel; (channel = server.accept()) != null;) {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					EventLoop loop = loops[nextLoop++ % loops.length];
+					NioConnection connection = new NioConnection(channel, loop);
+					loop.registrations.add(connection);
+					loop.selector.wakeup();
+					listener.accepted(connection);
+				}
+			} catch (IOException e) {
+				logger.logerr("IOException in EventLoop.accept()", e, printStackTrace);
+			}
+		}
+
+		private void register(NioConnection connection) {
+			try {
+				connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+				// messages may have been sent before the channel was registered
+				flush(connection);
+			} catch (ClosedChannelException e) {
+				connection.closeNow();
+			}
+		}
+
+		/**
+		 * Reads what the channel has and moves every whole frame to the inbox.
+		 */
+		private void read(NioConnection connection) {
+			try {
+				if (connection.channel.read(connection.readBuffer) == -1) {
+					connection.closeNow();
+					return;
+				}
+
+				ByteBuffer buffer = connection.readBuffer;
+				buffer.flip();
+				while (buffer.remaining() >= 4) {
+					int length = buffer.getInt(buffer.position());
+					if (length < 0 || length > Connection.MAX_FRAME)
+						throw new IOException(String.format("Invalid frame length %d", length));
+					if (buffer.remaining() < 4 + length) {
+						// grow the buffer for a frame that doesn't fit
+						if (buffer.capacity() < 4 + length) {
+							ByteBuffer larger = ByteBuffer.allocate(4 + length);
+							larger.put(buffer);
+							larger.flip();
+							buffer = connection.readBuffer = larger;
+						}
+						break;
+					}
+					if (connection.received.addAndGet(cost(length)) > Connection.MAX_QUEUED)
+						throw new IOException(String.format("More than %d bytes of messages weren't read",
+								Connection.MAX_QUEUED));
+					byte[] frame = new byte[length];
+					buffer.position(buffer.position() + 4);
+					buffer.get(frame);
+					connection.inbox.add(frame);
+				}
+				buffer.compact();
+
+				// and shrink it back once that frame has been read
+				if (buffer.position() == 0 && buffer.capacity() > READ_BUFFER)
+					connection.readBuffer = ByteBuffer.allocate(READ_BUFFER);
+			} catch (IOException e) {
+				logger.logerr("IOException in EventLoop.read(); closing connection", e, printStackTrace);
+				connection.closeNow();
+			}
+		}
+
+		/**
+		 * Writes as many of the queued frames as the channel takes, up to
+		 * {@code WRITE_BATCH} of them with every write, and waits to be told when it
+		 * can take the rest. Closes the connection once everything is written if it
+		 * was asked to.
+		 */
+		private void flush(NioConnection connection) {
+			if (connection.dropped) {
+				connection.closeNow();
+				return;
+			}
+			if (connection.key == null || !connection.key.isValid())
+				return;
+			try {
+				while (!connection.writes.isEmpty()) {
+					// only this thread takes frames off the queue, so the batch is still at its head
+					int count = 0;
+					for (Iterator<ByteBuffer> frames = connection.writes.iterator(); count < WRITE_BATCH
+							&& frames.hasNext();)
+						batch[count++] = frames.next();
+
+					connection.channel.write(batch, 0, count);
+					for (int i = 0; i < count && !batch[i].hasRemaining(); i++)
+						connection.queued.addAndGet(-connection.writes.poll().capacity());
+					boolean full = batch[count - 1].hasRemaining();
+					Arrays.fill(batch, 0, count, null);
+
+					if (full) {
+						connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+						return;
+					}
+				}
+				connection.key.interestOps(SelectionKey.OP_READ);
+				if (connection.closing.get())
+					connection.closeNow();
+			} catch (IOException e) {
+				Arrays.fill(batch, null);
+				logger.logerr("IOException in EventLoop.flush(); closing connection", e, printStackTrace);
+				connection.closeNow();
+			}
+		}
+	}
+
+	/**
+	 * A connection served by an EventLoop.
+	 */
+	private final class NioConnection extends Connection {
+
+		private final SocketChannel channel;
+		private final EventLoop loop;
+		private final InetAddress address;
+		private SelectionKey key;
+
+		// only used by the event loop; volatile only so that its size can be read
+		private volatile ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER);
+
+		private final BlockingQueue<byte[]> inbox = new LinkedBlockingQueue<byte[]>();
+		private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<ByteBuffer>();
+		private final AtomicBoolean closing = new AtomicBoolean(), closed = new AtomicBoolean();
+
+		// bytes of the frames in the inbox and in the writes
+		private final AtomicLong received = new AtomicLong(), queued = new AtomicLong();
+
+		// set when the client stopped reading; the connection is closed without writing what's left
+		private volatile boolean dropped;
+
+		NioConnection(SocketChannel channel, EventLoop loop) {
+			this.channel = channel;
+			this.loop = loop;
+			this.address = channel.socket().getInetAddress();
+		}
+
+		@Override
+		void sendFrame(Protocol.Frame frame) throws IOException {
+			if (closing.get())
+				throw new SocketException("Connection closed");
+			if (queued.addAndGet(frame.size()) > MAX_QUEUED) {
+				queued.addAndGet(-frame.size());
+				dropped = true;
+				close();
+				throw new SocketException(
+						String.format("More than %d bytes of messages weren't written; the client is too slow",
+								MAX_QUEUED));
+			}
+			writes.add(frame.buffer());
+			loop.flushes.add(this);
+			loop.selector.wakeup();
+		}
+
+		@Override
+		Object receive() throws IOException {
+			try {
+				return Protocol.decode(next(inbox.take()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a message");
+			}
+		}
+
+		@Override
+		Object receive(long timeout) throws IOException {
+			try {
+				byte[] frame = inbox.poll(timeout, TimeUnit.MILLISECONDS);
+				if (frame == null)
+					throw new SocketTimeoutException(String.format("No message for %d ms", timeout));
+				return Protocol.decode(next(frame));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a message");
+			}
+		}
+
+		// leaves the end of the messages for the next call to find too
+		private byte[] next(byte[] frame) throws EOFException {
+			if (frame == CLOSED) {
+				inbox.add(CLOSED);
+				throw new EOFException("Connection closed");
+			}
+			received.addAndGet(-cost(frame.length));
+			return frame;
+		}
+
+		@Override
+		InetAddress getInetAddress() {
+			return address;
+		}
+
+		@Override
+		long getQueuedBytes() {
+			return received.get() + queued.get();
+		}
+
+		@Override
+		long getBufferBytes() {
+			return readBuffer.capacity();
+		}
+
+		@Override
+		public void close() {
+			if (closing.getAndSet(true))
+				return;
+			inbox.add(CLOSED);
+			loop.flushes.add(this);
+			loop.selector.wakeup();
+		}
+
+		// closes the channel without writing what's left; only called by the event loop
+		private void closeNow() {
+			closing.set(true);
+			if (closed.getAndSet(true))
+				return;
+			inbox.add(CLOSED);
+			writes.clear();
+			queued.set(0);
+			if (key != null)
+				key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.logerr("IOException while closing channel", e, printStackTrace);
+			}
+		}
+	}
+
+	// the memory a frame of length bytes takes in an inbox, so that even empty frames count
+	private static int cost(int length) {
+		return 4 + length + FRAME_OVERHEAD;
+	}
+}
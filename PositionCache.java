@@ -0,0 +1,247 @@
+package ttt_online;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of values of positions, shared by every game and search of
+ * the process, so that positions that come up again, such as the openings of
+ * every game on a board, are only evaluated once.
+ * <p>
+ * Keys are made by {@link #key(GameBoard, char[], int, long) key()} from the
+ * canonical hash of the board, so values must not depend on the orientation of
+ * the board; moves should be stored as squares of the canonical position (see
+ * {@link GameBoard#getCanonicalSymmetry()}). Every kind of value gets a
+ * different {@code kind} key so that different searches don't read each
+ * other's values.
+ * <p>
+ * The entries are split into segments by key, each locked on its own so that
+ * threads rarely wait for each other. Every segment has a fixed number of
+ * entries, allocated up front, so the cache never grows past the memory it was
+ * given. When a segment is full an entry is evicted with the CLOCK policy: a
+ * hand goes around the entries, skipping, once, the ones read since it last
+ * passed, and evicts the first one that wasn't.
+ */
+final class PositionCache {
+
+	/**
+	 * The value returned for keys that aren't in the cache
+	 */
+	static final long MISSING = Long.MIN_VALUE;
+
+	/**
+	 * The size of the shared cache in MB
+	 */
+	static final int SHARED_MEGABYTES = 32;
+
+	// key, value, chain link, bucket head and reference bit of every entry
+	private static final int ENTRY_BYTES = 8 + 8 + 4 + 4 + 1;
+	private static final int SEGMENTS = 64;
+
+	private static PositionCache shared;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+	/**
+	 * Returns the cache shared by the whole process, of {@code SHARED_MEGABYTES}
+	 * MB, creating it the first time.
+	 *
+	 * @return PositionCache, the shared cache
+	 */
+	static synchronized PositionCache getShared() {
+		if (shared == null)
+			shared = new PositionCache(SHARED_MEGABYTES);
+		return shared;
+	}
+
+	/**
+	 * Constructs a cache that uses at most {@code megabytes} MB.
+	 *
+	 * @param megabytes int, the size of the cache in MB
+	 */
+	PositionCache(int megabytes) {
+		int entries = (int) Math.max(1, ((long) megabytes << 20) / ENTRY_BYTES / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(entries);
+	}
+
+	/**
+	 * Returns the key of the position on {@code board} with {@code player} to
+	 * move; the canonical hash of the board, its dimensions, the order of the
+	 * players from {@code player} on and {@code kind}.
+	 *
+	 * @param board   GameBoard, the position
+	 * @param symbols char[], the symbols of the players, in the order they play
+	 * @param player  int, the index of the player whose turn it is
+	 * @param kind    long, a random-looking key for every kind of value
+	 * @return long, the key
+	 */
+	static long key(GameBoard board, char[] symbols, int player, long kind) {
+		long key = board.getCanonicalHash() ^ GameBoard.zobrist(board.ROWS, board.COLUMNS, (char) board.CONSECUTIVE)
+				^ kind;
+		for (int i = 0; i < symbols.length; i++)
+			key ^= GameBoard.zobrist(-1 - i, 0, symbols[(player + i) % symbols.length]);
+		return key;
+	}
+
+	/**
+	 * Returns the value of {@code key}, or {@code MISSING}.
+	 *
+	 * @param key long, the key
+	 * @return long, the value
+	 */
+	long get(long key) {
+		long value = segment(key).get(key);
+		if (value == MISSING)
+			misses.increment();
+		else
+			hits.increment();
+		return value;
+	}
+
+	/**
+	 * Stores {@code value} as the value of {@code key}, evicting another entry if
+	 * there is no room.
+	 *
+	 * @param key   long, the key
+	 * @param value long, the value, anything but {@code MISSING}
+	 */
+	void put(long key, long value) {
+		if (segment(key).put(key, value))
+			evictions.increment();
+	}
+
+	/**
+	 * Removes every entry; the counters are kept.
+	 */
+	void clear() {
+		for (Segment segment : segments)
+			segment.clear();
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the number of entries the cache can hold.
+	 *
+	 * @return long, the capacity
+	 */
+	long getCapacity() {
+		return (long) SEGMENTS * segments[0].keys.length;
+	}
+
+	@Override
+	public String toString() {
+		long hits = getHits(), lookups = hits + getMisses();
+		return String.format("PositionCache: %d hits of %d lookups (%.1f%%), %d evictions, %d entries", hits, lookups,
+				lookups == 0 ? 0.0 : 100.0 * hits / lookups, getEvictions(), getCapacity());
+	}
+
+	// the top 6 bits of the key pick one of the 64 segments
+	private Segment segment(long key) {
+		return segments[(int) (key >>> 58)];
+	}
+
+	/**
+	 * A part of the cache with its own lock; a hash table with chaining, whose
+	 * entries are evicted with the CLOCK policy.
+	 */
+	private static final class Segment {
+
+		private final long[] keys, values;
+		// the first entry of every bucket and the next entry of every entry, -1 at the end
+		private final int[] heads, next;
+		private final boolean[] referenced;
+		private int size = 0, hand = 0;
+
+		Segment(int capacity) {
+			keys = new long[capacity];
+			values = new long[capacity];
+			heads = new int[capacity];
+			next = new int[capacity];
+			referenced = new boolean[capacity];
+			Arrays.fill(heads, -1);
+		}
+
+		synchronized long get(long key) {
+			int i = find(key);
+			if (i == -1)
+				return MISSING;
+			referenced[i] = true;
+			return values[i];
+		}
+
+		/**
+		 * @return boolean, whether an entry was evicted
+		 */
+		synchronized boolean put(long key, long value) {
+			int i = find(key);
+			if (i != -1) {
+				values[i] = value;
+				return false;
+			}
+
+			boolean evicted = size == keys.length;
+			if (evicted) {
+				while (referenced[hand]) {
+					referenced[hand] = false;
+					hand = (hand + 1) % keys.length;
+				}
+				i = hand;
+				hand = (hand + 1) % keys.length;
+				unlink(i);
+			} else {
+				i = size++;
+			}
+
+			int bucket = bucket(key);
+			keys[i] = key;
+			values[i] = value;
+			referenced[i] = false;
+			next[i] = heads[bucket];
+			heads[bucket] = i;
+			return evicted;
+		}
+
+		synchronized void clear() {
+			Arrays.fill(heads, -1);
+			Arrays.fill(referenced, false);
+			size = hand = 0;
+		}
+
+		private int find(long key) {
+			for (int i = heads[bucket(key)]; i != -1; i = next[i])
+				if (keys[i] == key)
+					return i;
+			return -1;
+		}
+
+		// removes entry i from the chain of its bucket
+		private void unlink(int i) {
+			int bucket = bucket(keys[i]);
+			if (heads[bucket] == i) {
+				heads[bucket] = next[i];
+				return;
+			}
+			int previous = heads[bucket];
+			while (next[previous] != i)
+				previous = next[previous];
+			next[previous] = next[i];
+		}
+
+		private int bucket(long key) {
+			return (int) ((key ^ (key >>> 29)) & 0x7fffffff) % heads.length;
+		}
+	}
+}
@@ -0,0 +1,376 @@
+package ttt_online;
+
+/**
+ * Solves 2 player positions exactly with depth-first proof-number search
+ * (df-pn), within a budget of nodes.
+ * <p>
+ * A proof-number search tries to prove a goal, here "the attacker wins". Every
+ * node has a proof number, the least number of leaves that must be proven to
+ * prove it, and a disproof number, the same for disproving it; the search
+ * always expands the most proving node. Depth-first proof-number search does
+ * the same with thresholds instead of a tree in memory, so only a bounded
+ * table of proof and disproof numbers is kept, keyed by the canonical hash so
+ * that symmetric positions are only solved once.
+ * <p>
+ * A position is solved with up to two proofs; first whether the player to move
+ * wins, then, if not, whether their opponent does. If neither can, it's a
+ * draw. Solved positions are kept in the shared {@link PositionCache}, so
+ * positions that come up in many games are only solved once.
+ * <p>
+ * Proving a draw means refuting every move of the attacker, so the search
+ * stops as soon as the attacker can't win anymore; when none of their windows
+ * are open, or when the defender has a pairing strategy against them (see
+ * {@link LineEvaluator#hasPairing(int, int)}). Squares that no one can win
+ * with are never searched. With these the empty 5x5 board with 4 in a row is
+ * solved as a draw in about 70,000 nodes, but larger boards, such as the empty
+ * 6x6 one, take more than 20 million nodes, so there a value is only found
+ * once enough marks are on the board.
+ */
+final class ProofNumberSolver {
+
+	enum Value {
+		WIN, LOSS, DRAW, UNKNOWN
+	}
+
+	/**
+	 * The result of solving a position.
+	 */
+	static final class Result {
+
+		/**
+		 * The value of the position for the player to move, {@code UNKNOWN} if the
+		 * node budget ran out first
+		 */
+		final Value value;
+
+		/**
+		 * A move that keeps the value; the winning move of a {@code WIN}, a move
+		 * that doesn't lose of a {@code DRAW}, otherwise -1
+		 */
+		final int move;
+
+		/**
+		 * The number of nodes searched, 0 if the position was in the cache
+		 */
+		final long nodes;
+
+		private Result(Value value, int move, long nodes) {
+			this.value = value;
+			this.move = move;
+			this.nodes = nodes;
+		}
+	}
+
+	private static final int INFINITY = 1 << 30;
+
+	// the most pairs tried when looking for a pairing strategy against the attacker
+	private static final int PAIRING_EFFORT = 200;
+
+	// keys XOR-ed with the board's hash to tell who the attacker is
+	private static final long[] ATTACKER_KEYS = { 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L };
+
+	// the kind of the solved values in the PositionCache
+	private static final long CACHE_KIND = 0x510e527fade682d1L;
+
+	private final long nodeBudget;
+
+	// buckets of two entries; the first keeps the one that took the most work to search
+	private final long[] keys;
+	private final int[] proofs, disproofs, works;
+	private final int mask;
+
+	/**
+	 * Constructs a solver that gives up after searching {@code nodeBudget} nodes.
+	 *
+	 * @param nodeBudget     long, the maximum number of nodes of a solve
+	 * @param tableMegabytes int, the size of the table of proof numbers in MB
+	 */
+	ProofNumberSolver(long nodeBudget, int tableMegabytes) {
+		this.nodeBudget = nodeBudget;
+		// 20 bytes per entry, rounded down to a power of 2
+		int entries = Integer.highestOneBit(Math.max(2, (tableMegabytes << 20) / 20));
+		keys = new long[entries];
+		proofs = new int[entries];
+		disproofs = new int[entries];
+		works = new int[entries];
+		mask = entries / 2 - 1;
+	}
+
+	/**
+	 * Solves the position for {@code player}.
+	 *
+	 * @param board   GameBoard, the position, not over yet
+	 * @param symbols char[], the symbols of the 2 players
+	 * @param player  int, the index of the player whose turn it is
+	 * @return Result, the value of the position and a move that keeps it
+	 */
+	synchronized Result solve(GameBoard board, char[] symbols, int player) {
+		if (symbols.length != 2)
+			throw new IllegalArgumentException("ProofNumberSolver only solves 2 player games");
+
+		// the value in the upper half and the move, on the canonical board, in the lower
+		PositionCache cache = PositionCache.getShared();
+		long key = PositionCache.key(board, symbols, player, CACHE_KIND);
+		int symmetry = board.getCanonicalSymmetry();
+		long cached = cache.get(key);
+		if (cached != PositionCache.MISSING) {
+			int move = (int) cached;
+			return new Result(Value.values()[(int) (cached >>> 32)], move == -1 ? -1 : board.fromSymmetry(move, symmetry),
+					0);
+		}
+
+		Result result = prove(board, symbols, player);
+		if (result.value != Value.UNKNOWN) {
+			int move = result.move == -1 ? -1 : board.toSymmetry(result.move, symmetry);
+			cache.put(key, (long) result.value.ordinal() << 32 | move & 0xffffffffL);
+		}
+		return result;
+	}
+
+	private Result prove(GameBoard board, char[] symbols, int player) {
+		Search search = new Search(new GameBoard(board), symbols);
+		if (search.prove(player, player)) {
+			return new Result(Value.WIN, search.provenMove(player, player, 0), search.nodes);
+		} else if (search.aborted) {
+			return new Result(Value.UNKNOWN, -1, search.nodes);
+		} else if (search.prove(1 - player, player)) {
+			return new Result(Value.LOSS, -1, search.nodes);
+		} else if (search.aborted) {
+			return new Result(Value.UNKNOWN, -1, search.nodes);
+		}
+		return new Result(Value.DRAW, search.provenMove(1 - player, player, INFINITY), search.nodes);
+	}
+
+	/**
+	 * The state of one solve.
+	 */
+	private final class Search {
+
+		private final GameBoard board;
+		private final char[] symbols;
+		private final LineEvaluator evaluator;
+		private final long dimensionsKey;
+
+		// the moves of every ply and the keys of the positions after them
+		private final int[][] moves;
+		private final long[][] childKeys;
+		private final int[] numbers = new int[2];
+
+		private int attacker;
+		private long nodes = 0;
+		private boolean aborted = false;
+
+		Search(GameBoard board, char[] symbols) {
+			this.board = board;
+			this.symbols = symbols;
+			this.evaluator = new LineEvaluator(board, symbols);
+			this.dimensionsKey = GameBoard.zobrist(board.ROWS, board.COLUMNS, (char) board.CONSECUTIVE);
+			int squares = board.ROWS * board.COLUMNS;
+			this.moves = new int[squares + 1][squares];
+			this.childKeys = new long[squares + 1][squares];
+		}
+
+		/**
+		 * Tries to prove that {@code attacker} wins the position.
+		 *
+		 * @return boolean, true if proven; false if disproven or aborted
+		 */
+		boolean prove(int attacker, int side) {
+			this.attacker = attacker;
+			search(side, 0, INFINITY, INFINITY);
+			return !aborted && lookup(key(), numbers) && numbers[0] == 0;
+		}
+
+		/**
+		 * Returns a move of the root whose proof number is {@code proof}, after a
+		 * finished proof; 0 for a winning move, {@code INFINITY} for one that
+		 * doesn't lose.
+		 */
+		int provenMove(int attacker, int side, int proof) {
+			this.attacker = attacker;
+			int count = generateMoves(side, 0);
+			for (int i = 0; i < count; i++)
+				if (proof == 0 && evaluator.getCompletions(moves[0][i], side) > 0)
+					return moves[0][i];
+			for (int i = 0; i < count; i++)
+				if (lookup(childKeys[0][i], numbers) && numbers[0] == proof)
+					return moves[0][i];
+			return count > 0 ? moves[0][0] : -1;
+		}
+
+		/**
+		 * Searches the position until its proof number reaches {@code proofLimit} or
+		 * its disproof number reaches {@code disproofLimit}, and stores the numbers.
+		 */
+		private void search(int side, int ply, int proofLimit, int disproofLimit) {
+			long key = key();
+			if (++nodes > nodeBudget)
+				aborted = true;
+			if (aborted)
+				return;
+
+			boolean or = side == attacker;
+			int result = terminal(side);
+			if (result != 0) {
+				// result is 1 if the attacker won, -1 if they can't anymore
+				store(key, result > 0 ? 0 : INFINITY, result > 0 ? INFINITY : 0, 1);
+				return;
+			}
+
+			long startNodes = nodes;
+			int count = generateMoves(side, ply);
+			int[] list = moves[ply];
+			while (true) {
+				// the proof and disproof numbers from the children
+				int proof = or ? INFINITY : 0, disproof = or ? 0 : INFINITY;
+				int best = -1, bestNumber = INFINITY, secondNumber = INFINITY, bestOther = 0;
+				for (int i = 0; i < count; i++) {
+					if (!lookup(childKeys[ply][i], numbers))
+						numbers[0] = numbers[1] = 1;
+					int p = numbers[0], d = numbers[1];
+					// the number that is minimized at this node, and the one that is summed
+					int minimized = or ? p : d, summed = or ? d : p;
+					if (or) {
+						proof = Math.min(proof, p);
+						disproof = (int) Math.min(INFINITY, (long) disproof + d);
+					} else {
+						disproof = Math.min(disproof, d);
+						proof = (int) Math.min(INFINITY, (long) proof + p);
+					}
+					if (minimized < bestNumber) {
+						secondNumber = bestNumber;
+						bestNumber = minimized;
+						bestOther = summed;
+						best = i;
+					} else if (minimized < secondNumber) {
+						secondNumber = minimized;
+					}
+				}
+
+				if (proof >= proofLimit || disproof >= disproofLimit || aborted) {
+					store(key, proof, disproof, (int) Math.min(Integer.MAX_VALUE, nodes - startNodes));
+					return;
+				}
+
+				// the 1+epsilon trick; search the best child until it's a quarter worse than
+				// the second best instead of just worse, to switch between them less often
+				int move = list[best], secondLimit = secondNumber + secondNumber / 4 + 1;
+				board.markSquare(move, symbols[side]);
+				evaluator.mark(move, side);
+				if (or)
+					search(1 - side, ply + 1, Math.min(proofLimit, secondLimit), disproofLimit - disproof + bestOther);
+				else
+					search(1 - side, ply + 1, proofLimit - proof + bestOther, Math.min(disproofLimit, secondLimit));
+				board.unmarkSquare(move);
+				evaluator.unmark(move);
+			}
+		}
+
+		/**
+		 * Checks if the position is decided without searching.
+		 *
+		 * @return int, 1 if the attacker has won, -1 if they can't win anymore or 0
+		 */
+		private int terminal(int side) {
+			int other = 1 - side;
+			int winner = -1;
+			if (evaluator.getThreatCount(side) > 0)
+				winner = side;
+			else if (evaluator.getThreatCount(other) > 1)
+				winner = other;
+			if (winner != -1)
+				return winner == attacker ? 1 : -1;
+
+			if (board.getMoveCount() == board.ROWS * board.COLUMNS)
+				return -1;
+			// no window left that the attacker could complete
+			int open = 0;
+			for (int marks = 0; marks < board.CONSECUTIVE; marks++)
+				open += evaluator.getWindowCount(attacker, marks);
+			return open == 0 || evaluator.hasPairing(attacker, PAIRING_EFFORT) ? -1 : 0;
+		}
+
+		/**
+		 * Fills {@code moves[ply]} with the empty squares, or only the square that
+		 * blocks the opponent's threat if they have one and {@code side} can't win
+		 * right away, and {@code childKeys[ply]} with the keys of the positions after
+		 * them. Moves that lead to the same position up to symmetry are only added
+		 * once.
+		 * <p>
+		 * Squares in no open window are left out while there are others; marking one
+		 * is the same as passing, and a mark never hurts its player, so it's never
+		 * better than any other move.
+		 *
+		 * @return int, the number of moves
+		 */
+		private int generateMoves(int side, int ply) {
+			int count = generateMoves(side, ply, true);
+			return count > 0 ? count : generateMoves(side, ply, false);
+		}
+
+		private int generateMoves(int side, int ply, boolean liveOnly) {
+			int[] list = moves[ply];
+			long[] keys = childKeys[ply];
+			long positionKey = dimensionsKey ^ ATTACKER_KEYS[attacker];
+			int count = 0;
+			boolean forced = evaluator.getThreatCount(side) == 0 && evaluator.getThreatCount(1 - side) > 0;
+			for (int row = 0; row < board.ROWS; row++) {
+				for (int col = 0; col < board.COLUMNS; col++) {
+					int move = board.toCoord(row, col);
+					if (!board.isValid(move) || forced && evaluator.getCompletions(move, 1 - side) == 0
+							|| liveOnly && !evaluator.isLive(move))
+						continue;
+
+					long key = board.getCanonicalHash(move, symbols[side]) ^ positionKey;
+					boolean duplicate = false;
+					for (int i = 0; i < count && !duplicate; i++)
+						duplicate = keys[i] == key;
+					if (!duplicate) {
+						list[count] = move;
+						keys[count++] = key;
+					}
+				}
+			}
+			return count;
+		}
+
+		private long key() {
+			return board.getCanonicalHash() ^ dimensionsKey ^ ATTACKER_KEYS[attacker];
+		}
+	}
+
+	// ----- TABLE -----
+
+	private boolean lookup(long key, int[] numbers) {
+		int index = bucket(key);
+		for (int i = index; i < index + 2; i++) {
+			if (keys[i] == key && works[i] != 0) {
+				numbers[0] = proofs[i];
+				numbers[1] = disproofs[i];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void store(long key, int proof, int disproof, int work) {
+		int i = bucket(key);
+		if (keys[i] != key && works[i] > work) {
+			// the first entry has more work, so use the second
+			i++;
+		} else if (keys[i] != key) {
+			keys[i + 1] = keys[i];
+			proofs[i + 1] = proofs[i];
+			disproofs[i + 1] = disproofs[i];
+			works[i + 1] = works[i];
+		}
+		keys[i] = key;
+		proofs[i] = proof;
+		disproofs[i] = disproof;
+		works[i] = Math.max(1, work);
+	}
+
+	private int bucket(long key) {
+		return ((int) (key ^ (key >>> 32)) & mask) << 1;
+	}
+}
@@ -0,0 +1,431 @@
+package ttt_online;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary encoding of the messages that the clients and the servers send
+ * each other, shared by both sides. Every message is a byte with its type
+ * followed by its fields, with a fixed encoding for each kind of field:
+ * <ul>
+ * <li>lengths, counts, seats, symbols and moves are varints; 7 bits per byte,
+ * the lowest first, with the high bit set on every byte but the last. Moves
+ * are zigzag encoded first, so that -1 and -2 take one byte too.
+ * <li>Strings are their length in bytes and their UTF-8 bytes.
+ * <li>boards are their rows, their columns and then every symbol, row by row.
+ * <li>colors and checksums are 4 byte {@code ints}.
+ * </ul>
+ * A typical turn now takes a few dozen bytes instead of the several hundred
+ * that serializing the objects took, and no reflection.
+ * <p>
+ * The game and the chat send {@link Message Messages}; the hints are still
+ * plain values. Before anything else a client sends a {@code Hello} with the
+ * version of the protocol it speaks, so that a server can turn away clients it
+ * can't understand instead of misreading them.
+ */
+final class Protocol {
+
+	/**
+	 * The version of the protocol; change it whenever the encoding changes
+	 */
+	static final int VERSION = 3;
+
+	// the type of each plain value
+	private static final byte HELLO = 0, STRING = 1, INT = 2, CHAR = 3, CHARS = 4, BOARD = 5, COLOR = 6,
+			COLORS = 7;
+
+	// the type of each Message
+	static final byte WELCOME = 8, REJECTED = 9, SYMBOL_REASSIGNED = 10, GAME_START = 11, TURN_START = 12,
+			MOVE = 13, MOVE_ACK = 14, BOARD_UPDATE = 15, GAME_OVER = 16, CHAT_MESSAGE = 17, BOARD_DELTA = 18,
+			SYNC_REQUEST = 19;
+
+	private Protocol() {
+	}
+
+	/**
+	 * The first message a client sends.
+	 */
+	static final class Hello {
+
+		/**
+		 * The version of the protocol the client speaks
+		 */
+		final int version;
+
+		Hello(int version) {
+			this.version = version;
+		}
+	}
+
+	/**
+	 * A message encoded as a whole frame, its length followed by its bytes,
+	 * ready to be written. The bytes never change once encoded, so a message
+	 * sent to many connections is encoded once and the same Frame is written to
+	 * all of them.
+	 */
+	static final class Frame {
+
+		private final byte[] bytes;
+
+		private Frame(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Returns the size of the frame, length included.
+		 *
+		 * @return int, the size in bytes
+		 */
+		int size() {
+			return bytes.length;
+		}
+
+		/**
+		 * Returns a new read-only view of the frame, with its own position, that
+		 * shares the bytes of the frame.
+		 *
+		 * @return ByteBuffer, the view
+		 */
+		ByteBuffer buffer() {
+			return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+		}
+
+		/**
+		 * Writes the whole frame to {@code out} at once.
+		 *
+		 * @param out OutputStream, the stream
+		 * @throws IOException if the stream fails
+		 */
+		void writeTo(OutputStream out) throws IOException {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Encodes {@code message} into a Frame.
+	 *
+	 * @param message Object, the message; a Message, Hello, String, Integer,
+	 *                Character, {@code char[]}, {@code char[][]}, Color or
+	 *                {@code Color[]}
+	 * @return Frame, the message encoded
+	 * @throws IOException if the message is too large or of a type that can't be
+	 *                     sent
+	 */
+	static Frame frame(Object message) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		// room for the length, which is only known at the end
+		writeInt(out, 0);
+		if (message instanceof Message) {
+			writeMessage(out, (Message) message);
+		} else if (message instanceof Hello) {
+			out.write(HELLO);
+			writeVarint(out, ((Hello) message).version);
+		} else if (message instanceof String) {
+			out.write(STRING);
+			writeString(out, (String) message);
+		} else if (message instanceof Integer) {
+			out.write(INT);
+			writeMove(out, (Integer) message);
+		} else if (message instanceof Character) {
+			out.write(CHAR);
+			writeVarint(out, (Character) message);
+		} else if (message instanceof char[]) {
+			out.write(CHARS);
+			writeSymbols(out, (char[]) message);
+		} else if (message instanceof char[][]) {
+			out.write(BOARD);
+			writeBoard(out, (char[][]) message);
+		} else if (message instanceof Color) {
+			out.write(COLOR);
+			writeInt(out, ((Color) message).getRGB());
+		} else if (message instanceof Color[]) {
+			out.write(COLORS);
+			writeColors(out, (Color[]) message);
+		} else {
+			throw new ProtocolException(String.format("Messages of type %s can't be sent",
+					message == null ? null : message.getClass().getName()));
+		}
+
+		int length = out.size() - 4;
+		if (length > Connection.MAX_FRAME)
+			throw new ProtocolException(
+					String.format("Message of %d bytes is larger than %d bytes", length, Connection.MAX_FRAME));
+		byte[] bytes = out.toByteArray();
+		ByteBuffer.wrap(bytes).putInt(0, length);
+		return new Frame(bytes);
+	}
+
+	private static void writeMessage(ByteArrayOutputStream out, Message message) throws IOException {
+		out.write(message.type);
+		switch (message.type) {
+		case WELCOME:
+			Message.Welcome welcome = (Message.Welcome) message;
+			writeVarint(out, welcome.seat);
+			writeString(out, welcome.room);
+			writeString(out, welcome.text);
+			break;
+		case REJECTED:
+			writeString(out, ((Message.Rejected) message).reason);
+			break;
+		case SYMBOL_REASSIGNED:
+			Message.SymbolReassigned reassigned = (Message.SymbolReassigned) message;
+			writeVarint(out, reassigned.seat);
+			writeVarint(out, reassigned.symbol);
+			break;
+		case GAME_START:
+			Message.GameStart start = (Message.GameStart) message;
+			writeString(out, start.text);
+			writeSymbols(out, start.symbols);
+			writeColors(out, start.colors);
+			break;
+		case TURN_START:
+			Message.TurnStart turn = (Message.TurnStart) message;
+			writeString(out, turn.text);
+			writeVarint(out, turn.sequence);
+			break;
+		case MOVE:
+			writeMove(out, ((Message.Move) message).move);
+			break;
+		case MOVE_ACK:
+			writeMove(out, ((Message.MoveAck) message).move);
+			break;
+		case BOARD_UPDATE:
+			Message.BoardUpdate update = (Message.BoardUpdate) message;
+			writeVarint(out, update.sequence);
+			writeBoard(out, update.board);
+			break;
+		case BOARD_DELTA:
+			Message.BoardDelta delta = (Message.BoardDelta) message;
+			writeVarint(out, delta.sequence);
+			writeVarint(out, delta.seat);
+			writeMove(out, delta.move);
+			writeInt(out, delta.checksum);
+			break;
+		case SYNC_REQUEST:
+			break;
+		case GAME_OVER:
+			Message.GameOver over = (Message.GameOver) message;
+			out.write(over.reason.ordinal());
+			writeVarint(out, over.player);
+			break;
+		case CHAT_MESSAGE:
+			writeString(out, ((Message.ChatMessage) message).text);
+			break;
+		default:
+			throw new ProtocolException(String.format("Unknown message type %d", message.type));
+		}
+	}
+
+	/**
+	 * Decodes a message encoded by {@link #frame(Object) frame()}.
+	 *
+	 * @param frame byte[], the message encoded, without its length
+	 * @return Object, the message
+	 * @throws ProtocolException if the frame isn't a message
+	 */
+	static Object decode(byte[] frame) throws ProtocolException {
+		ByteBuffer in = ByteBuffer.wrap(frame);
+		try {
+			Object message;
+			byte type = in.get();
+			switch (type) {
+			case HELLO:
+				message = new Hello(readVarint(in));
+				break;
+			case STRING:
+				message = readString(in);
+				break;
+			case INT:
+				message = readMove(in);
+				break;
+			case CHAR:
+				message = readChar(in);
+				break;
+			case CHARS:
+				message = readSymbols(in);
+				break;
+			case BOARD:
+				message = readBoard(in);
+				break;
+			case COLOR:
+				message = new Color(in.getInt());
+				break;
+			case COLORS:
+				message = readColors(in);
+				break;
+			case WELCOME:
+				message = new Message.Welcome(readVarint(in), readString(in), readString(in));
+				break;
+			case REJECTED:
+				message = new Message.Rejected(readString(in));
+				break;
+			case SYMBOL_REASSIGNED:
+				message = new Message.SymbolReassigned(readVarint(in), readChar(in));
+				break;
+			case GAME_START:
+				message = new Message.GameStart(readString(in), readSymbols(in), readColors(in));
+				break;
+			case TURN_START:
+				message = new Message.TurnStart(readString(in), readVarint(in));
+				break;
+			case MOVE:
+				message = new Message.Move(readMove(in));
+				break;
+			case MOVE_ACK:
+				message = new Message.MoveAck(readMove(in));
+				break;
+			case BOARD_UPDATE:
+				message = new Message.BoardUpdate(readVarint(in), readBoard(in));
+				break;
+			case BOARD_DELTA:
+				message = new Message.BoardDelta(readVarint(in), readVarint(in), readMove(in), in.getInt());
+				break;
+			case SYNC_REQUEST:
+				message = new Message.SyncRequest();
+				break;
+			case GAME_OVER:
+				Message.GameOver.Reason[] reasons = Message.GameOver.Reason.values();
+				int reason = in.get();
+				if (reason < 0 || reason >= reasons.length)
+					throw new ProtocolException(String.format("Unknown reason %d", reason));
+				message = new Message.GameOver(reasons[reason], readChar(in));
+				break;
+			case CHAT_MESSAGE:
+				message = new Message.ChatMessage(readString(in));
+				break;
+			default:
+				throw new ProtocolException(String.format("Unknown message type %d", type));
+			}
+			if (in.hasRemaining())
+				throw new ProtocolException(String.format("%d bytes left after message", in.remaining()));
+			return message;
+		} catch (BufferUnderflowException e) {
+			throw new ProtocolException("Message ends too early");
+		}
+	}
+
+	// writers of every kind of field
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static void writeMove(ByteArrayOutputStream out, int move) {
+		writeVarint(out, (move << 1) ^ (move >> 31));
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, int value) {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarint(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeSymbols(ByteArrayOutputStream out, char[] symbols) {
+		writeVarint(out, symbols.length);
+		for (char symbol : symbols)
+			writeVarint(out, symbol);
+	}
+
+	private static void writeBoard(ByteArrayOutputStream out, char[][] board) throws ProtocolException {
+		int columns = board.length == 0 ? 0 : board[0].length;
+		writeVarint(out, board.length);
+		writeVarint(out, columns);
+		for (char[] row : board) {
+			if (row.length != columns)
+				throw new ProtocolException("Boards must have rows of the same length");
+			for (char symbol : row)
+				writeVarint(out, symbol);
+		}
+	}
+
+	private static void writeColors(ByteArrayOutputStream out, Color[] colors) {
+		writeVarint(out, colors.length);
+		for (Color color : colors)
+			writeInt(out, color == null ? Color.BLACK.getRGB() : color.getRGB());
+	}
+
+	// readers of every kind of field
+
+	private static int readVarint(ByteBuffer in) throws ProtocolException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new ProtocolException("Varint longer than 5 bytes");
+	}
+
+	private static int readMove(ByteBuffer in) throws ProtocolException {
+		int value = readVarint(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	// reads a count of items that take at least bytesEach bytes, checking it against the frame
+	private static int readLength(ByteBuffer in, int bytesEach) throws ProtocolException {
+		int length = readVarint(in);
+		if (length < 0 || (long) length * bytesEach > in.remaining())
+			throw new ProtocolException(String.format("Length %d is larger than its frame", length));
+		return length;
+	}
+
+	private static char readChar(ByteBuffer in) throws ProtocolException {
+		int value = readVarint(in);
+		if (value < 0 || value > Character.MAX_VALUE)
+			throw new ProtocolException(String.format("Invalid symbol %d", value));
+		return (char) value;
+	}
+
+	private static String readString(ByteBuffer in) throws ProtocolException {
+		int length = readLength(in, 1);
+		String string = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return string;
+	}
+
+	private static char[] readSymbols(ByteBuffer in) throws ProtocolException {
+		char[] symbols = new char[readLength(in, 1)];
+		for (int i = 0; i < symbols.length; i++)
+			symbols[i] = readChar(in);
+		return symbols;
+	}
+
+	// checks the size before allocating, since a board with no columns takes no bytes whatever its rows
+	private static char[][] readBoard(ByteBuffer in) throws ProtocolException {
+		int rows = readVarint(in), columns = readVarint(in);
+		if (rows < 1 || rows > GameBoard.MAX_SIZE || columns < 1 || columns > GameBoard.MAX_SIZE)
+			throw new ProtocolException(String.format("Invalid board of %dx%d", rows, columns));
+		if (rows * columns > in.remaining())
+			throw new ProtocolException(String.format("Board of %dx%d is larger than its frame", rows, columns));
+		char[][] board = new char[rows][columns];
+		for (char[] row : board)
+			for (int j = 0; j < columns; j++)
+				row[j] = readChar(in);
+		return board;
+	}
+
+	private static Color[] readColors(ByteBuffer in) throws ProtocolException {
+		Color[] colors = new Color[readLength(in, 4)];
+		for (int i = 0; i < colors.length; i++)
+			colors[i] = new Color(in.getInt());
+		return colors;
+	}
+}
@@ -0,0 +1,377 @@
+package ttt_online;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import javax.swing.JOptionPane;
+
+/**
+ * Server-side application that hosts many games, each in its own room, on the
+ * port of the Game Server. Every room is a GameServer with its own board,
+ * seats and turns, running on its own thread.
+ * <p>
+ * The connections are served by a {@link NioTransport}, so the rooms only wait
+ * for the messages of their players and never on the network. When virtual
+ * threads are enabled every connection is instead a blocking
+ * {@link StreamConnection}, and the rooms run on virtual threads that can
+ * block on the network as cheaply.
+ * <p>
+ * Before anything else a client says which version of the protocol it speaks
+ * and sends the name of the room it wants to play in, as a {@code String}; an
+ * empty name means any room. A named room is created the first time someone
+ * asks for it, and players can join it while it's waiting for players. Clients
+ * that ask for any room are seated in the oldest room that is waiting for
+ * players, or in a new room if none is. After that the room talks to the
+ * client exactly like a single Game Server did; if the client can't be seated,
+ * it is sent the reason, in a {@code Rejected} message, and disconnected.
+ * <p>
+ * Rooms are kept after their games end, so that their players can meet there
+ * again, up to {@code MAX_ROOMS} rooms. Once there are that many, a new room
+ * takes the place of the oldest one that no one is in, other than the first.
+ * <p>
+ * Every {@code STATS_PERIOD} milliseconds the memory that the connections of
+ * all the rooms hold on to is logged, along with the heap in use.
+ */
+final class RoomManager extends Server {
+
+	// port of the Game Server
+	private static final int GAME_PORT = 10001;
+
+	/**
+	 * The maximum number of rooms
+	 */
+	static final int MAX_ROOMS = 500;
+
+	/**
+	 * The pattern of room names; they have no quotes or '#', which the clients
+	 * look for in the messages of the server
+	 */
+	static final String ROOM_NAME = "[A-Za-z0-9 _-]{1,20}";
+
+	// time a client has to ask for a room after connecting
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+
+	// how often the memory of the connections is logged, in milliseconds
+	private static final int STATS_PERIOD = 60000;
+
+	// threads that serve the connections of every room
+	private static final int EVENT_LOOPS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+	private final GameServer first;
+	private final ChatServer chatServer;
+
+	// the rooms, in the order they were created
+	private final Map<String, GameServer> rooms = new LinkedHashMap<String, GameServer>();
+	private volatile int roomCount = 1;
+	private int nextRoom = 2;
+
+	private final ExecutorService exec = VirtualThreads.newExecutor();
+	private NioTransport transport;
+
+	/**
+	 * Constructs a Room Manager whose rooms have the options of {@code first},
+	 * which becomes the first room.
+	 *
+	 * @param first      GameServer, the first room
+	 * @param chatServer ChatServer, the chat of every room
+	 */
+	RoomManager(GameServer first, ChatServer chatServer) {
+		super(first.playerCount, printStackTrace);
+		this.first = first;
+		this.chatServer = chatServer;
+		rooms.put(first.getRoomName(), first);
+	}
+
+	/**
+	 * Main method that calls other methods to actually run the server; starts
+	 * the first room and accepts connections.
+	 *
+	 * @see RoomManager#initializeServer() InitializeServer()
+	 * @see RoomManager#getConnections() getConnections()
+	 */
+	@Override
+	public void run() {
+		initializeServer();
+		first.setScreen(screen);
+		exec.execute(first);
+		exec.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(STATS_PERIOD);
+					} catch (InterruptedException e) {
+						return;
+					}
+					logConnectionStats();
+				}
+			}
+		});
+		getConnections();
+	}
+
+	/**
+	 * Initializes the server on port {@code GAME_PORT}, with {@code EVENT_LOOPS}
+	 * threads that seat every new connection in a room on another thread, so
+	 * that a slow client doesn't hold up the others. With virtual threads it's a
+	 * plain {@code ServerSocket} instead.
+	 *
+	 * @see RoomManager#seat(Connection) seat()
+	 */
+	@Override
+	protected void initializeServer() {
+		try {
+			if (VirtualThreads.isEnabled()) {
+				server = new ServerSocket(GAME_PORT);
+				log("Serving every connection on its own virtual thread");
+			} else {
+				transport = new NioTransport(GAME_PORT, EVENT_LOOPS, new NioTransport.Listener() {
+
+					@Override
+					public void accepted(Connection connection) {
+						startSeating(connection);
+					}
+				}, this, printStackTrace);
+				log(String.format("Serving every connection with %d event loop threads", EVENT_LOOPS));
+			}
+			log(String.format("Game Server ready, hosting up to %d rooms of %d players", MAX_ROOMS, playerCount));
+		} catch (BindException e) {
+			logerr("BindException while setting up server; a server is already running on this port", e,
+					printStackTrace);
+			JOptionPane.showMessageDialog(screen,
+					String.format("Error while setting up server:\nPort %d already in use\n\nServer will now exit",
+							GAME_PORT), "Error", JOptionPane.ERROR_MESSAGE);
+			System.exit(1);
+		} catch (IOException e) {
+			logerr("IOException while setting up server", e, printStackTrace);
+		}
+	}
+
+	/**
+	 * Starts accepting connections. With virtual threads, this thread accepts
+	 * them one by one for as long as the server is running.
+	 */
+	@Override
+	protected void getConnections() {
+		if (transport != null) {
+			transport.start();
+			return;
+		}
+		while (server != null) {
+			try {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				startSeating(new StreamConnection(socket));
+			} catch (IOException e) {
+				logerr("IOException in getConnections() while accepting a connection", e, printStackTrace);
+			}
+		}
+	}
+
+	// seats the connection on another thread
+	private void startSeating(Connection connection) {
+		exec.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				seat(connection);
+			}
+		});
+	}
+
+	/**
+	 * Checks that the client speaks this version of the protocol, reads the room
+	 * it asks for and hands the connection to that room, or tells the client why
+	 * it can't be seated and closes the connection.
+	 *
+	 * @param connection Connection, the connection
+	 */
+	private void seat(Connection connection) {
+		try {
+			if (!connection.checkVersion(HANDSHAKE_TIMEOUT)) {
+				log(String.format("Turned away %s: wrong version of the protocol", connection.getInetAddress()));
+				return;
+			}
+			String name = ((String) connection.receive(HANDSHAKE_TIMEOUT)).trim();
+
+			String error = null;
+			if (name.isEmpty()) {
+				// a room may fill up between being picked and being joined, so pick again
+				GameServer room;
+				do {
+					room = waitingRoom();
+				} while (room != null && !room.join(connection));
+				if (room == null)
+					error = String.format("All %d rooms are playing; please try again later", MAX_ROOMS);
+			} else if (!name.matches(ROOM_NAME)) {
+				error = "Room names can only have up to 20 letters, digits, spaces, '-' and '_'";
+			} else {
+				// a room may be closed between being found and being joined, so find it again
+				GameServer room;
+				boolean joined;
+				do {
+					room = getOrCreateRoom(name);
+					joined = room != null && room.join(connection);
+				} while (room != null && !joined && room.isClosed());
+				if (room == null)
+					error = String.format("All %d rooms are taken; please pick one of them", MAX_ROOMS);
+				else if (!joined)
+					error = String.format("Room '%s' is playing; please pick another room", name);
+			}
+
+			if (error != null) {
+				log(String.format("Turned away %s: %s", connection.getInetAddress(), error));
+				connection.send(new Message.Rejected(error));
+				connection.close();
+			}
+		} catch (SocketException e) {
+			logerr("SocketException in seat(); connection closed by user", e, printStackTrace);
+			close(connection);
+		} catch (IOException e) {
+			logerr("IOException in seat() while getting the room", e, printStackTrace);
+			close(connection);
+		} catch (ClassCastException e) {
+			logerr("Exception in seat(); the client didn't ask for a room", e, printStackTrace);
+			close(connection);
+		}
+	}
+
+	/**
+	 * Returns the oldest room that is waiting for players, creating one if there
+	 * isn't any.
+	 *
+	 * @return GameServer, the room, or null if there are {@code MAX_ROOMS} rooms
+	 *         and all of them are playing
+	 */
+	private synchronized GameServer waitingRoom() {
+		for (GameServer room : rooms.values())
+			if (room.isWaiting())
+				return room;
+
+		while (rooms.containsKey(String.valueOf(nextRoom)))
+			nextRoom++;
+		return getOrCreateRoom(String.valueOf(nextRoom++));
+	}
+
+	/**
+	 * Returns the room called {@code name}, creating and starting it if there is
+	 * no such room. When there are already {@code MAX_ROOMS} rooms, the oldest
+	 * one that no one is in is closed to make room for it.
+	 *
+	 * @param name String, the name of the room
+	 * @return GameServer, the room, or null if there are already
+	 *         {@code MAX_ROOMS} rooms and someone is in every one of them
+	 */
+	private synchronized GameServer getOrCreateRoom(String name) {
+		GameServer room = rooms.get(name);
+		if (room != null || rooms.size() == MAX_ROOMS && !closeEmptyRoom())
+			return room;
+
+		room = new GameServer(first, name);
+		room.setScreen(screen);
+		rooms.put(name, room);
+		roomCount = rooms.size();
+		exec.execute(room);
+		log(String.format("Opened room '%s'; %d rooms", name, rooms.size()));
+		return room;
+	}
+
+	/**
+	 * Closes and forgets the oldest room that no one is in, other than the first
+	 * one.
+	 *
+	 * @return boolean, false if someone is in every room
+	 */
+	private synchronized boolean closeEmptyRoom() {
+		for (Iterator<GameServer> it = rooms.values().iterator(); it.hasNext();) {
+			GameServer room = it.next();
+			if (room != first && room.close()) {
+				it.remove();
+				roomCount = rooms.size();
+				log(String.format("Closed empty room '%s'; %d rooms", room.getRoomName(), rooms.size()));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the room called {@code name}.
+	 *
+	 * @param name String, the name of the room
+	 * @return GameServer, the room, or null if there is no such room
+	 */
+	synchronized GameServer getRoom(String name) {
+		return rooms.get(name);
+	}
+
+	/**
+	 * Logs the memory that the connections of every room hold on to; their
+	 * buffers and the messages waiting in them, and the connection with the most
+	 * messages waiting. Nothing is logged while there are no connections.
+	 *
+	 * @see Connection#getQueuedBytes() getQueuedBytes()
+	 * @see Connection#getBufferBytes() getBufferBytes()
+	 */
+	private void logConnectionStats() {
+		int count = 0;
+		long buffers = 0, queued = 0, most = -1;
+		Connection largest = null;
+		synchronized (this) {
+			for (GameServer room : rooms.values()) {
+				for (Connection connection : room.connections) {
+					if (connection == null)
+						continue;
+					long waiting = connection.getQueuedBytes();
+					count++;
+					buffers += connection.getBufferBytes();
+					queued += waiting;
+					if (waiting > most) {
+						most = waiting;
+						largest = connection;
+					}
+				}
+			}
+		}
+		if (count == 0)
+			return;
+
+		Runtime runtime = Runtime.getRuntime();
+		log(String.format(
+				"%d connections: %d KiB of buffers, %d KiB of messages waiting, most %d KiB for %s; heap in use %d MiB",
+				count, buffers >> 10, queued >> 10, most >> 10, largest.getInetAddress(),
+				(runtime.totalMemory() - runtime.freeMemory()) >> 20));
+	}
+
+	private void close(Connection connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			logerr("IOException while closing connection", e, printStackTrace);
+		}
+	}
+
+	/**
+	 * Returns the number of seats in all the rooms.
+	 */
+	@Override
+	protected int getGameCount() {
+		return roomCount * playerCount;
+	}
+
+	/**
+	 * Returns the number of chat slots of all the rooms.
+	 */
+	@Override
+	protected int getChatCount() {
+		return roomCount * chatServer.playerCount;
+	}
+}
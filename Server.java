@@ -6,11 +6,10 @@ import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.swing.*;
 import javax.swing.text.DefaultCaret;
@@ -32,8 +31,7 @@ abstract class Server implements Logging, Runnable {
 	 */
 	protected static int gameConnected, chatConnected;
 
-	protected final ObjectInputStream[] inputs;
-	protected final ObjectOutputStream[] outputs;
+	protected final Connection[] connections;
 
 	// screen is essentially a JTextArea for log messages
 	protected Screen screen = new Screen();
@@ -47,6 +45,10 @@ abstract class Server implements Logging, Runnable {
 
 	protected boolean argumentsPassed = false;
 
+	// messages are broadcast one at a time, so that everyone gets them in the same order;
+	// hold it to change the connections while the server is running
+	protected final ReentrantLock broadcastLock = new ReentrantLock();
+
 	/**
 	 * Constructor of Server superclass. <br>
 	 * Gets options from UI and initializes other fields
@@ -67,8 +69,7 @@ abstract class Server implements Logging, Runnable {
 		gameConnected = 0;
 		chatConnected = 0;
 
-		inputs = new ObjectInputStream[playerCount];
-		outputs = new ObjectOutputStream[playerCount];
+		connections = new Connection[playerCount];
 		symbols = new char[playerCount];
 		// don't setup screen here because gameserver's screen needs data from chatesrver
 		// first setup both servers, then set the screen
@@ -84,13 +85,9 @@ abstract class Server implements Logging, Runnable {
 	 * @see Server#setupScreen() setupScreen()
 	 */
 	Server(int playerCount, boolean printStackTrace) {
-		gameConnected = 0;
-		chatConnected = 0;
-		
 		this.playerCount = playerCount;
 		Server.printStackTrace = printStackTrace;
-		inputs = new ObjectInputStream[playerCount];
-		outputs = new ObjectOutputStream[playerCount];
+		connections = new Connection[playerCount];
 		symbols = new char[playerCount];
 	}
 
@@ -155,6 +152,11 @@ abstract class Server implements Logging, Runnable {
 		optPanel.add(Box.createRigidArea(new Dimension(20,20)));
 		JCheckBox b1 = new JCheckBox("I would like to receive crash reports on my command line");
 		optPanel.add(b1);
+		JCheckBox virtualBox = new JCheckBox(VirtualThreads.isSupported()
+				? "Serve every connection on its own virtual thread"
+				: "Serve every connection on its own virtual thread (needs Java 21)");
+		virtualBox.setEnabled(VirtualThreads.isSupported());
+		optPanel.add(virtualBox);
 	
 		// submit Button
 		JButton submitButton = new JButton("Submit");
@@ -164,6 +166,7 @@ abstract class Server implements Logging, Runnable {
 				// typo xd
 				playerCount = playerList.getSelectedIndex()+2;
 				printStackTrace = b1.isSelected();
+				VirtualThreads.setEnabled(virtualBox.isSelected());
 				optWind.dispose();
 				argumentsPassed = true;
 			}
@@ -187,6 +190,17 @@ abstract class Server implements Logging, Runnable {
 		screen.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 	}
 
+	/**
+	 * Replaces this server's {@code screen} with {@code screen}, so that servers
+	 * running in the same process log to the same one.
+	 *
+	 * @param screen Screen, the screen to log to
+	 */
+	void setScreen(Screen screen) {
+		this.screen.dispose();
+		this.screen = screen;
+	}
+
 	/**
 	 * Logs {@code text} on the {@code screen} because instead of the command line.
 	 * Inserts the class name as a prefix.
@@ -203,20 +217,40 @@ abstract class Server implements Logging, Runnable {
 	 * @param args Object[], arguments
 	 */
 	protected void broadcast(String msg, Object... args) {
-		for (int i = 0; i < playerCount; i++) {
-			try {
-				if (args == null)
-					outputs[i].writeObject(msg);
-				else
-					outputs[i].writeObject(String.format(msg, args));
-			} catch (IOException e) {
-				logerr("Error in broadcast()\n", e, printStackTrace);
-			} catch (NullPointerException e) {
-				;
+		// a message with no arguments is sent as it is, '%' and all
+		String text = args.length == 0 ? msg : String.format(msg, args);
+		broadcast(new Message.ChatMessage(text));
+		log(String.format("Broadcasted: %s", text));
+	}
+
+	/**
+	 * Sends {@code message} to every client connected. The message is encoded
+	 * once and the same bytes are written to everyone.
+	 * 
+	 * @param message Message, the message to send
+	 */
+	protected void broadcast(Message message) {
+		Protocol.Frame frame;
+		try {
+			frame = Protocol.frame(message);
+		} catch (IOException e) {
+			logerr("Error in broadcast() while encoding\n", e, printStackTrace);
+			return;
+		}
+		broadcastLock.lock();
+		try {
+			for (int i = 0; i < playerCount; i++) {
+				if (connections[i] == null)
+					continue;
+				try {
+					connections[i].sendFrame(frame);
+				} catch (IOException e) {
+					logerr("Error in broadcast()\n", e, printStackTrace);
+				}
 			}
+		} finally {
+			broadcastLock.unlock();
 		}
-
-		log(String.format(String.format("Broadcasted: %s", msg), args));
 	}
 
 	protected abstract int getGameCount();
@@ -274,7 +308,7 @@ abstract class Server implements Logging, Runnable {
 		 * 
 		 * @param msg String, the message to append
 		 */
-		public final void pushMessage(String msg) {
+		public final synchronized void pushMessage(String msg) {
 			logTextArea.setText(logTextArea.getText() + "\n" + msg);
 		}
 
@@ -297,7 +331,7 @@ abstract class Server implements Logging, Runnable {
 		 * 
 		 * @see Server.Screen#updatePlayerLabel() updatePlayerLabel()
 		 */
-		public final void updateGameConnectionCounter(int i) {
+		public final synchronized void updateGameConnectionCounter(int i) {
 			gameConnected += i;
 			if (i == 0)
 				gameConnected = 0;
@@ -314,7 +348,7 @@ abstract class Server implements Logging, Runnable {
 		 * 
 		 * @see Server.Screen#updatePlayerLabel() updatePlayerLabel()
 		 */
-		public final void updateChatConnectionCounter(int i) {
+		public final synchronized void updateChatConnectionCounter(int i) {
 			chatConnected += i;
 			if (i == 0)
 				chatConnected = 0;
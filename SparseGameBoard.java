@@ -0,0 +1,239 @@
+package ttt_online;
+
+import java.util.Arrays;
+
+/**
+ * Represents a board with no fixed size, for "infinite" Tic-Tac-Toe.
+ * <p>
+ * Only the occupied squares are stored, in a {@link LongCharMap} keyed by
+ * {@code row << 32 | col}, together with the list of moves played. Memory and
+ * the cost of checking for a win grow with the number of moves, not with the
+ * area the moves cover. Players see the board through a bounded viewport.
+ *
+ * @see SparseGameBoard#getViewport(int, int, int, int) getViewport()
+ */
+final class SparseGameBoard {
+
+	final int CONSECUTIVE;
+	private final static char EMPTY = GameEngine.DASH;
+
+	// directions (i.e. steps to take on the board) in which lines are checked
+	private static final int[][] directions = { { 1, 0 }, { 0, 1 }, { 1, -1 }, { 1, 1 } };
+
+	private final LongCharMap squares = new LongCharMap(64);
+	private long[] moves = new long[64];
+	private int moveCount = 0;
+	private long[] winningLine = new long[0];
+
+	// bounding box of the marked squares, valid only when moveCount > 0
+	private int minRow, maxRow, minCol, maxCol;
+
+	/**
+	 * Initialize an empty board.
+	 *
+	 * @param winningCondition int, the number of consecutive marks needed to win
+	 */
+	SparseGameBoard(int winningCondition) {
+		this.CONSECUTIVE = winningCondition;
+	}
+
+	/**
+	 * Marks square {@code [row, col]} with {@code mark}.<br>
+	 * Returns the outcome of the move, calculated by walking at most
+	 * {@code CONSECUTIVE - 1} squares in every direction from the square just
+	 * marked. The game never ends in a tie.
+	 *
+	 * @param row  int, the row of the square, any int
+	 * @param col  int, the column of the square, any int
+	 * @param mark char, the symbol used to mark the board
+	 * @return Outcome, {@code INVALID} if the square is already marked,
+	 *         {@code WIN} or {@code CONTINUE} otherwise
+	 * @see SparseGameBoard#getWinningLine() getWinningLine()
+	 */
+	GameBoard.MoveResult.Outcome markSquare(int row, int col, char mark) {
+		long key = key(row, col);
+		if (squares.get(key) != LongCharMap.ABSENT)
+			return GameBoard.MoveResult.Outcome.INVALID;
+
+		squares.put(key, mark);
+		if (moveCount == moves.length)
+			moves = Arrays.copyOf(moves, 2 * moveCount);
+		moves[moveCount++] = key;
+
+		if (moveCount == 1) {
+			minRow = maxRow = row;
+			minCol = maxCol = col;
+		} else {
+			minRow = Math.min(minRow, row);
+			maxRow = Math.max(maxRow, row);
+			minCol = Math.min(minCol, col);
+			maxCol = Math.max(maxCol, col);
+		}
+
+		for (int[] direction : directions) {
+			int dx = direction[0], dy = direction[1];
+			int back = count(row, col, -dx, -dy, mark);
+			int forward = count(row, col, dx, dy, mark);
+			if (back + 1 + forward >= CONSECUTIVE) {
+				winningLine = new long[back + 1 + forward];
+				for (int i = 0; i < winningLine.length; i++)
+					winningLine[i] = key(row + (i - back) * dx, col + (i - back) * dy);
+				return GameBoard.MoveResult.Outcome.WIN;
+			}
+		}
+		return GameBoard.MoveResult.Outcome.CONTINUE;
+	}
+
+	/**
+	 * Checks if square {@code [row, col]} can be marked.
+	 *
+	 * @param row int, the row of the square
+	 * @param col int, the column of the square
+	 * @return boolean, true if valid, false if not
+	 */
+	boolean isValid(int row, int col) {
+		return squares.get(key(row, col)) == LongCharMap.ABSENT;
+	}
+
+	/**
+	 * Returns the symbol at square {@code [row, col]}.
+	 *
+	 * @param row int, the row of the square
+	 * @param col int, the column of the square
+	 * @return char, the symbol or {@code EMPTY}
+	 */
+	char getSquare(int row, int col) {
+		char mark = squares.get(key(row, col));
+		return mark == LongCharMap.ABSENT ? EMPTY : mark;
+	}
+
+	/**
+	 * Returns the squares of the board from {@code [top, left]} to
+	 * {@code [top + rows - 1, left + columns - 1]} as a regular GameBoard, to send
+	 * to the players. Only the moves played are visited, not every square of the
+	 * viewport.
+	 *
+	 * @param top     int, the first row of the viewport
+	 * @param left    int, the first column of the viewport
+	 * @param rows    int, the number of rows, up to {@code GameBoard.MAX_SIZE}
+	 * @param columns int, the number of columns, up to {@code GameBoard.MAX_SIZE}
+	 * @return GameBoard, the viewport; its square {@code [0, 0]} is square
+	 *         {@code [top, left]} of this board
+	 */
+	GameBoard getViewport(int top, int left, int rows, int columns) {
+		GameBoard viewport = new GameBoard(rows, columns, CONSECUTIVE);
+		for (int i = 0; i < moveCount; i++) {
+			int row = row(moves[i]) - top, col = column(moves[i]) - left;
+			if (0 <= row && row < rows && 0 <= col && col < columns)
+				viewport.markSquare(viewport.toCoord(row, col), squares.get(moves[i]));
+		}
+		return viewport;
+	}
+
+	/**
+	 * Clears the board.
+	 */
+	void clear() {
+		squares.clear();
+		moveCount = 0;
+		winningLine = new long[0];
+	}
+
+	/**
+	 * Returns a string representation of the part of the board that has been
+	 * played on.
+	 */
+	@Override
+	public String toString() {
+		if (moveCount == 0)
+			return "(empty)\n";
+		StringBuffer repr = new StringBuffer(String.format("rows %d to %d, columns %d to %d\n", minRow, maxRow, minCol, maxCol));
+		for (int i = minRow; i <= maxRow; i++) {
+			for (int j = minCol; j <= maxCol; j++) {
+				repr.append(getSquare(i, j));
+				repr.append(" ");
+			}
+			repr.append("\n");
+		}
+		return repr.toString();
+	}
+
+	// ----- GETTERS -----
+
+	int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Returns the move played {@code index}-th, as a key.
+	 *
+	 * @see SparseGameBoard#row(long) row()
+	 * @see SparseGameBoard#column(long) column()
+	 */
+	long getMove(int index) {
+		return moves[index];
+	}
+
+	/**
+	 * Returns the squares of the line completed by the winning move as keys, or
+	 * an empty array if no one has won.
+	 *
+	 * @see SparseGameBoard#row(long) row()
+	 * @see SparseGameBoard#column(long) column()
+	 */
+	long[] getWinningLine() {
+		return winningLine;
+	}
+
+	int getMinRow() {
+		return minRow;
+	}
+
+	int getMaxRow() {
+		return maxRow;
+	}
+
+	int getMinColumn() {
+		return minCol;
+	}
+
+	int getMaxColumn() {
+		return maxCol;
+	}
+
+	// ----- KEYS -----
+
+	/**
+	 * Returns the key of square {@code [row, col]}.
+	 */
+	static long key(int row, int col) {
+		return ((long) row << 32) | (col & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the row of {@code key}.
+	 */
+	static int row(long key) {
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * Returns the column of {@code key}.
+	 */
+	static int column(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Counts the squares marked with {@code mark} starting next to
+	 * {@code [row, col]} and moving by {@code [dx, dy]}, up to
+	 * {@code CONSECUTIVE - 1} squares.
+	 */
+	private int count(int row, int col, int dx, int dy, char mark) {
+		int count = 0;
+		for (int x = row + dx, y = col + dy; count < CONSECUTIVE - 1; x += dx, y += dy, count++)
+			if (squares.get(key(x, y)) != mark)
+				break;
+		return count;
+	}
+}
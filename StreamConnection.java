@@ -0,0 +1,123 @@
+package ttt_online;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A Connection over a blocking {@code Socket}; reading a message blocks the
+ * calling thread until it arrives. Used by the clients, and by the server when
+ * every connection has its own thread.
+ * <p>
+ * Reads and writes are guarded by locks rather than {@code synchronized}, so
+ * that a virtual thread blocked on the socket doesn't hold on to the ordinary
+ * thread running it.
+ * <p>
+ * Nothing waits in the connection itself; a write blocks until the socket
+ * takes the frame, and received frames wait in the socket until they're read.
+ * Its only memory is the read buffer.
+ */
+final class StreamConnection extends Connection {
+
+	// size of the read buffer
+	private static final int READ_BUFFER = 8192;
+
+	private final Socket socket;
+	private final DataInputStream input;
+	// every frame is written whole, so there is nothing to buffer
+	private final OutputStream output;
+	private final ReentrantLock inputLock = new ReentrantLock(), outputLock = new ReentrantLock();
+
+	/**
+	 * Constructs a Connection over {@code socket}.
+	 *
+	 * @param socket Socket, the connected socket
+	 * @throws IOException if the streams of the socket can't be opened
+	 */
+	StreamConnection(Socket socket) throws IOException {
+		this.socket = socket;
+		this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), READ_BUFFER));
+		this.output = socket.getOutputStream();
+	}
+
+	/**
+	 * Connects to port {@code port} of {@code address} and tells the server
+	 * which version of the protocol this client speaks.
+	 *
+	 * @param address String, the address of the server
+	 * @param port    int, the port
+	 * @return StreamConnection, the connection
+	 * @throws IOException if the server can't be reached
+	 * @see Connection#checkVersion(long) checkVersion()
+	 */
+	static StreamConnection connect(String address, int port) throws IOException {
+		StreamConnection connection = new StreamConnection(new Socket(InetAddress.getByName(address), port));
+		connection.hello();
+		return connection;
+	}
+
+	@Override
+	void sendFrame(Protocol.Frame frame) throws IOException {
+		outputLock.lock();
+		try {
+			frame.writeTo(output);
+		} finally {
+			outputLock.unlock();
+		}
+	}
+
+	@Override
+	Object receive() throws IOException {
+		byte[] frame;
+		inputLock.lock();
+		try {
+			int length = input.readInt();
+			if (length < 0 || length > MAX_FRAME)
+				throw new IOException(String.format("Invalid frame length %d", length));
+			frame = new byte[length];
+			input.readFully(frame);
+		} finally {
+			inputLock.unlock();
+		}
+		return Protocol.decode(frame);
+	}
+
+	@Override
+	Object receive(long timeout) throws IOException {
+		inputLock.lock();
+		try {
+			socket.setSoTimeout((int) Math.max(1, timeout));
+			try {
+				return receive();
+			} finally {
+				socket.setSoTimeout(0);
+			}
+		} finally {
+			inputLock.unlock();
+		}
+	}
+
+	@Override
+	InetAddress getInetAddress() {
+		return socket.getInetAddress();
+	}
+
+	@Override
+	long getQueuedBytes() {
+		return 0;
+	}
+
+	@Override
+	long getBufferBytes() {
+		return READ_BUFFER;
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
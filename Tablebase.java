@@ -0,0 +1,401 @@
+package ttt_online;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The solution of every position of a small board, stored in a file and read
+ * through a memory-mapped {@code FileChannel}, so looking up a position is
+ * O(1) and loading a table doesn't read it onto the heap.
+ * <p>
+ * Positions are stored relative to the player to move (their marks are 1, the
+ * next player's 2 and so on), under the symmetry of the board that gives the
+ * smallest key, so positions equal up to rotation, reflection or who is to
+ * move share an entry. The value of a position is who wins with perfect play,
+ * counted in seats after the player to move, or {@code TIE}. Every player
+ * prefers winning, then a tie, then the player furthest after them winning.
+ * <p>
+ * The file is a header followed by an open-addressed hash table of
+ * {@code long} slots: | valid 1 | key 55 | value 8 |. Tables are generated
+ * the first time they are loaded, or by running this class. A table is only
+ * generated by one thread at a time, into a file of its own that is then moved
+ * in place, so no one ever opens half a table.
+ */
+final class Tablebase implements AIPlayer {
+
+	/**
+	 * The value of a position that ends in a tie with perfect play
+	 */
+	static final int TIE = 0xff;
+
+	private static final String DIRECTORY = "tablebases";
+	private static final int MAGIC = 0x54545442; // "TTTB"
+	private static final int VERSION = 1;
+	private static final int HEADER = 32;
+	private static final long VALID = 1L << 63;
+
+	// held while checking for and generating a file, by its path
+	private static final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	private final int size, consecutive, players, base;
+	private final int[][] symmetries;
+	private final MappedByteBuffer buffer;
+	private final int mask;
+
+	/**
+	 * Main method. Run to generate the tablebases of every supported board in
+	 * the {@code tablebases} directory.
+	 */
+	public static void main(String[] args) throws IOException {
+		for (int size = 3; size <= 4; size++)
+			for (int consecutive = 3; consecutive <= size; consecutive++)
+				for (int players = 2; players <= 4; players++)
+					if (isSupported(size, size, players)) {
+						long start = System.currentTimeMillis();
+						load(size, size, consecutive, players);
+						System.out.printf("%dx%d, %d in a row, %d players: %d ms%n", size, size, consecutive, players,
+								System.currentTimeMillis() - start);
+					}
+	}
+
+	/**
+	 * Returns whether tablebases exist for a board of these dimensions; 3x3 for
+	 * up to 4 players and 4x4 for 2 players. The positions of larger boards, or
+	 * of 4x4 with more players, are too many to store.
+	 *
+	 * @param rows    int, the number of rows
+	 * @param columns int, the number of columns
+	 * @param players int, the number of players
+	 * @return boolean, true if tablebases can be generated
+	 */
+	static boolean isSupported(int rows, int columns, int players) {
+		return rows == columns && (rows == 3 && players <= 4 || rows == 4 && players == 2);
+	}
+
+	/**
+	 * Opens the tablebase of a board, generating it first if its file doesn't
+	 * exist.
+	 *
+	 * @param rows        int, the number of rows
+	 * @param columns     int, the number of columns
+	 * @param consecutive int, the number of consecutive marks needed to win
+	 * @param players     int, the number of players
+	 * @return Tablebase, the tablebase
+	 * @throws IOException if the file can't be read or written
+	 */
+	static Tablebase load(int rows, int columns, int consecutive, int players) throws IOException {
+		if (!isSupported(rows, columns, players))
+			throw new IllegalArgumentException(
+					String.format("No tablebase for %dx%d boards with %d players", rows, columns, players));
+
+		File file = new File(DIRECTORY, String.format("ttt_%dx%d_k%d_p%d.tb", rows, columns, consecutive, players));
+		locks.putIfAbsent(file.getPath(), new Object());
+		synchronized (locks.get(file.getPath())) {
+			if (!file.exists()) {
+				file.getParentFile().mkdirs();
+				new Solver(rows, consecutive, players).write(file);
+			}
+		}
+		return new Tablebase(file, rows, consecutive, players);
+	}
+
+	private Tablebase(File file, int size, int consecutive, int players) throws IOException {
+		this.size = size;
+		this.consecutive = consecutive;
+		this.players = players;
+		this.base = players + 1;
+		this.symmetries = symmetries(size);
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != size
+				|| buffer.getInt(12) != consecutive || buffer.getInt(16) != players)
+			throw new IOException(String.format("%s isn't a tablebase of this board", file));
+		mask = buffer.getInt(20) - 1;
+	}
+
+	/**
+	 * Returns who wins {@code board} with perfect play.
+	 *
+	 * @param board   GameBoard, the position, not over yet
+	 * @param symbols char[], the symbols of the players, in the order they play
+	 * @param player  int, the index of the player whose turn it is
+	 * @return int, the number of seats after {@code player} of the winner, or
+	 *         {@code TIE}
+	 */
+	int getValue(GameBoard board, char[] symbols, int player) {
+		return probe(cells(board, symbols), player);
+	}
+
+	/**
+	 * Returns the move with the best value for {@code player}, by looking up the
+	 * position after every move.
+	 */
+	@Override
+	public int findMove(GameBoard board, char[] symbols, int player) {
+		byte[] cells = cells(board, symbols);
+		int empty = 0;
+		for (byte cell : cells)
+			if (cell == 0)
+				empty++;
+
+		int bestMove = -1, bestValue = -1;
+		for (int i = 0; i < cells.length && bestValue != 0; i++) {
+			if (cells[i] != 0)
+				continue;
+			cells[i] = (byte) (player + 1);
+			int value;
+			if (wins(cells, i, size, consecutive))
+				value = 0;
+			else if (empty == 1)
+				value = TIE;
+			else
+				value = after(probe(cells, (player + 1) % players), players);
+			cells[i] = 0;
+
+			if (bestMove == -1 || rank(value, players) > rank(bestValue, players)) {
+				bestMove = board.toCoord(i / size, i % size);
+				bestValue = value;
+			}
+		}
+		return bestMove;
+	}
+
+	private int probe(byte[] cells, int player) {
+		long key = canonical(cells, player, players, base, symmetries);
+		for (int i = slot(key, mask);; i = (i + 1) & mask) {
+			long entry = buffer.getLong(HEADER + 8 * i);
+			if (entry == 0)
+				throw new IllegalStateException("Position isn't in the tablebase");
+			if ((entry & ~VALID) >>> 8 == key)
+				return (int) (entry & 0xff);
+		}
+	}
+
+	private byte[] cells(GameBoard board, char[] symbols) {
+		if (board.ROWS != size || board.COLUMNS != size || board.CONSECUTIVE != consecutive
+				|| symbols.length != players)
+			throw new IllegalArgumentException("The board doesn't match the tablebase");
+
+		byte[] cells = new byte[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			char mark = board.getSquare(i / size, i % size);
+			for (int seat = 0; seat < players; seat++)
+				if (symbols[seat] == mark)
+					cells[i] = (byte) (seat + 1);
+		}
+		return cells;
+	}
+
+	// ----- SHARED WITH THE SOLVER -----
+
+	/**
+	 * Converts the value of a position for its player to move to the value for
+	 * the player before them.
+	 */
+	private static int after(int value, int players) {
+		return value == TIE ? TIE : (value + 1) % players;
+	}
+
+	/**
+	 * Orders values by preference of the player to move; their win, then a tie,
+	 * then the player furthest after them winning.
+	 */
+	private static int rank(int value, int players) {
+		return value == 0 ? players + 1 : value == TIE ? players : value;
+	}
+
+	/**
+	 * Returns the smallest key of the position under every symmetry of the board,
+	 * where every square is a digit; 0 if empty, otherwise 1 for the marks of the
+	 * player to move, 2 for the next player's and so on.
+	 */
+	private static long canonical(byte[] cells, int player, int players, int base, int[][] symmetries) {
+		long best = Long.MAX_VALUE;
+		for (int[] symmetry : symmetries) {
+			long key = 0;
+			for (int i = 0; i < cells.length; i++) {
+				int cell = cells[symmetry[i]];
+				key = key * base + (cell == 0 ? 0 : (cell - 1 - player + players) % players + 1);
+			}
+			best = Math.min(best, key);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns where every square of a {@code size}x{@code size} board goes under
+	 * each of its 8 rotations and reflections.
+	 */
+	private static int[][] symmetries(int size) {
+		int[][] symmetries = new int[8][size * size];
+		for (int s = 0; s < 8; s++) {
+			for (int row = 0; row < size; row++) {
+				for (int col = 0; col < size; col++) {
+					int r = row, c = col;
+					for (int turn = 0; turn < (s & 3); turn++) {
+						int t = r;
+						r = c;
+						c = size - 1 - t;
+					}
+					if (s >= 4)
+						c = size - 1 - c;
+					symmetries[s][row * size + col] = r * size + c;
+				}
+			}
+		}
+		return symmetries;
+	}
+
+	/**
+	 * Checks if the mark at {@code cell} completes a line of {@code consecutive}
+	 * marks.
+	 */
+	private static boolean wins(byte[] cells, int cell, int size, int consecutive) {
+		int row = cell / size, col = cell % size;
+		int[][] directions = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+		for (int[] direction : directions) {
+			int count = 1;
+			for (int r = row + direction[0], c = col + direction[1]; r >= 0 && r < size && c >= 0 && c < size
+					&& cells[r * size + c] == cells[cell]; r += direction[0], c += direction[1])
+				count++;
+			for (int r = row - direction[0], c = col - direction[1]; r >= 0 && r < size && c >= 0 && c < size
+					&& cells[r * size + c] == cells[cell]; r -= direction[0], c -= direction[1])
+				count++;
+			if (count >= consecutive)
+				return true;
+		}
+		return false;
+	}
+
+	private static int slot(long key, int mask) {
+		key *= 0x9e3779b97f4a7c15L;
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	/**
+	 * Solves every position reachable from the empty board, depth first,
+	 * remembering the value of every position in a hash table laid out like the
+	 * tablebase file.
+	 */
+	private static final class Solver {
+
+		private final int size, consecutive, players, base;
+		private final int[][] symmetries;
+		private final byte[] cells;
+
+		private long[] table = new long[1 << 10];
+		private int count = 0;
+
+		Solver(int size, int consecutive, int players) {
+			this.size = size;
+			this.consecutive = consecutive;
+			this.players = players;
+			this.base = players + 1;
+			this.symmetries = symmetries(size);
+			this.cells = new byte[size * size];
+		}
+
+		/**
+		 * Solves the board and writes the table to {@code file}.
+		 */
+		void write(File file) throws IOException {
+			solve(0, cells.length);
+
+			// other processes may be generating the same table
+			File temporary = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			try (RandomAccessFile raf = new RandomAccessFile(temporary, "rw"); FileChannel channel = raf.getChannel()) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER);
+				header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(consecutive).putInt(players)
+						.putInt(table.length).putInt(count).position(HEADER);
+				header.flip();
+				channel.write(header);
+
+				ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+				for (long entry : table) {
+					if (!chunk.hasRemaining()) {
+						chunk.flip();
+						channel.write(chunk);
+						chunk.clear();
+					}
+					chunk.putLong(entry);
+				}
+				chunk.flip();
+				channel.write(chunk);
+			} catch (IOException e) {
+				temporary.delete();
+				throw e;
+			}
+			try {
+				Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				temporary.delete();
+				// unless someone else moved the same table in first
+				if (!file.exists())
+					throw new IOException(String.format("Couldn't create %s", file), e);
+			}
+		}
+
+		/**
+		 * Returns the value of the position in {@code cells}, where {@code player}
+		 * is to move and {@code empty} squares are left.
+		 */
+		private int solve(int player, int empty) {
+			long key = canonical(cells, player, players, base, symmetries);
+			int mask = table.length - 1;
+			int i = slot(key, mask);
+			for (; table[i] != 0; i = (i + 1) & mask)
+				if ((table[i] & ~VALID) >>> 8 == key)
+					return (int) (table[i] & 0xff);
+
+			// every move is solved, even after finding a win, so that every reachable position is stored
+			int best = -1;
+			for (int cell = 0; cell < cells.length; cell++) {
+				if (cells[cell] != 0)
+					continue;
+				cells[cell] = (byte) (player + 1);
+				int value;
+				if (wins(cells, cell, size, consecutive))
+					value = 0;
+				else if (empty == 1)
+					value = TIE;
+				else
+					value = after(solve((player + 1) % players, empty - 1), players);
+				cells[cell] = 0;
+				if (best == -1 || rank(value, players) > rank(best, players))
+					best = value;
+			}
+
+			put(key, best);
+			return best;
+		}
+
+		private void put(long key, int value) {
+			if (2 * ++count > table.length) {
+				long[] old = table;
+				table = new long[2 * old.length];
+				for (long entry : old)
+					if (entry != 0)
+						insert(entry);
+			}
+			insert(VALID | key << 8 | value);
+		}
+
+		private void insert(long entry) {
+			int mask = table.length - 1;
+			int i = slot((entry & ~VALID) >>> 8, mask);
+			while (table[i] != 0)
+				i = (i + 1) & mask;
+			table[i] = entry;
+		}
+	}
+}
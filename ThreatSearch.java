@@ -0,0 +1,317 @@
+package ttt_online;
+
+import java.util.Arrays;
+
+/**
+ * Searches for wins made of threats that the opponent must answer, for 2
+ * player games on large boards where a full search can't see far enough.
+ * <p>
+ * A four is a move after which the attacker has a threat, a square that would
+ * complete a line; the defender's only answer is to mark that square, so a
+ * sequence of fours searches a single defence per move and can look deep. A
+ * victory by continuous fours (VCF) is such a sequence that ends in two threats
+ * at once, which can't both be blocked. A victory by continuous threats (VCT)
+ * also uses threes, moves after which the attacker would have a VCF of one move
+ * if they moved again; the defender then has a few answers, the squares of the
+ * attacker's windows through the three and their own fours, and the attacker
+ * must win against every one of them.
+ * <p>
+ * VCF search only considers forced moves so a VCF it finds is a real win. VCT
+ * search assumes that no other defence exists, which is usually but not always
+ * true, so its moves are only good candidates for a full search to look at
+ * first.
+ * <p>
+ * A search is meant to be kept and given every new position with
+ * {@link #setPosition(GameBoard, char[]) setPosition()}; the lists of defences
+ * it needs, one per three, are only allocated once.
+ */
+final class ThreatSearch {
+
+	// positions searched that have no VCF of the given depth
+	private static final int FAILURES = 1 << 12;
+
+	private GameBoard board;
+	private char[] symbols;
+	private LineEvaluator evaluator;
+	private final long nodeLimit;
+	private int k;
+	private long columnMask;
+
+	// the defences of every ply of the VCT search, allocated as deep as it goes
+	private int[][] defences = new int[0][];
+	private int[] squares = new int[0];
+
+	private final long[] failedKeys = new long[FAILURES];
+	private final int[] failedDepths = new int[FAILURES];
+
+	private long nodes;
+
+	/**
+	 * Constructs a search with no position; call
+	 * {@link #setPosition(GameBoard, char[]) setPosition()} before searching.
+	 *
+	 * @param nodeLimit long, the maximum number of positions every search visits
+	 */
+	ThreatSearch(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Constructs a search of the position on {@code board}, which is copied.
+	 *
+	 * @param board     GameBoard, the position
+	 * @param symbols   char[], the symbols of the 2 players
+	 * @param nodeLimit long, the maximum number of positions every search visits
+	 */
+	ThreatSearch(GameBoard board, char[] symbols, long nodeLimit) {
+		this(nodeLimit);
+		setPosition(board, symbols);
+	}
+
+	/**
+	 * Makes the position on {@code board}, which is copied, the one searched,
+	 * and forgets what was learned about the previous one.
+	 *
+	 * @param board   GameBoard, the position
+	 * @param symbols char[], the symbols of the 2 players
+	 */
+	void setPosition(GameBoard board, char[] symbols) {
+		if (symbols.length != 2)
+			throw new IllegalArgumentException("ThreatSearch only searches 2 player games");
+
+		// every list of defences fits in the squares of the board
+		for (int i = 0; i < defences.length; i++)
+			if (defences[i] != null && defences[i].length < board.ROWS * board.COLUMNS)
+				defences[i] = null;
+		this.board = new GameBoard(board);
+		this.symbols = symbols;
+		this.evaluator = new LineEvaluator(this.board, symbols);
+		this.k = board.CONSECUTIVE;
+		this.columnMask = board.COLUMNS == Long.SIZE ? -1L : (1L << board.COLUMNS) - 1;
+		if (squares.length < 4 * k * k)
+			squares = new int[4 * k * k];
+		Arrays.fill(failedKeys, 0L);
+		Arrays.fill(failedDepths, 0);
+	}
+
+	/**
+	 * Searches for a VCF of {@code attacker}, who is to move, of at most
+	 * {@code maxFours} fours.
+	 *
+	 * @param attacker int, the index of the player to move
+	 * @param maxFours int, the maximum number of fours
+	 * @return int, the first move of the VCF, or -1 if none was found
+	 */
+	int findVcf(int attacker, int maxFours) {
+		nodes = 0;
+		int move = winningMove(attacker);
+		if (move != -1)
+			return move;
+		return vcf(attacker, maxFours, true);
+	}
+
+	/**
+	 * Searches for a VCT of {@code attacker}, who is to move, of at most
+	 * {@code maxThrees} threes, with VCFs of at most {@code maxFours} fours after
+	 * them.
+	 *
+	 * @param attacker  int, the index of the player to move
+	 * @param maxThrees int, the maximum number of threes
+	 * @param maxFours  int, the maximum number of fours after the threes
+	 * @return int, the first move of the VCT, or -1 if none was found
+	 */
+	int findVct(int attacker, int maxThrees, int maxFours) {
+		nodes = 0;
+		int move = winningMove(attacker);
+		if (move != -1)
+			return move;
+		if (defences.length < maxThrees)
+			defences = Arrays.copyOf(defences, maxThrees);
+		return vct(attacker, maxThrees, maxFours, 0);
+	}
+
+	/**
+	 * Returns the number of positions visited by the last search.
+	 *
+	 * @return long, the number of nodes
+	 */
+	long getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * Searches for a VCF of {@code attacker}, who is to move.
+	 *
+	 * @param root boolean, whether to return the first move instead of 0
+	 * @return int, the first move of the VCF (or 0 if not at the root), or -1
+	 */
+	private int vcf(int attacker, int fours, boolean root) {
+		if (evaluator.getThreatCount(attacker) > 0)
+			return root ? winningMove(attacker) : 0;
+		int defender = 1 - attacker;
+		if (fours == 0 || ++nodes > nodeLimit || evaluator.getThreatCount(defender) > 1)
+			return -1;
+
+		long key = board.getHash() ^ attacker;
+		int slot = (int) (key ^ (key >>> 32)) & (FAILURES - 1);
+		if (failedKeys[slot] == key && failedDepths[slot] >= fours)
+			return -1;
+
+		// a four that doesn't block the defender's threat loses to it
+		int block = evaluator.getThreatCount(defender) == 1 ? winningMove(defender) : -1;
+		for (int row = 0; row < board.ROWS; row++) {
+			for (long near = near(row, attacker); near != 0; near &= near - 1) {
+				int move = board.toCoord(row, Long.numberOfTrailingZeros(near));
+				if (block != -1 && move != block || evaluator.getWindowCount(move, attacker, k - 2) == 0)
+					continue;
+
+				mark(move, attacker);
+				boolean won = evaluator.getThreatCount(attacker) > 1;
+				if (!won) {
+					int reply = gapOf(move, attacker);
+					mark(reply, defender);
+					won = vcf(attacker, fours - 1, false) != -1;
+					unmark(reply);
+				}
+				unmark(move);
+				if (won)
+					return root ? move : 0;
+			}
+		}
+
+		failedKeys[slot] = key;
+		failedDepths[slot] = fours;
+		return -1;
+	}
+
+	/**
+	 * Searches for a VCT of {@code attacker}, who is to move.
+	 *
+	 * @return int, the first move of the VCT, or -1
+	 */
+	private int vct(int attacker, int threes, int fours, int ply) {
+		if (vcf(attacker, fours, false) != -1)
+			return ply == 0 ? vcf(attacker, fours, true) : 0;
+
+		int defender = 1 - attacker;
+		if (threes == 0 || ++nodes > nodeLimit || evaluator.getThreatCount(defender) > 0)
+			return -1;
+
+		for (int row = 0; row < board.ROWS; row++) {
+			for (long near = near(row, attacker); near != 0; near &= near - 1) {
+				int move = board.toCoord(row, Long.numberOfTrailingZeros(near));
+				if (evaluator.getWindowCount(move, attacker, k - 3) == 0)
+					continue;
+
+				mark(move, attacker);
+				boolean won = false;
+				// a three the defender could ignore isn't a threat
+				if (evaluator.getThreatCount(attacker) > 0 || vcf(attacker, 1, false) != -1) {
+					int count = findDefences(move, attacker, ply);
+					won = true;
+					for (int i = 0; i < count && won; i++) {
+						int reply = defences[ply][i];
+						mark(reply, defender);
+						won = vct(attacker, threes - 1, fours, ply + 1) != -1;
+						unmark(reply);
+					}
+				}
+				unmark(move);
+				if (won)
+					return ply == 0 ? move : 0;
+				if (nodes > nodeLimit)
+					return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Fills {@code defences[ply]} with the answers to the three at {@code move};
+	 * the empty squares of the attacker's windows through it and the defender's
+	 * fours, each once, or only the square that blocks it if it was a four.
+	 *
+	 * @return int, the number of defences
+	 */
+	private int findDefences(int move, int attacker, int ply) {
+		if (defences[ply] == null)
+			defences[ply] = new int[board.ROWS * board.COLUMNS];
+		int[] list = defences[ply];
+		int count = 0;
+		if (evaluator.getThreatCount(attacker) > 0) {
+			// the move was a four after all
+			list[0] = gapOf(move, attacker);
+			return 1;
+		}
+		int found = evaluator.getEmptySquares(move, attacker, k - 2, squares);
+		for (int i = 0; i < found; i++)
+			count = add(list, count, squares[i]);
+		for (int row = 0; row < board.ROWS; row++) {
+			for (long near = near(row, 1 - attacker); near != 0; near &= near - 1) {
+				int square = board.toCoord(row, Long.numberOfTrailingZeros(near));
+				if (evaluator.getWindowCount(square, 1 - attacker, k - 2) > 0)
+					count = add(list, count, square);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the empty squares of {@code row} less than {@code CONSECUTIVE}
+	 * squares away from a mark of {@code seat}, the only ones that can be in a
+	 * window with their marks, as a bitboard.
+	 */
+	private long near(int row, int seat) {
+		long near = 0L;
+		for (int r = Math.max(0, row - k + 1); r <= Math.min(board.ROWS - 1, row + k - 1); r++) {
+			long bits = board.getBits(r, symbols[seat]);
+			for (int shift = 1; shift < k; shift++)
+				bits |= (bits << 1) | (bits >>> 1);
+			near |= bits;
+		}
+		return near & ~board.getOccupiedBits(row) & columnMask;
+	}
+
+	private static int add(int[] list, int count, int square) {
+		for (int i = 0; i < count; i++)
+			if (list[i] == square)
+				return count;
+		list[count] = square;
+		return count + 1;
+	}
+
+	/**
+	 * Returns the square that completes the only window through {@code move} that
+	 * {@code seat} needs one more mark in.
+	 */
+	private int gapOf(int move, int seat) {
+		evaluator.getEmptySquares(move, seat, k - 1, squares);
+		return squares[0];
+	}
+
+	/**
+	 * Returns a square that completes a line for {@code seat}, or -1.
+	 */
+	private int winningMove(int seat) {
+		if (evaluator.getThreatCount(seat) == 0)
+			return -1;
+		for (int row = 0; row < board.ROWS; row++) {
+			for (int col = 0; col < board.COLUMNS; col++) {
+				int move = board.toCoord(row, col);
+				if (board.isValid(move) && evaluator.getCompletions(move, seat) > 0)
+					return move;
+			}
+		}
+		return -1;
+	}
+
+	private void mark(int move, int seat) {
+		board.markSquare(move, symbols[seat]);
+		evaluator.mark(move, seat);
+	}
+
+	private void unmark(int move) {
+		board.unmarkSquare(move);
+		evaluator.unmark(move);
+	}
+}
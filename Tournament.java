@@ -0,0 +1,266 @@
+package ttt_online;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A headless batch of games between computer players, on every board the
+ * GameServer offers, with every winning condition and 2 to 4 players. Prints
+ * the win and tie rates and the average length of the games of every setup,
+ * then how often each computer player won and how many nodes per second it
+ * searched, so it can be used to spot regressions in the GameBoard and the
+ * computer players and to measure their throughput.
+ * <p>
+ * The games are split among the threads of a {@code ForkJoinPool}, which
+ * steal the games of each other when they run out, so every core stays busy
+ * even though a game on 19x19 takes much longer than one on 3x3. Nothing here
+ * uses Swing, so it runs on machines without a display.
+ * <p>
+ * Usage: {@code Tournament [games per setup] [milliseconds per move]}
+ */
+final class Tournament implements Logging {
+
+	// the boards of the GameServer, as { rows, columns }, except the infinite one
+	private static final int[][] BOARDS = { { 3, 3 }, { 4, 4 }, { 5, 5 }, { 6, 6 }, { 7, 7 }, { 8, 8 }, { 6, 7 },
+			{ 10, 10 }, { 15, 15 }, { 19, 19 } };
+	private static final int[] WIN_CONDITIONS = { 3, 4, 5 };
+	private static final int MAX_PLAYERS = 4;
+	private static final char[] SYMBOLS = { 'X', 'O', '#', '@' };
+
+	private static final int DEFAULT_GAMES = 10;
+	private static final long DEFAULT_TIME_LIMIT = 10;
+
+	// every game has its own players, so their tables are kept small
+	private static final int TABLE_MEGABYTES = 1;
+	private static final int TREE_CAPACITY = 1 << 16;
+
+	/**
+	 * The computer players that take part; every game seats them in turn.
+	 */
+	enum Engine {
+		ALPHA_BETA, MAX_N, PARANOID, MONTE_CARLO;
+
+		private AIPlayer create(long timeLimit) {
+			switch (this) {
+			case ALPHA_BETA:
+				return new AlphaBetaPlayer(timeLimit, AlphaBetaPlayer.MAX_PLY - 1, TABLE_MEGABYTES);
+			case MAX_N:
+				return new MaxNPlayer(MaxNPlayer.Mode.MAX_N, timeLimit);
+			case PARANOID:
+				return new MaxNPlayer(MaxNPlayer.Mode.PARANOID, timeLimit);
+			default:
+				return new MonteCarloPlayer(timeLimit, MonteCarloPlayer.DEFAULT_EXPLORATION, TREE_CAPACITY);
+			}
+		}
+
+		// the work of the last move; playouts for Monte Carlo, positions for the rest
+		private static long nodes(AIPlayer player) {
+			if (player instanceof AlphaBetaPlayer)
+				return ((AlphaBetaPlayer) player).getNodeCount();
+			if (player instanceof MaxNPlayer)
+				return ((MaxNPlayer) player).getNodeCount();
+			return ((MonteCarloPlayer) player).getPlayoutCount();
+		}
+	}
+
+	private static final Engine[] TWO_PLAYER_ENGINES = { Engine.ALPHA_BETA, Engine.MONTE_CARLO };
+	private static final Engine[] MULTI_PLAYER_ENGINES = { Engine.MAX_N, Engine.PARANOID, Engine.MONTE_CARLO };
+
+	private final int gamesPerSetup;
+	private final long timeLimit;
+	private final List<Setup> setups = new ArrayList<Setup>();
+
+	// seats taken, games won, nodes searched and nanoseconds spent thinking by every Engine
+	private final LongAdder[] seats = adders(), wins = adders(), nodes = adders(), nanos = adders();
+	private final LongAdder errors = new LongAdder();
+
+	/**
+	 * Main method. Plays the games and prints the results.
+	 *
+	 * @param args String[], optionally the number of games of every setup and the
+	 *             time limit of every move in milliseconds
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		long timeLimit = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_TIME_LIMIT;
+		new Tournament(games, timeLimit).run(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a tournament of {@code gamesPerSetup} games on every setup.
+	 *
+	 * @param gamesPerSetup int, the number of games of every setup
+	 * @param timeLimit     long, the time budget of every move in milliseconds
+	 */
+	Tournament(int gamesPerSetup, long timeLimit) {
+		this.gamesPerSetup = gamesPerSetup;
+		this.timeLimit = timeLimit;
+		for (int[] board : BOARDS)
+			for (int consecutive : WIN_CONDITIONS)
+				if (consecutive <= Math.max(board[0], board[1]))
+					for (int players = 2; players <= MAX_PLAYERS; players++)
+						setups.add(new Setup(board[0], board[1], consecutive, players));
+	}
+
+	/**
+	 * Plays every game on {@code threads} threads and prints the results.
+	 *
+	 * @param threads int, the number of threads
+	 */
+	void run(int threads) {
+		int total = setups.size() * gamesPerSetup;
+		log(String.format("Playing %d games, %d on each of %d setups, %d ms per move, on %d threads", total,
+				gamesPerSetup, setups.size(), timeLimit, threads));
+
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new Games(0, total));
+		} finally {
+			pool.shutdown();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		log("");
+		log(String.format("%-8s %-2s %-7s %6s %-26s %6s %8s", "board", "k", "players", "games", "wins by seat",
+				"ties", "length"));
+		for (Setup setup : setups)
+			log(setup.toString());
+
+		log("");
+		log(String.format("%-12s %6s %8s %12s", "engine", "seats", "wins", "nodes/s"));
+		for (Engine engine : Engine.values()) {
+			int i = engine.ordinal();
+			if (seats[i].sum() == 0)
+				continue;
+			double thinking = nanos[i].sum() / 1e9;
+			log(String.format("%-12s %6d %7.1f%% %12.0f", engine, seats[i].sum(), 100.0 * wins[i].sum() / seats[i].sum(),
+					thinking == 0 ? 0.0 : nodes[i].sum() / thinking));
+		}
+
+		log("");
+		log(String.format("%d games in %.1f s, %.1f games/s, %d errors", total, seconds, total / seconds,
+				errors.sum()));
+	}
+
+	/**
+	 * Plays game {@code index}; game {@code i} of a setup seats the engines in
+	 * turn, starting from the {@code i}th one, so that every engine plays every
+	 * seat equally often.
+	 */
+	private void play(int index) {
+		Setup setup = setups.get(index / gamesPerSetup);
+		int game = index % gamesPerSetup;
+		Engine[] engines = setup.players == 2 ? TWO_PLAYER_ENGINES : MULTI_PLAYER_ENGINES;
+		char[] symbols = new char[setup.players];
+		System.arraycopy(SYMBOLS, 0, symbols, 0, setup.players);
+
+		Engine[] lineup = new Engine[setup.players];
+		AIPlayer[] players = new AIPlayer[setup.players];
+		for (int seat = 0; seat < setup.players; seat++) {
+			lineup[seat] = engines[(seat + game) % engines.length];
+			players[seat] = lineup[seat].create(timeLimit);
+			seats[lineup[seat].ordinal()].increment();
+		}
+
+		GameBoard board = new GameBoard(setup.rows, setup.columns, setup.consecutive);
+		try {
+			for (int seat = 0;; seat = (seat + 1) % setup.players) {
+				long start = System.nanoTime();
+				int move = players[seat].findMove(board, symbols, seat);
+				nanos[lineup[seat].ordinal()].add(System.nanoTime() - start);
+				nodes[lineup[seat].ordinal()].add(Engine.nodes(players[seat]));
+
+				GameBoard.MoveResult result = board.markSquare(move, symbols[seat]);
+				if (result.outcome == GameBoard.MoveResult.Outcome.INVALID)
+					throw new IllegalStateException(
+							String.format("%s played invalid move %d on\n%s", lineup[seat], move, board));
+				if (result.outcome == GameBoard.MoveResult.Outcome.WIN) {
+					setup.wins.incrementAndGet(seat);
+					wins[lineup[seat].ordinal()].increment();
+					break;
+				}
+				if (result.outcome == GameBoard.MoveResult.Outcome.TIE) {
+					setup.ties.increment();
+					break;
+				}
+			}
+			setup.games.increment();
+			setup.moves.add(board.getMoveCount());
+		} catch (RuntimeException e) {
+			errors.increment();
+			logerr(String.format("RuntimeException in game %d of %s", game, setup.name()), e, true);
+		}
+	}
+
+	private static LongAdder[] adders() {
+		LongAdder[] adders = new LongAdder[Engine.values().length];
+		for (int i = 0; i < adders.length; i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	/**
+	 * Plays the games from {@code from} up to {@code to}, splitting them in half
+	 * until there is one game left so that idle threads can steal the rest.
+	 */
+	private final class Games extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		Games(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				play(from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Games(from, middle), new Games(middle, to));
+		}
+	}
+
+	/**
+	 * A board, winning condition and number of players, and the results of its
+	 * games.
+	 */
+	private static final class Setup {
+
+		private final int rows, columns, consecutive, players;
+		private final AtomicLongArray wins;
+		private final LongAdder games = new LongAdder(), ties = new LongAdder(), moves = new LongAdder();
+
+		Setup(int rows, int columns, int consecutive, int players) {
+			this.rows = rows;
+			this.columns = columns;
+			this.consecutive = consecutive;
+			this.players = players;
+			this.wins = new AtomicLongArray(players);
+		}
+
+		String name() {
+			return String.format("%dx%d, %d in a row, %d players", rows, columns, consecutive, players);
+		}
+
+		@Override
+		public String toString() {
+			long games = this.games.sum();
+			StringBuilder seatWins = new StringBuilder();
+			for (int seat = 0; seat < players; seat++)
+				seatWins.append(String.format("%5.1f%% ", games == 0 ? 0.0 : 100.0 * wins.get(seat) / games));
+			return String.format("%-8s %-2d %-7d %6d %-26s %5.1f%% %8.1f", rows + "x" + columns, consecutive, players,
+					games, seatWins, games == 0 ? 0.0 : 100.0 * ties.sum() / games,
+					games == 0 ? 0.0 : (double) moves.sum() / games);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package ttt_online;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results, keyed by the hash of the
+ * position, so that positions reached through different move orders are only
+ * searched once.
+ * <p>
+ * The table is split in buckets of two entries. The first entry of a bucket
+ * keeps the deepest result, unless it is left over from a previous search; the
+ * second entry is always replaced. Every entry is two {@code long}s, the data
+ * and the key XOR-ed with the data, so an entry that was only half written is
+ * detected as a miss instead of returning wrong data.
+ */
+final class TranspositionTable {
+
+	// entry types
+	static final int EXACT = 0;
+	static final int LOWER_BOUND = 1;
+	static final int UPPER_BOUND = 2;
+
+	// data layout: | valid 1 | generation 5 | flag 2 | depth 8 | score 32 | move+1 16 |
+	private static final long VALID = 1L << 63;
+
+	private final long[] table;
+	private final int mask;
+	private int generation = 0;
+
+	/**
+	 * Constructs a table that uses about {@code megabytes} MB of memory.
+	 *
+	 * @param megabytes int, the size of the table
+	 */
+	TranspositionTable(int megabytes) {
+		// 32 bytes per bucket, rounded down to a power of 2
+		int buckets = Integer.highestOneBit(Math.max(1, (megabytes << 20) / 32));
+		table = new long[4 * buckets];
+		mask = buckets - 1;
+	}
+
+	/**
+	 * Marks the start of a new search so that the entries of older searches are
+	 * replaced first.
+	 */
+	void newSearch() {
+		generation = (generation + 1) & 31;
+	}
+
+	/**
+	 * Returns the data stored for {@code key}.
+	 *
+	 * @param key long, the hash of the position
+	 * @return long, the data, or 0 if the position isn't in the table
+	 * @see TranspositionTable#move(long) move()
+	 * @see TranspositionTable#score(long) score()
+	 * @see TranspositionTable#depth(long) depth()
+	 * @see TranspositionTable#flag(long) flag()
+	 */
+	long probe(long key) {
+		int index = bucket(key);
+		for (int i = index; i < index + 4; i += 2) {
+			long data = table[i + 1];
+			if (data != 0 && (table[i] ^ data) == key)
+				return data;
+		}
+		return 0L;
+	}
+
+	/**
+	 * Stores the result of searching the position with hash {@code key}.
+	 *
+	 * @param key   long, the hash of the position
+	 * @param move  int, the best move found, -1 if none
+	 * @param score int, the score of the position
+	 * @param depth int, the depth it was searched to
+	 * @param flag  int, {@code EXACT}, {@code LOWER_BOUND} or {@code UPPER_BOUND}
+	 */
+	void store(long key, int move, int score, int depth, int flag) {
+		long data = VALID | ((long) generation << 58) | ((long) flag << 56) | ((long) Math.min(depth, 255) << 48)
+				| ((score & 0xffffffffL) << 16) | ((move + 1) & 0xffffL);
+
+		int index = bucket(key);
+		long deep = table[index + 1];
+		if (deep == 0 || (table[index] ^ deep) == key || depth >= depth(deep)
+				|| ((deep >>> 58) & 31) != generation) {
+			table[index] = key ^ data;
+			table[index + 1] = data;
+		} else {
+			table[index + 2] = key ^ data;
+			table[index + 3] = data;
+		}
+	}
+
+	/**
+	 * Empties the table.
+	 */
+	void clear() {
+		Arrays.fill(table, 0L);
+	}
+
+	// ----- DATA FIELDS -----
+
+	static int move(long data) {
+		return (int) (data & 0xffffL) - 1;
+	}
+
+	static int score(long data) {
+		return (int) (data >>> 16);
+	}
+
+	static int depth(long data) {
+		return (int) ((data >>> 48) & 0xff);
+	}
+
+	static int flag(long data) {
+		return (int) ((data >>> 56) & 3);
+	}
+
+	private int bucket(long key) {
+		return ((int) (key ^ (key >>> 32)) & mask) << 2;
+	}
+}
@@ -0,0 +1,79 @@
+package ttt_online;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors that run a thread for every connection; with a
+ * virtual thread per task when they are enabled and the JVM has them (Java
+ * 21+), otherwise with a cached pool of ordinary threads. Virtual threads are
+ * found by reflection so that the project still builds and runs on Java 8.
+ * <p>
+ * A blocked virtual thread only takes a little heap, so a server that uses
+ * them can keep many more idle connections open than one that has an ordinary
+ * thread, with its own stack, for each one.
+ */
+final class VirtualThreads {
+
+	// Executors.newVirtualThreadPerTaskExecutor(), or null before Java 21
+	private static final Method NEW_EXECUTOR = find();
+
+	private static volatile boolean enabled = false;
+
+	private VirtualThreads() {
+	}
+
+	private static Method find() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns whether the JVM has virtual threads.
+	 *
+	 * @return boolean, true on Java 21 and later
+	 */
+	static boolean isSupported() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * Chooses whether the executors created from now on use virtual threads.
+	 *
+	 * @param enabled boolean, whether to use virtual threads when the JVM has
+	 *                them
+	 */
+	static void setEnabled(boolean enabled) {
+		VirtualThreads.enabled = enabled;
+	}
+
+	/**
+	 * Returns whether the executors created use virtual threads.
+	 *
+	 * @return boolean, true if they are enabled and the JVM has them
+	 */
+	static boolean isEnabled() {
+		return enabled && isSupported();
+	}
+
+	/**
+	 * Creates an executor that runs every task on a new virtual thread if they
+	 * are enabled, otherwise on a cached pool of ordinary threads.
+	 *
+	 * @return ExecutorService, the executor
+	 */
+	static ExecutorService newExecutor() {
+		if (isEnabled()) {
+			try {
+				return (ExecutorService) NEW_EXECUTOR.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				// fall back to ordinary threads
+			}
+		}
+		return Executors.newCachedThreadPool();
+	}
+}